@@ -0,0 +1,30 @@
+/**
+ * Per-line outcome of {@link StockManagement#applyBatch}. Codes are the
+ * {@link StockResult} constants, stored one byte per line.
+ */
+public final class BatchResult {
+    private final byte[] codes;
+    private final int successCount;
+    private final boolean committed;
+
+    BatchResult(byte[] codes, int successCount, boolean committed) {
+        this.codes = codes;
+        this.successCount = successCount;
+        this.committed = committed;
+    }
+
+    public int size()              { return codes.length; }
+    public byte code(int line)     { return codes[line]; }
+    public boolean isSuccess(int line) { return codes[line] == StockResult.OK; }
+    public int getSuccessCount()   { return successCount; }
+    public int getFailureCount()   { return codes.length - successCount; }
+
+    /** False only when an all-or-nothing batch was rolled back. */
+    public boolean isCommitted()   { return committed; }
+
+    @Override
+    public String toString() {
+        return String.format("BatchResult[lines=%d, ok=%d, failed=%d, committed=%s]",
+            codes.length, successCount, getFailureCount(), committed);
+    }
+}
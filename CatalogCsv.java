@@ -0,0 +1,315 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * CSV import and export of the catalog. A file starts with the header
+ *
+ *   category,item_number,name,quantity,price,status,attribute_1,attribute_2,attribute_3
+ *
+ * where category is a {@link ProductCategory} name, status is Active or
+ * Discontinued, and the attributes follow {@link Product#getAttributes()} order.
+ * Fields holding a comma, a double quote or a line break are quoted, RFC 4180
+ * style, and a quoted field may run over several lines; its line breaks are read
+ * back as '\n'.
+ *
+ * Import reads the file in chunks of rows that worker threads parse and
+ * validate, while the calling thread inserts each chunk, in file order, with a
+ * single {@link StockManagement#addProducts} call. Rows are checked by
+ * {@link ProductValidator}, as the GUI add form is. Export streams one row at a time.
+ */
+public final class CatalogCsv {
+    static final String HEADER =
+        "category,item_number,name,quantity,price,status,attribute_1,attribute_2,attribute_3";
+    private static final int COLUMNS = 9;
+    private static final int CHUNK_LINES = 4096;
+    private static final int MAX_ERRORS_KEPT = 1000;
+
+    private CatalogCsv() { }
+
+    /** Outcome of an import: counts, and the first rejected rows with their reasons. */
+    public static final class ImportReport {
+        private int imported;
+        private int rejected;
+        private final List<String> errors = new ArrayList<>();
+
+        public int getImported() { return imported; }
+        public int getRejected() { return rejected; }
+
+        /** "line N: reason" for up to the first 1000 rejected rows. */
+        public List<String> getErrors() { return Collections.unmodifiableList(errors); }
+
+        private void reject(int line, String reason) {
+            rejected++;
+            if (errors.size() < MAX_ERRORS_KEPT) errors.add("line " + line + ": " + reason);
+        }
+
+        @Override
+        public String toString() {
+            return "imported=" + imported + " rejected=" + rejected;
+        }
+    }
+
+    /** A parsed chunk: products and their line numbers, and the rows that failed. */
+    private static final class Chunk {
+        final List<Product> products = new ArrayList<>();
+        final List<Integer> productLines = new ArrayList<>();
+        final List<Integer> errorLines = new ArrayList<>();
+        final List<String> errorReasons = new ArrayList<>();
+    }
+
+    // --- Import ---
+
+    /** Imports using one parsing thread per core. */
+    public static ImportReport importInto(StockManagement sm, BufferedReader in) throws IOException {
+        return importInto(sm, in, Runtime.getRuntime().availableProcessors());
+    }
+
+    public static ImportReport importInto(StockManagement sm, BufferedReader in, int threads) throws IOException {
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+        String header = in.readLine();
+        if (header == null || !header.trim().equalsIgnoreCase(HEADER)) {
+            throw new IOException("Not a catalog CSV: the first line must be " + HEADER);
+        }
+        ImportReport report = new ImportReport();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "csv-import");
+            t.setDaemon(true);
+            return t;
+        });
+        ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        try {
+            int lineNumber = 1;
+            while (true) {
+                List<String> rows = new ArrayList<>(CHUNK_LINES);
+                int[] rowLines = new int[CHUNK_LINES];
+                String line;
+                while (rows.size() < CHUNK_LINES && (line = in.readLine()) != null) {
+                    rowLines[rows.size()] = ++lineNumber;
+                    if (line.indexOf('"') >= 0 && inQuotedField(line)) {
+                        // The line break is part of a quoted field: read on until it closes
+                        StringBuilder row = new StringBuilder(line);
+                        String next;
+                        while (inQuotedField(row) && (next = in.readLine()) != null) {
+                            row.append('\n').append(next);
+                            lineNumber++;
+                        }
+                        line = row.toString();
+                    }
+                    rows.add(line);
+                }
+                if (rows.isEmpty()) break;
+                inFlight.add(pool.submit(() -> parse(rows, rowLines)));
+                if (inFlight.size() >= threads * 2) insert(sm, inFlight.poll(), report);
+            }
+            while (!inFlight.isEmpty()) insert(sm, inFlight.poll(), report);
+        } finally {
+            pool.shutdownNow();
+        }
+        return report;
+    }
+
+    private static void insert(StockManagement sm, Future<Chunk> pending, ImportReport report) throws IOException {
+        Chunk chunk;
+        try {
+            chunk = pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Import failed", e.getCause());
+        }
+        // Earlier chunks are already in the store, so this also catches repeats across chunks.
+        // Rejections are reported in line order, merged with the rows that failed to parse.
+        List<Product> accepted = new ArrayList<>(chunk.products.size());
+        int[] acceptedLines = new int[chunk.products.size()];
+        IntHashMap<Product> inChunk = new IntHashMap<>(chunk.products.size());
+        int nextError = 0;
+        for (int i = 0; i < chunk.products.size(); i++) {
+            Product p = chunk.products.get(i);
+            int line = chunk.productLines.get(i);
+            if (sm.isItemNumberUsed(p.getItemNumber()) || inChunk.put(p.getItemNumber(), p) != null) {
+                for (; nextError < chunk.errorLines.size() && chunk.errorLines.get(nextError) < line; nextError++) {
+                    report.reject(chunk.errorLines.get(nextError), chunk.errorReasons.get(nextError));
+                }
+                report.reject(line, "Item number " + Product.formatItemNumber(p.getItemNumber()) + " is already in use");
+            } else {
+                acceptedLines[accepted.size()] = line;
+                accepted.add(p);
+            }
+        }
+        for (; nextError < chunk.errorLines.size(); nextError++) {
+            report.reject(chunk.errorLines.get(nextError), chunk.errorReasons.get(nextError));
+        }
+        try {
+            sm.addProducts(accepted);
+            report.imported += accepted.size();
+        } catch (IllegalArgumentException raced) { // another writer took an item number meanwhile
+            for (int i = 0; i < accepted.size(); i++) {
+                try {
+                    sm.addProducts(Collections.singletonList(accepted.get(i)));
+                    report.imported++;
+                } catch (IllegalArgumentException e) {
+                    report.reject(acceptedLines[i], e.getMessage());
+                }
+            }
+        }
+    }
+
+    /** Parses rows, each starting on the line of the same index in rowLines. */
+    private static Chunk parse(List<String> rows, int[] rowLines) {
+        Chunk chunk = new Chunk();
+        List<String> fields = new ArrayList<>(COLUMNS);
+        for (int i = 0; i < rows.size(); i++) {
+            String line = rows.get(i);
+            if (line.isEmpty()) continue;
+            String error = split(line, fields);
+            Product p = null;
+            if (error == null) {
+                try {
+                    p = toProduct(fields);
+                } catch (IllegalArgumentException e) {
+                    error = e.getMessage();
+                }
+            }
+            if (p != null) {
+                chunk.products.add(p);
+                chunk.productLines.add(rowLines[i]);
+            } else {
+                chunk.errorLines.add(rowLines[i]);
+                chunk.errorReasons.add(error);
+            }
+        }
+        return chunk;
+    }
+
+    /** Whether row ends inside a quoted field, so the line break after it belongs to the field. */
+    static boolean inQuotedField(CharSequence row) {
+        boolean quoted = false, fieldStart = true;
+        for (int i = 0, n = row.length(); i < n; i++) {
+            char c = row.charAt(i);
+            if (quoted) {
+                if (c != '"') continue;
+                if (i + 1 < n && row.charAt(i + 1) == '"') i++;
+                else quoted = false;
+            } else if (c == ',') {
+                fieldStart = true;
+            } else {
+                quoted = fieldStart && c == '"';
+                fieldStart = false;
+            }
+        }
+        return quoted;
+    }
+
+    /** Splits one CSV row into fields. Returns an error message, or null. */
+    static String split(String line, List<String> fields) {
+        fields.clear();
+        StringBuilder field = new StringBuilder();
+        int i = 0, n = line.length();
+        while (true) {
+            field.setLength(0);
+            if (i < n && line.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= n) return "Unclosed quote";
+                    char c = line.charAt(i++);
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i < n && line.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                if (i < n && line.charAt(i) != ',') return "Text after a closing quote";
+            } else {
+                int end = line.indexOf(',', i);
+                if (end < 0) end = n;
+                field.append(line, i, end);
+                i = end;
+            }
+            fields.add(field.toString());
+            if (i >= n) break;
+            i++; // the comma
+        }
+        return fields.size() == COLUMNS ? null : "Expected " + COLUMNS + " fields, found " + fields.size();
+    }
+
+    /** Builds the product a row describes, checked like the GUI add form. */
+    private static Product toProduct(List<String> f) {
+        ProductCategory category;
+        try {
+            category = ProductCategory.valueOf(f.get(0).trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown category " + f.get(0));
+        }
+        boolean active;
+        switch (f.get(5).trim().toLowerCase(Locale.ROOT)) {
+            case "active":       active = true;  break;
+            case "discontinued": active = false; break;
+            default: throw new IllegalArgumentException("Status must be Active or Discontinued");
+        }
+        ProductValidator.Result r = ProductValidator.validate(category,
+            f.get(1), f.get(2), f.get(3), f.get(4), f.get(6), f.get(7), f.get(8));
+        if (!r.isValid()) throw new IllegalArgumentException(r.describe("; "));
+        Product p = r.getProduct();
+        if (!active) p.setProductStatus(false);
+        return p;
+    }
+
+    // --- Export ---
+
+    /**
+     * Writes the header and one row per product. Nothing is buffered beyond the
+     * current row and the writer's own buffer. Returns the number of rows written.
+     */
+    public static long export(Iterable<? extends Product> products, Writer out) throws IOException {
+        StringBuilder row = new StringBuilder(128);
+        out.write(HEADER);
+        out.write('\n');
+        long rows = 0;
+        for (Product p : products) {
+            row.setLength(0);
+            row.append(p.getCategory().name()).append(',')
+               .append(Product.formatItemNumber(p.getItemNumber())).append(',');
+            field(row, p.getProductName());
+            row.append(',').append(p.getQuantityAvailable())
+               .append(',').append(p.getProductPrice())
+               .append(',').append(p.isProductStatus() ? "Active" : "Discontinued");
+            for (ProductAttribute a : p.getAttributes()) {
+                row.append(',');
+                field(row, String.valueOf(a.get(p)));
+            }
+            row.append('\n');
+            out.append(row);
+            rows++;
+        }
+        out.flush();
+        return rows;
+    }
+
+    private static void field(StringBuilder row, String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            row.append(value);
+            return;
+        }
+        row.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') row.append('"');
+            row.append(c);
+        }
+        row.append('"');
+    }
+}
@@ -0,0 +1,222 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Fixed-layout binary image of the catalog, opened through a memory mapping.
+ *
+ * Layout: a 32-byte header, then one 36-byte slot per product holding the hot
+ * fields, then a variable-length area with each product's name and attributes.
+ * Item number, quantity, price, status, category and reorder point are read
+ * straight from the mapping; names and attributes are decoded only when asked for.
+ * Version 1 files, whose 32-byte slots have no reorder point, still open.
+ */
+public class CatalogSnapshot {
+    private static final int MAGIC = 0x534D5331; // "SMS1"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 32;
+    private static final int SLOT_BYTES = 36;
+    private static final int V1_SLOT_BYTES = 32;
+
+    // Slot field offsets
+    private static final int ITEM_NUMBER = 0;
+    private static final int QUANTITY = 4;
+    private static final int PRICE = 8;
+    private static final int DATA_OFFSET = 16; // long, from the start of the file
+    private static final int NAME_BYTES = 24;  // int, UTF-8 length of the name
+    private static final int DATA_BYTES = 28;  // ushort, name plus attributes
+    private static final int CATEGORY = 30;
+    private static final int STATUS = 31;
+    private static final int REORDER_POINT = 32; // version 2 on
+
+    // Header field offsets
+    private static final int FIRST_SEGMENT = 12; // journal segment that follows a checkpoint
+    private static final int CREATED = 24;
+
+    private final Path path;
+    private final MappedByteBuffer map;
+    private final int count;
+    private final int slotBytes;
+
+    private CatalogSnapshot(Path path, MappedByteBuffer map, int count, int slotBytes) {
+        this.path = path;
+        this.map = map;
+        this.count = count;
+        this.slotBytes = slotBytes;
+    }
+
+    /** Maps the file; nothing is decoded until it is read. */
+    public static CatalogSnapshot open(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_BYTES) throw new IOException(path + " is not a catalog snapshot");
+            if (ch.size() > Integer.MAX_VALUE) throw new IOException(path + " is too large to map");
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            int version = map.getInt(4);
+            if (map.getInt(0) != MAGIC || version < 1 || version > VERSION) {
+                throw new IOException(path + " is not a version 1 to " + VERSION + " catalog snapshot");
+            }
+            int count = map.getInt(8);
+            int slotBytes = version == 1 ? V1_SLOT_BYTES : SLOT_BYTES;
+            if ((long) HEADER_BYTES + (long) count * slotBytes > ch.size()) {
+                throw new IOException(path + " is truncated");
+            }
+            return new CatalogSnapshot(path, map, count, slotBytes);
+        }
+    }
+
+    /**
+     * Writes products to path through a temporary file that is fsynced and then
+     * renamed over the target, so a reader never maps a half-written snapshot.
+     */
+    public static void write(List<? extends Product> products, Path path) throws IOException {
+        write(products, null, null, 0, path);
+    }
+
+    /**
+     * Writes products with the given states and reorder points instead of their
+     * live ones, as a checkpoint captured them, and records firstSegment as the
+     * journal segment to replay after it. Null states write the live values.
+     */
+    static void write(List<? extends Product> products, long[] states, int[] reorderPoints,
+                      int firstSegment, Path path) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        int n = products.size();
+        long dataStart = HEADER_BYTES + (long) n * SLOT_BYTES;
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer slots = ByteBuffer.allocate(64 * SLOT_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer data = ByteBuffer.allocate(1 << 16);
+            ByteArrayOutputStream record = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(record);
+            long slotPos = HEADER_BYTES;
+            long dataPos = dataStart;
+            long dataEnd = dataStart;
+            for (int i = 0; i < n; i++) {
+                Product p = products.get(i);
+                long state = states == null ? 0 : states[i];
+                int quantity = states == null ? p.getQuantityAvailable() : Product.quantity(state);
+                boolean active = states == null ? p.isProductStatus() : Product.active(state);
+                int reorderPoint = states == null ? p.getReorderPoint() : reorderPoints[i];
+                record.reset();
+                out.writeUTF(p.getProductName());
+                int nameBytes = record.size();
+                p.writeAttributes(out);
+                int len = record.size();
+                if (len > 0xFFFF) throw new IOException("Product " + p.getItemNumber() + " is too large to snapshot");
+
+                slots.putInt(p.getItemNumber())
+                     .putInt(quantity)
+                     .putDouble(p.getProductPrice())
+                     .putLong(dataEnd)
+                     .putInt(nameBytes)
+                     .putShort((short) len)
+                     .put(p.getCategory().code())
+                     .put((byte) (active ? 1 : 0))
+                     .putInt(reorderPoint);
+                if (!slots.hasRemaining()) slotPos = flush(ch, slots, slotPos);
+
+                if (data.remaining() < len) {
+                    dataPos = flush(ch, data, dataPos);
+                    if (data.capacity() < len) data = ByteBuffer.allocate(len);
+                }
+                data.put(record.toByteArray(), 0, len);
+                dataEnd += len;
+            }
+            flush(ch, slots, slotPos);
+            flush(ch, data, dataPos);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(firstSegment).putLong(dataEnd).putLong(System.currentTimeMillis());
+            flush(ch, header, 0);
+            ch.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long flush(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) position += ch.write(buf, position);
+        buf.clear();
+        return position;
+    }
+
+    public Path getPath() { return path; }
+    public int size()     { return count; }
+
+    /** Wall-clock time the snapshot was written. */
+    public long getCreatedMillis() { return map.getLong(CREATED); }
+
+    /** For a journal checkpoint, the first journal segment not already in it. */
+    int getFirstSegment() { return map.getInt(FIRST_SEGMENT); }
+
+    // --- Hot fields, read straight from the mapping ---
+    public int itemNumber(int slot)   { return map.getInt(at(slot) + ITEM_NUMBER); }
+    public int quantity(int slot)     { return map.getInt(at(slot) + QUANTITY); }
+    public double price(int slot)     { return map.getDouble(at(slot) + PRICE); }
+    public boolean isActive(int slot) { return map.get(at(slot) + STATUS) != 0; }
+    public int reorderPoint(int slot) {
+        return slotBytes == V1_SLOT_BYTES ? Product.NO_REORDER_POINT : map.getInt(at(slot) + REORDER_POINT);
+    }
+    public ProductCategory category(int slot) {
+        return ProductCategory.fromCode(map.get(at(slot) + CATEGORY));
+    }
+
+    public String productName(int slot) {
+        try {
+            return new DataInputStream(dataInput(slot, map.getInt(at(slot) + NAME_BYTES))).readUTF();
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt snapshot record " + slot, e);
+        }
+    }
+
+    /**
+     * Creates the product in slot with its name decoded and its category attributes
+     * left in the mapping until first accessed.
+     */
+    public Product product(int slot) {
+        Product p = Product.create(category(slot), itemNumber(slot), productName(slot),
+            quantity(slot), price(slot));
+        if (!isActive(slot)) p.setProductStatus(false);
+        p.setReorderPoint(reorderPoint(slot));
+        p.deferAttributes(this, slot);
+        return p;
+    }
+
+    /** The encoded attributes of slot, positioned just after the name. */
+    DataInput attributeInput(int slot) {
+        int base = at(slot);
+        int nameBytes = map.getInt(base + NAME_BYTES);
+        int len = Short.toUnsignedInt(map.getShort(base + DATA_BYTES));
+        byte[] bytes = new byte[len - nameBytes];
+        ByteBuffer view = map.duplicate();
+        view.position((int) (map.getLong(base + DATA_OFFSET) + nameBytes));
+        view.get(bytes);
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    private ByteArrayInputStream dataInput(int slot, int len) {
+        byte[] bytes = new byte[len];
+        ByteBuffer view = map.duplicate();
+        view.position((int) map.getLong(at(slot) + DATA_OFFSET));
+        view.get(bytes);
+        return new ByteArrayInputStream(bytes);
+    }
+
+    private int at(int slot) {
+        if (slot < 0 || slot >= count) throw new IndexOutOfBoundsException("slot " + slot + " of " + count);
+        return HEADER_BYTES + slot * slotBytes;
+    }
+}
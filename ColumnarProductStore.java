@@ -0,0 +1,404 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Struct-of-arrays product store for very large catalogs. The hot columns are
+ * primitive arrays (item number, quantity, price in cents, category) and the
+ * status is a bitset, so a product costs a few dozen bytes instead of a heap
+ * object with its own header and String fields. Category attributes sit in
+ * per-category side columns, with repeated text stored once in a dictionary.
+ * Names are mostly unique, so they are packed as UTF-8 into one byte array.
+ *
+ * Prices are kept in whole cents. Not thread-safe: confine a store to one
+ * writer thread.
+ */
+public class ColumnarProductStore {
+    private static final int MISSING = -1;
+
+    private int size;
+    private int[] itemNumbers;
+    private int[] quantities;
+    private long[] priceCents;
+    private long[] discontinued = new long[1];
+    private byte[] categories;
+    private int[] nameStarts;     // names are UTF-8 in nameBytes; each ends where the next starts
+    private byte[] nameBytes = new byte[1 << 12];
+    private int nameEnd;
+    private int[] categoryRows;   // row within the category's side columns
+
+    private final IntIntHashMap rowsByItemNumber;
+    private final StringDictionary strings = new StringDictionary();
+
+    private final RefrigeratorColumns refrigerators = new RefrigeratorColumns();
+    private final TvColumns tvs = new TvColumns();
+    private final WashingMachineColumns washingMachines = new WashingMachineColumns();
+    private final SmartPhoneColumns smartPhones = new SmartPhoneColumns();
+
+    public ColumnarProductStore() {
+        this(1024);
+    }
+
+    public ColumnarProductStore(int expectedSize) {
+        int capacity = Math.max(16, expectedSize);
+        itemNumbers = new int[capacity];
+        quantities = new int[capacity];
+        priceCents = new long[capacity];
+        categories = new byte[capacity];
+        nameStarts = new int[capacity + 1];
+        categoryRows = new int[capacity];
+        rowsByItemNumber = new IntIntHashMap(capacity, MISSING);
+    }
+
+    public int size() { return size; }
+
+    // --- Adding ---
+
+    public int addRefrigerator(int itemNumber, String productName, int quantityAvailable, double productPrice,
+                               String doorDesign, String color, double capacity) {
+        int row = addRow(ProductCategory.REFRIGERATOR, itemNumber, productName, quantityAvailable, productPrice);
+        categoryRows[row] = refrigerators.add(strings.code(doorDesign), strings.code(color), capacity);
+        return row;
+    }
+
+    public int addTV(int itemNumber, String productName, int quantityAvailable, double productPrice,
+                     String screenType, String resolution, double displaySize) {
+        int row = addRow(ProductCategory.TV, itemNumber, productName, quantityAvailable, productPrice);
+        categoryRows[row] = tvs.add(strings.code(screenType), strings.code(resolution), displaySize);
+        return row;
+    }
+
+    public int addWashingMachine(int itemNumber, String productName, int quantityAvailable, double productPrice,
+                                 int drumSize, String type, boolean hasDryer) {
+        int row = addRow(ProductCategory.WASHING_MACHINE, itemNumber, productName, quantityAvailable, productPrice);
+        categoryRows[row] = washingMachines.add(drumSize, strings.code(type), hasDryer);
+        return row;
+    }
+
+    public int addSmartPhone(int itemNumber, String productName, int quantityAvailable, double productPrice,
+                             String brand, String model, int batteryCapacity) {
+        int row = addRow(ProductCategory.SMARTPHONE, itemNumber, productName, quantityAvailable, productPrice);
+        categoryRows[row] = smartPhones.add(strings.code(brand), strings.code(model), batteryCapacity);
+        return row;
+    }
+
+    /** Copies a heap product into the store and returns its row. */
+    public int add(Product p) {
+        int row;
+        switch (p.getCategory()) {
+            case REFRIGERATOR: {
+                Refrigerator r = (Refrigerator) p;
+                row = addRefrigerator(r.getItemNumber(), r.getProductName(), r.getQuantityAvailable(),
+                    r.getProductPrice(), r.getDoorDesign(), r.getColor(), r.getCapacity());
+                break;
+            }
+            case TV: {
+                TV t = (TV) p;
+                row = addTV(t.getItemNumber(), t.getProductName(), t.getQuantityAvailable(),
+                    t.getProductPrice(), t.getScreenType(), t.getResolution(), t.getDisplaySize());
+                break;
+            }
+            case WASHING_MACHINE: {
+                WashingMachine w = (WashingMachine) p;
+                row = addWashingMachine(w.getItemNumber(), w.getProductName(), w.getQuantityAvailable(),
+                    w.getProductPrice(), w.getDrumSize(), w.getType(), w.hasDryer());
+                break;
+            }
+            default: {
+                SmartPhone s = (SmartPhone) p;
+                row = addSmartPhone(s.getItemNumber(), s.getProductName(), s.getQuantityAvailable(),
+                    s.getProductPrice(), s.getBrand(), s.getModel(), s.getBatteryCapacity());
+                break;
+            }
+        }
+        if (!p.isProductStatus()) setBit(discontinued, row);
+        return row;
+    }
+
+    private int addRow(ProductCategory category, int itemNumber, String productName,
+                       int quantityAvailable, double productPrice) {
+        if (rowsByItemNumber.containsKey(itemNumber)) {
+            throw new IllegalArgumentException("Item number " + itemNumber + " is already used.");
+        }
+        if (size == itemNumbers.length) grow();
+        int row = size++;
+        if ((row >> 6) >= discontinued.length) discontinued = Arrays.copyOf(discontinued, discontinued.length * 2);
+        itemNumbers[row] = itemNumber;
+        quantities[row] = quantityAvailable;
+        priceCents[row] = Math.round(productPrice * 100);
+        categories[row] = category.code();
+        byte[] name = productName.getBytes(StandardCharsets.UTF_8);
+        if (nameEnd + name.length > nameBytes.length) {
+            nameBytes = Arrays.copyOf(nameBytes, Math.max(nameBytes.length * 2, nameEnd + name.length));
+        }
+        System.arraycopy(name, 0, nameBytes, nameEnd, name.length);
+        nameStarts[row] = nameEnd;
+        nameEnd += name.length;
+        nameStarts[row + 1] = nameEnd;
+        rowsByItemNumber.put(itemNumber, row);
+        return row;
+    }
+
+    private void grow() {
+        int capacity = itemNumbers.length * 2;
+        itemNumbers = Arrays.copyOf(itemNumbers, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        priceCents = Arrays.copyOf(priceCents, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        nameStarts = Arrays.copyOf(nameStarts, capacity + 1);
+        categoryRows = Arrays.copyOf(categoryRows, capacity);
+    }
+
+    // --- Stock changes, keyed by item number; results are StockResult codes ---
+
+    public byte addStock(int itemNumber, int quantity) {
+        int row = rowOf(itemNumber);
+        if (row == MISSING) return StockResult.NOT_FOUND;
+        if (!isActive(row)) return StockResult.DISCONTINUED;
+        long q = (long) quantities[row] + quantity;
+        if (q > Integer.MAX_VALUE) return StockResult.QUANTITY_OVERFLOW;
+        quantities[row] = (int) q;
+        return StockResult.OK;
+    }
+
+    public byte deductStock(int itemNumber, int quantity) {
+        int row = rowOf(itemNumber);
+        if (row == MISSING) return StockResult.NOT_FOUND;
+        if (!isActive(row)) return StockResult.DISCONTINUED;
+        if (quantity > quantities[row]) return StockResult.INSUFFICIENT_STOCK;
+        quantities[row] -= quantity;
+        return StockResult.OK;
+    }
+
+    public byte discontinue(int itemNumber) {
+        int row = rowOf(itemNumber);
+        if (row == MISSING) return StockResult.NOT_FOUND;
+        if (!isActive(row)) return StockResult.ALREADY_DISCONTINUED;
+        setBit(discontinued, row);
+        return StockResult.OK;
+    }
+
+    // --- Column reads by row ---
+
+    /** Returns the row holding itemNumber, or -1. */
+    public int rowOf(int itemNumber)  { return rowsByItemNumber.get(itemNumber); }
+    public int itemNumber(int row)    { return itemNumbers[check(row)]; }
+    public int quantity(int row)      { return quantities[check(row)]; }
+    public long priceCents(int row)   { return priceCents[check(row)]; }
+    public double price(int row)      { return priceCents[check(row)] / 100.0; }
+    public boolean isActive(int row)  { return !getBit(discontinued, check(row)); }
+    public String productName(int row) {
+        check(row);
+        return new String(nameBytes, nameStarts[row], nameStarts[row + 1] - nameStarts[row], StandardCharsets.UTF_8);
+    }
+    public ProductCategory category(int row) { return ProductCategory.fromCode(categories[check(row)]); }
+
+    // --- Whole-store scans over the primitive columns ---
+
+    public long totalUnits() {
+        long units = 0;
+        for (int i = 0; i < size; i++) units += quantities[i];
+        return units;
+    }
+
+    public long inventoryValueCents() {
+        long cents = 0;
+        for (int i = 0; i < size; i++) cents += priceCents[i] * quantities[i];
+        return cents;
+    }
+
+    public int countActive() {
+        int discontinuedCount = 0;
+        for (long word : discontinued) discontinuedCount += Long.bitCount(word);
+        return size - discontinuedCount;
+    }
+
+    /** Returns a reusable cursor; call {@link View#moveTo} to point it at a row. */
+    public View view() {
+        return new View();
+    }
+
+    /** Copies the row out as an ordinary heap product. */
+    public Product toProduct(int row) {
+        check(row);
+        int c = categoryRows[row];
+        Product p;
+        switch (category(row)) {
+            case REFRIGERATOR:
+                p = new Refrigerator(itemNumbers[row], productName(row), quantities[row], price(row),
+                    strings.get(refrigerators.doorDesign[c]), strings.get(refrigerators.color[c]),
+                    refrigerators.capacity[c]);
+                break;
+            case TV:
+                p = new TV(itemNumbers[row], productName(row), quantities[row], price(row),
+                    strings.get(tvs.screenType[c]), strings.get(tvs.resolution[c]), tvs.displaySize[c]);
+                break;
+            case WASHING_MACHINE:
+                p = new WashingMachine(itemNumbers[row], productName(row), quantities[row], price(row),
+                    washingMachines.drumSize[c], strings.get(washingMachines.type[c]),
+                    getBit(washingMachines.hasDryer, c));
+                break;
+            default:
+                p = new SmartPhone(itemNumbers[row], productName(row), quantities[row], price(row),
+                    strings.get(smartPhones.brand[c]), strings.get(smartPhones.model[c]),
+                    smartPhones.batteryCapacity[c]);
+                break;
+        }
+        if (!isActive(row)) p.setProductStatus(false);
+        return p;
+    }
+
+    /**
+     * Flyweight over one row. Reading through a view allocates nothing, so one
+     * instance can walk the whole store.
+     */
+    public final class View {
+        private int row = MISSING;
+
+        private View() { }
+
+        public View moveTo(int row) {
+            this.row = check(row);
+            return this;
+        }
+
+        public int getRow()                 { return row; }
+        public int getItemNumber()          { return itemNumbers[row]; }
+        public String getProductName()      { return productName(row); }
+        public int getQuantityAvailable()   { return quantities[row]; }
+        public double getProductPrice()     { return priceCents[row] / 100.0; }
+        public boolean isProductStatus()    { return !getBit(discontinued, row); }
+        public ProductCategory getCategory() { return ProductCategory.fromCode(categories[row]); }
+        public double getInventoryValue()   { return priceCents[row] * quantities[row] / 100.0; }
+
+        /** Category attribute by its position (0-2) in the category's constructor order. */
+        public Object getAttribute(int index) {
+            int c = categoryRows[row];
+            switch (getCategory()) {
+                case REFRIGERATOR:
+                    return index == 0 ? strings.get(refrigerators.doorDesign[c])
+                         : index == 1 ? strings.get(refrigerators.color[c]) : (Object) refrigerators.capacity[c];
+                case TV:
+                    return index == 0 ? strings.get(tvs.screenType[c])
+                         : index == 1 ? strings.get(tvs.resolution[c]) : (Object) tvs.displaySize[c];
+                case WASHING_MACHINE:
+                    return index == 0 ? (Object) washingMachines.drumSize[c]
+                         : index == 1 ? strings.get(washingMachines.type[c]) : (Object) getBit(washingMachines.hasDryer, c);
+                default:
+                    return index == 0 ? strings.get(smartPhones.brand[c])
+                         : index == 1 ? strings.get(smartPhones.model[c]) : (Object) smartPhones.batteryCapacity[c];
+            }
+        }
+    }
+
+    private int check(int row) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException("row " + row + " of " + size);
+        return row;
+    }
+
+    // --- Bitset helpers ---
+
+    private static void setBit(long[] bits, int i) {
+        bits[i >> 6] |= 1L << i;
+    }
+
+    private static boolean getBit(long[] bits, int i) {
+        return (i >> 6) < bits.length && (bits[i >> 6] & (1L << i)) != 0;
+    }
+
+    // --- Side columns ---
+
+    private static final class RefrigeratorColumns {
+        int size;
+        int[] doorDesign = new int[16];
+        int[] color = new int[16];
+        double[] capacity = new double[16];
+
+        int add(int doorDesignCode, int colorCode, double cap) {
+            if (size == doorDesign.length) {
+                doorDesign = Arrays.copyOf(doorDesign, size * 2);
+                color = Arrays.copyOf(color, size * 2);
+                capacity = Arrays.copyOf(capacity, size * 2);
+            }
+            doorDesign[size] = doorDesignCode;
+            color[size] = colorCode;
+            capacity[size] = cap;
+            return size++;
+        }
+    }
+
+    private static final class TvColumns {
+        int size;
+        int[] screenType = new int[16];
+        int[] resolution = new int[16];
+        double[] displaySize = new double[16];
+
+        int add(int screenTypeCode, int resolutionCode, double inches) {
+            if (size == screenType.length) {
+                screenType = Arrays.copyOf(screenType, size * 2);
+                resolution = Arrays.copyOf(resolution, size * 2);
+                displaySize = Arrays.copyOf(displaySize, size * 2);
+            }
+            screenType[size] = screenTypeCode;
+            resolution[size] = resolutionCode;
+            displaySize[size] = inches;
+            return size++;
+        }
+    }
+
+    private static final class WashingMachineColumns {
+        int size;
+        int[] drumSize = new int[16];
+        int[] type = new int[16];
+        long[] hasDryer = new long[1];
+
+        int add(int drum, int typeCode, boolean dryer) {
+            if (size == drumSize.length) {
+                drumSize = Arrays.copyOf(drumSize, size * 2);
+                type = Arrays.copyOf(type, size * 2);
+            }
+            if ((size >> 6) >= hasDryer.length) hasDryer = Arrays.copyOf(hasDryer, hasDryer.length * 2);
+            drumSize[size] = drum;
+            type[size] = typeCode;
+            if (dryer) hasDryer[size >> 6] |= 1L << size;
+            return size++;
+        }
+    }
+
+    private static final class SmartPhoneColumns {
+        int size;
+        int[] brand = new int[16];
+        int[] model = new int[16];
+        int[] batteryCapacity = new int[16];
+
+        int add(int brandCode, int modelCode, int battery) {
+            if (size == brand.length) {
+                brand = Arrays.copyOf(brand, size * 2);
+                model = Arrays.copyOf(model, size * 2);
+                batteryCapacity = Arrays.copyOf(batteryCapacity, size * 2);
+            }
+            brand[size] = brandCode;
+            model[size] = modelCode;
+            batteryCapacity[size] = battery;
+            return size++;
+        }
+    }
+
+    /** Interns text so each distinct name or attribute value is stored once. */
+    private static final class StringDictionary {
+        private final HashMap<String, Integer> codes = new HashMap<>();
+        private final ArrayList<String> values = new ArrayList<>();
+
+        int code(String s) {
+            Integer c = codes.get(s);
+            if (c != null) return c;
+            int next = values.size();
+            values.add(s);
+            codes.put(s, next);
+            return next;
+        }
+
+        String get(int code) { return values.get(code); }
+    }
+}
@@ -0,0 +1,209 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Scanner;
+
+/**
+ * Writes product listings to the console. Each product is appended to one reused
+ * StringBuilder and written through a single BufferedWriter, which is flushed only
+ * at the end of a page, so a large catalog costs no per-product String.format or
+ * print call.
+ *
+ * Two layouts: DETAILED, the multi-line block toString() shows, and TABLE, one
+ * line per product. With a page size, the listing stops after each page until the
+ * user presses Enter, or q to skip the rest.
+ */
+public class ConsoleProductRenderer {
+
+    public enum Layout { DETAILED, TABLE }
+
+    private static final int LABEL_WIDTH = 20;
+    private static final int NAME_WIDTH = 24;
+    private static final String SPACES = "                        "; // the widest column
+    private static final String TABLE_HEADER =
+        "  #    Item  Name                     Type                  Qty   Price (RM)     Value (RM)  Status";
+
+    private final Writer out;
+    private final Layout layout;
+    private final int pageSize;
+    private final StringBuilder line = new StringBuilder(256);
+
+    /** pageSize is in products; 0 lists everything without stopping. */
+    public ConsoleProductRenderer(Writer out, Layout layout, int pageSize) {
+        if (pageSize < 0) throw new IllegalArgumentException("pageSize must not be negative");
+        this.out = out;
+        this.layout = layout;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Renders to standard output with the layout and page size from the system
+     * properties sms.console.layout (DETAILED or TABLE) and sms.console.pageSize.
+     */
+    public static ConsoleProductRenderer forConsole() {
+        Layout layout = Layout.valueOf(System.getProperty("sms.console.layout", "DETAILED").toUpperCase());
+        int pageSize = Integer.getInteger("sms.console.pageSize", 20);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, Charset.defaultCharset()), 1 << 16);
+        return new ConsoleProductRenderer(out, layout, pageSize);
+    }
+
+    public Layout getLayout() { return layout; }
+    public int getPageSize()  { return pageSize; }
+
+    /**
+     * Lists products numbered from 1. in is read between pages and may be null
+     * when there is no paging. Returns the number of products shown.
+     */
+    public int render(List<? extends Product> products, Scanner in) {
+        int n = products.size();
+        int shown = 0;
+        try {
+            if (layout == Layout.TABLE) out.write(TABLE_HEADER + System.lineSeparator());
+            for (int i = 0; i < n; i++) {
+                line.setLength(0);
+                if (layout == Layout.TABLE) appendRow(i + 1, products.get(i));
+                else appendDetailed(i + 1, products.get(i));
+                out.append(line);
+                shown++;
+                if (pageSize > 0 && shown % pageSize == 0 && shown < n && in != null && !nextPage(shown, n, in)) break;
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return shown;
+    }
+
+    private boolean nextPage(int shown, int total, Scanner in) throws IOException {
+        out.write("-- " + shown + " of " + total + " -- Enter for more, q to stop: ");
+        out.flush();
+        String reply = in.nextLine().trim();
+        return !reply.equalsIgnoreCase("q");
+    }
+
+    // --- Layouts ---
+
+    private void appendDetailed(int index, Product p) {
+        line.append('[');
+        if (index < 10) line.append('0');
+        line.append(index).append(']');
+        label("Item number");
+        Product.appendItemNumber(line, p.getItemNumber());
+        newLine();
+        label("Product name");
+        line.append(p.getProductName());
+        newLine();
+        for (ProductAttribute a : p.getAttributes()) {
+            label(a.getName());
+            appendAttribute(a, p);
+            newLine();
+        }
+        label("Quantity available");
+        line.append(p.getQuantityAvailable());
+        newLine();
+        label("Price (RM)");
+        appendFixed(p.getProductPrice(), 2);
+        newLine();
+        label("Inventory value");
+        appendFixed(p.getInventoryValue(), 2);
+        newLine();
+        label("Status");
+        line.append(p.isProductStatus() ? "Active" : "Discontinued");
+        newLine();
+        newLine();
+    }
+
+    private void appendRow(int index, Product p) {
+        padLeft(index, 3);
+        line.append("  ");
+        int start = line.length();
+        Product.appendItemNumber(line, p.getItemNumber());
+        alignRight(start, 6);
+        line.append("  ");
+        start = line.length();
+        String name = p.getProductName();
+        if (name.length() > NAME_WIDTH) line.append(name, 0, NAME_WIDTH - 1).append('~');
+        else line.append(name);
+        alignLeft(start, NAME_WIDTH);
+        line.append(' ');
+        start = line.length();
+        line.append(p.getCategory().getDisplayName());
+        alignLeft(start, 16);
+        line.append(' ');
+        padLeft(p.getQuantityAvailable(), 8);
+        line.append(' ');
+        start = line.length();
+        appendFixed(p.getProductPrice(), 2);
+        alignRight(start, 12);
+        line.append(' ');
+        start = line.length();
+        appendFixed(p.getInventoryValue(), 2);
+        alignRight(start, 14);
+        line.append("  ").append(p.isProductStatus() ? "Active" : "Discontinued");
+        newLine();
+    }
+
+    // --- Appending without a Formatter ---
+
+    private void label(String name) {
+        int start = line.length();
+        line.append(name);
+        alignLeft(start, LABEL_WIDTH);
+        line.append(": ");
+    }
+
+    private void appendAttribute(ProductAttribute a, Product p) {
+        switch (a.getKind()) {
+            case DECIMAL:
+                appendFixed((Double) a.get(p), 1);
+                break;
+            case YES_NO:
+                line.append((Boolean) a.get(p) ? "Yes" : "No");
+                break;
+            default:
+                line.append(a.get(p));
+                if (!a.getUnit().isEmpty()) line.append(' ').append(a.getUnit());
+        }
+    }
+
+    /** Rounds half up to the given number of decimals, like %.Nf, with a '.' separator. */
+    private void appendFixed(double v, int decimals) {
+        if (Double.isNaN(v) || Double.isInfinite(v) || Math.abs(v) >= 1e15) {
+            line.append(v);
+            return;
+        }
+        long scale = decimals == 1 ? 10 : 100;
+        long scaled = Math.round(Math.abs(v) * scale);
+        if (v < 0 && scaled != 0) line.append('-');
+        line.append(scaled / scale).append('.');
+        long fraction = scaled % scale;
+        if (decimals == 2 && fraction < 10) line.append('0');
+        line.append(fraction);
+    }
+
+    private void padLeft(int value, int width) {
+        int start = line.length();
+        line.append(value);
+        alignRight(start, width);
+    }
+
+    /** Pads the text appended since start with spaces on the right up to width. */
+    private void alignLeft(int start, int width) {
+        int missing = start + width - line.length();
+        if (missing > 0) line.append(SPACES, 0, missing);
+    }
+
+    /** Pads the text appended since start with spaces on the left up to width. */
+    private void alignRight(int start, int width) {
+        int missing = start + width - line.length();
+        if (missing > 0) line.insert(start, SPACES, 0, missing);
+    }
+
+    private void newLine() {
+        line.append(System.lineSeparator());
+    }
+}
@@ -0,0 +1,149 @@
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Open-addressing hash map keyed by primitive int, so lookups never box the key.
+ * Writers must be externally serialized; readers may run concurrently with a writer
+ * and always see either the old or the new mapping of a key.
+ */
+public class IntHashMap<V> {
+    private static final Object TOMBSTONE = new Object();
+    private static final int MIN_CAPACITY = 16;
+
+    /** Keys and values are swapped together on resize, so they live in one holder. */
+    private static final class Table {
+        final int[] keys;
+        final AtomicReferenceArray<Object> values;
+
+        Table(int capacity) {
+            keys = new int[capacity];
+            values = new AtomicReferenceArray<>(capacity);
+        }
+    }
+
+    private volatile Table table;
+    private volatile int size;
+    private int used; // live entries plus tombstones
+
+    public IntHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public IntHashMap(int expectedSize) {
+        table = new Table(capacityFor(expectedSize));
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        Table t = table;
+        int mask = t.keys.length - 1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            Object v = t.values.getAcquire(i);
+            if (v == null) return null;
+            if (v != TOMBSTONE && t.keys[i] == key) return (V) v;
+        }
+    }
+
+    /** Maps key to value and returns the previous value, or null. Value must not be null. */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) throw new IllegalArgumentException("value must not be null");
+        if ((used + 1) * 4 >= table.keys.length * 3) rehash(size + 1);
+
+        // A slot's key never changes once written, or a reader could pair an old value
+        // with a new key; only a tombstone left by this same key is filled in place,
+        // and the others wait for the next rehash.
+        Table t = table;
+        int mask = t.keys.length - 1;
+        int free = -1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            Object v = t.values.get(i);
+            if (v == null) {
+                if (free < 0) {
+                    free = i;
+                    used++;
+                }
+                break;
+            }
+            if (v == TOMBSTONE) {
+                if (free < 0 && t.keys[i] == key) free = i;
+            } else if (t.keys[i] == key) {
+                t.values.setRelease(i, value);
+                return (V) v;
+            }
+        }
+        t.keys[free] = key;
+        t.values.setRelease(free, value);
+        size++;
+        return null;
+    }
+
+    /** Removes the mapping for key and returns it, or null if absent. */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        Table t = table;
+        int mask = t.keys.length - 1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            Object v = t.values.get(i);
+            if (v == null) return null;
+            if (v != TOMBSTONE && t.keys[i] == key) {
+                t.values.setRelease(i, TOMBSTONE);
+                size--;
+                return (V) v;
+            }
+        }
+    }
+
+    /** Grows the table ahead of a bulk load so the inserts never rehash. */
+    public void ensureCapacity(int expectedSize) {
+        if (capacityFor(expectedSize) > table.keys.length) rehash(expectedSize);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        Table t = table;
+        for (int i = 0; i < t.keys.length; i++) {
+            Object v = t.values.getAcquire(i);
+            if (v != null && v != TOMBSTONE) action.accept((V) v);
+        }
+    }
+
+    public void clear() {
+        table = new Table(MIN_CAPACITY);
+        size = 0;
+        used = 0;
+    }
+
+    private void rehash(int expectedSize) {
+        Table old = table;
+        Table t = new Table(Math.max(capacityFor(expectedSize), old.keys.length));
+        int mask = t.keys.length - 1;
+        for (int j = 0; j < old.keys.length; j++) {
+            Object v = old.values.get(j);
+            if (v == null || v == TOMBSTONE) continue;
+            int i = mix(old.keys[j]) & mask;
+            while (t.values.get(i) != null) i = (i + 1) & mask;
+            t.keys[i] = old.keys[j];
+            t.values.set(i, v);
+        }
+        used = size;
+        table = t;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int needed = (int) Math.min(1L << 30, (long) Math.max(expectedSize, 1) * 4 / 3 + 1);
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit(needed - 1) << 1);
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,117 @@
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from int to int with no boxing at all. Not thread-safe.
+ */
+public class IntIntHashMap {
+    private static final int FREE = 0;
+    private static final int USED = 1;
+
+    private int[] keys;
+    private int[] values;
+    private byte[] states;
+    private int size;
+    private final int missing;
+
+    /** missing is what {@link #get} returns for an absent key. */
+    public IntIntHashMap(int expectedSize, int missing) {
+        int capacity = capacityFor(expectedSize);
+        keys = new int[capacity];
+        values = new int[capacity];
+        states = new byte[capacity];
+        this.missing = missing;
+    }
+
+    public int size() { return size; }
+
+    public int get(int key) {
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask; states[i] != FREE; i = (i + 1) & mask) {
+            if (keys[i] == key) return values[i];
+        }
+        return missing;
+    }
+
+    public boolean containsKey(int key) {
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask; states[i] != FREE; i = (i + 1) & mask) {
+            if (keys[i] == key) return true;
+        }
+        return false;
+    }
+
+    /** Returns the previous value, or the missing value. */
+    public int put(int key, int value) {
+        if ((size + 1) * 4 >= keys.length * 3) grow();
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        for (; states[i] != FREE; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                int old = values[i];
+                values[i] = value;
+                return old;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        states[i] = USED;
+        size++;
+        return missing;
+    }
+
+    /** Returns the removed value, or the missing value. Uses backward-shift deletion, so no tombstones. */
+    public int remove(int key) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        for (; states[i] != FREE; i = (i + 1) & mask) {
+            if (keys[i] == key) break;
+        }
+        if (states[i] == FREE) return missing;
+        int old = values[i];
+        for (int j = (i + 1) & mask; states[j] != FREE; j = (j + 1) & mask) {
+            int home = mix(keys[j]) & mask;
+            // Move j into the hole at i unless its home lies cyclically in (i, j].
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        states[i] = FREE;
+        size--;
+        return old;
+    }
+
+    public void clear() {
+        Arrays.fill(states, (byte) FREE);
+        size = 0;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys, oldValues = values;
+        byte[] oldStates = states;
+        int capacity = oldKeys.length * 2;
+        keys = new int[capacity];
+        values = new int[capacity];
+        states = new byte[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldStates[j] == FREE) continue;
+            int i = mix(oldKeys[j]) & mask;
+            while (states[i] != FREE) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+            states[i] = USED;
+        }
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int needed = (int) Math.min(1L << 30, (long) Math.max(expectedSize, 1) * 4 / 3 + 1);
+        return Math.max(16, Integer.highestOneBit(needed - 1) << 1);
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
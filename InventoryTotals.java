@@ -0,0 +1,135 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running inventory totals, kept up to date from stock events so every read is
+ * O(1) instead of a rescan. Values are tracked in cents, with each product's
+ * price rounded to the cent, so sums never drift the way repeated double
+ * arithmetic would.
+ */
+public class InventoryTotals implements StockListener {
+    private static final int CATEGORIES = ProductCategory.values().length;
+
+    // Indexed by bucket(category, active)
+    private final LongAdder[] units = newAdders();
+    private final LongAdder[] valueCents = newAdders();
+    private final LongAdder[] productCounts = newAdders();
+
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[CATEGORIES * 2];
+        for (int i = 0; i < adders.length; i++) adders[i] = new LongAdder();
+        return adders;
+    }
+
+    private static int bucket(ProductCategory category, boolean active) {
+        return category.ordinal() * 2 + (active ? 1 : 0);
+    }
+
+    static long priceCents(Product p) {
+        return Math.round(p.getProductPrice() * 100);
+    }
+
+    // --- StockListener ---
+
+    @Override
+    public void productAdded(Product p) {
+        int b = bucket(p.getCategory(), p.isProductStatus());
+        long q = p.getQuantityAvailable();
+        units[b].add(q);
+        valueCents[b].add(q * priceCents(p));
+        productCounts[b].increment();
+    }
+
+    @Override
+    public void productRemoved(Product p) {
+        int b = bucket(p.getCategory(), p.isProductStatus());
+        long q = p.getQuantityAvailable();
+        units[b].add(-q);
+        valueCents[b].add(-q * priceCents(p));
+        productCounts[b].decrement();
+    }
+
+    @Override
+    public void quantityChanged(Product p, int delta, boolean active) {
+        int b = bucket(p.getCategory(), active);
+        units[b].add(delta);
+        valueCents[b].add(delta * priceCents(p));
+    }
+
+    @Override
+    public void statusChanged(Product p, boolean active, int quantity) {
+        int to = bucket(p.getCategory(), active);
+        int from = bucket(p.getCategory(), !active);
+        long cents = quantity * priceCents(p);
+        units[from].add(-quantity);
+        units[to].add(quantity);
+        valueCents[from].add(-cents);
+        valueCents[to].add(cents);
+        productCounts[from].decrement();
+        productCounts[to].increment();
+    }
+
+    // --- Reads ---
+
+    public long getTotalUnits()             { return sum(units, null, null); }
+    public double getTotalValue()           { return sum(valueCents, null, null) / 100.0; }
+    public long getTotalValueCents()        { return sum(valueCents, null, null); }
+    public long getProductCount()           { return sum(productCounts, null, null); }
+
+    public long getUnits(ProductCategory c)        { return sum(units, c, null); }
+    public double getValue(ProductCategory c)      { return sum(valueCents, c, null) / 100.0; }
+    public long getProductCount(ProductCategory c) { return sum(productCounts, c, null); }
+
+    /** Totals over active (true) or discontinued (false) products. */
+    public long getUnits(boolean active)           { return sum(units, null, active); }
+    public double getValue(boolean active)         { return sum(valueCents, null, active) / 100.0; }
+    public long getProductCount(boolean active)    { return sum(productCounts, null, active); }
+
+    public long getUnits(ProductCategory c, boolean active)      { return units[bucket(c, active)].sum(); }
+    public long getValueCents(ProductCategory c, boolean active) { return valueCents[bucket(c, active)].sum(); }
+
+    private static long sum(LongAdder[] adders, ProductCategory c, Boolean active) {
+        long total = 0;
+        for (int b = 0; b < adders.length; b++) {
+            if (c != null && b / 2 != c.ordinal()) continue;
+            if (active != null && (b & 1) != (active ? 1 : 0)) continue;
+            total += adders[b].sum();
+        }
+        return total;
+    }
+
+    /**
+     * Recomputes every bucket from products and describes each one that differs from
+     * the running totals. An empty list means zero drift. Only meaningful while no
+     * other thread is changing stock.
+     */
+    public List<String> findDrift(Iterable<? extends Product> products) {
+        InventoryTotals fresh = new InventoryTotals();
+        for (Product p : products) fresh.productAdded(p);
+        List<String> drift = new ArrayList<>();
+        for (ProductCategory c : ProductCategory.values()) {
+            for (boolean active : new boolean[] {true, false}) {
+                int b = bucket(c, active);
+                String where = c.getDisplayName() + (active ? " (active)" : " (discontinued)");
+                compare(drift, where + " units", fresh.units[b].sum(), units[b].sum());
+                compare(drift, where + " value cents", fresh.valueCents[b].sum(), valueCents[b].sum());
+                compare(drift, where + " products", fresh.productCounts[b].sum(), productCounts[b].sum());
+            }
+        }
+        return drift;
+    }
+
+    private static void compare(List<String> drift, String what, long expected, long actual) {
+        if (expected != actual) {
+            drift.add(what + ": expected " + expected + ", running total " + actual
+                + " (drift " + (actual - expected) + ")");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("InventoryTotals[products=%d, units=%d, value=%.2f]",
+            getProductCount(), getTotalUnits(), getTotalValue());
+    }
+}
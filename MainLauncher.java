@@ -1,3 +1,4 @@
+import java.io.IOException;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
@@ -8,6 +9,8 @@ import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
 public class MainLauncher extends Application {
+    private StockManagementGUI gui; // set once the GUI is chosen
+
     @Override
     public void start(Stage primaryStage) {
         primaryStage.setTitle("Stock Management System");
@@ -24,7 +27,11 @@ public class MainLauncher extends Application {
         // Add actions
         consoleBtn.setOnAction(e -> {
             primaryStage.close();
-            new StockManagement().runConsole();
+            try (StockManagement sm = StockManagement.open()) {
+                sm.runConsole();
+            } catch (IOException ex) {
+                System.err.println("Closing the journal failed: " + ex.getMessage());
+            }
             Platform.exit();
         });
 
@@ -32,7 +39,8 @@ public class MainLauncher extends Application {
             primaryStage.close();
             // Launch GUI
             Stage guiStage = new Stage();
-            new StockManagementGUI().start(guiStage);
+            gui = new StockManagementGUI();
+            gui.start(guiStage);
         });
 
         // Create layout
@@ -47,6 +55,12 @@ public class MainLauncher extends Application {
         primaryStage.show();
     }
 
+    /** JavaFX stops only this launcher, so it stops the GUI it started. */
+    @Override
+    public void stop() throws IOException {
+        if (gui != null) gui.stop();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
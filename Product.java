@@ -1,55 +1,356 @@
 
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.List;
+
 public abstract class Product {
+    /** The reorder point of a product that is never low on stock. */
+    public static final int NO_REORDER_POINT = -1;
+
+    /** The most units of one product that can be reserved at once. */
+    public static final int MAX_RESERVED = (1 << 30) - 1;
+
+    // Quantity, reserved quantity and status share one word so every stock change
+    // is a single CAS: bit 63 is set once discontinued, bit 62 is the parity of the
+    // checkpoint epoch the word was last changed in, bits 32-61 hold the units
+    // reserved and bits 0-31 the units in stock, reserved ones included.
+    private static final long DISCONTINUED = 1L << 63;
+    private static final long EPOCH_PARITY = 1L << 62;
+    private static final long QUANTITY_MASK = 0xFFFFFFFFL;
+    private static final int RESERVED_SHIFT = 32;
+    private static final long RESERVED_MASK = (long) MAX_RESERVED << RESERVED_SHIFT;
+    private static final VarHandle STATE;
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(Product.class, "state", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private String productName;
     private int itemNumber;
-    private int quantityAvailable;
     private double productPrice;
-    private boolean productStatus;
+    private volatile long state;
+    private volatile int reorderPoint = NO_REORDER_POINT;
+
+    // The state and reorder point as they were when the product entered savedEpoch
+    private long savedState;
+    private int savedReorderPoint;
+    private volatile long savedEpoch = -1;
+
+    // Set while the subclass attributes of a snapshot-loaded product are still undecoded.
+    private volatile CatalogSnapshot attributeSource;
+    private int attributeSlot;
 
     public Product(int itemNumber, String productName, int quantityAvailable, double productPrice) {
         this.itemNumber = itemNumber;
         this.productName = productName;
-        this.quantityAvailable = quantityAvailable;
         this.productPrice = productPrice;
-        this.productStatus = true;
+        this.state = quantityAvailable & QUANTITY_MASK;
+    }
+
+    /** Appends n the way item numbers are shown everywhere: "%04d" for non-negative n, without the formatter. */
+    public static StringBuilder appendItemNumber(StringBuilder sb, long n) {
+        if (n >= 0) {
+            for (long limit = 1000; limit > 1 && n < limit; limit /= 10) sb.append('0');
+        }
+        return sb.append(n);
+    }
+
+    /** n as {@link #appendItemNumber} shows it. */
+    public static String formatItemNumber(long n) {
+        return appendItemNumber(new StringBuilder(8), n).toString();
     }
 
     public String getProductName() { return productName; }
     public int getItemNumber()   { return itemNumber; }
-    public int getQuantityAvailable() { return quantityAvailable; }
+    public int getQuantityAvailable() { return quantity(state); }
+    /** Units held for pending orders; they are still in stock until committed. */
+    public int getQuantityReserved() { return reserved(state); }
+    /** Units in stock that are not reserved, so can be deducted or reserved. */
+    public int getQuantityUnreserved() {
+        long s = state;
+        return Math.max(0, quantity(s) - reserved(s));
+    }
     public double getProductPrice(){ return productPrice; }
-    public boolean isProductStatus(){ return productStatus; }
+    public boolean isProductStatus(){ return active(state); }
+
+    public void setProductStatus(boolean status) {
+        changeStatus(status);
+    }
 
-    public void setProductStatus(boolean status) { this.productStatus = status; }
+    /** The quantity at or below which the product is low on stock, or NO_REORDER_POINT. */
+    public int getReorderPoint() { return reorderPoint; }
+
+    /** Set through StockManagement, which journals it and tells the listeners. */
+    void setReorderPoint(int reorderPoint) {
+        this.reorderPoint = reorderPoint;
+    }
+
+    /** Active, with a reorder point, and at or below it. */
+    public boolean isLowStock() {
+        int point = reorderPoint;
+        long s = state;
+        return point >= 0 && active(s) && quantity(s) <= point;
+    }
 
     /**
      * Attempts to add stock. Returns a message.
      */
     public String addStock(int quantity) {
-        if (!productStatus) {
-            return "Cannot add stock. Product is discontinued.";
-        }
-        this.quantityAvailable += quantity;
-        return "Stock added successfully.";
+        return addStockMessage(tryAddStock(quantity));
     }
 
     /**
      * Attempts to deduct stock. Returns a message.
      */
     public String deductStock(int quantity) {
-        if (!productStatus) {
-            return "Cannot deduct stock. Product is discontinued.";
+        return deductStockMessage(tryDeductStock(quantity));
+    }
+
+    static String addStockMessage(byte code) {
+        switch (code) {
+            case StockResult.OK:           return "Stock added successfully.";
+            case StockResult.DISCONTINUED: return "Cannot add stock. Product is discontinued.";
+            case StockResult.INVALID_QUANTITY: return "Cannot add stock. Quantity must not be negative.";
+            default:                       return "Cannot add stock. Quantity would exceed the maximum.";
         }
-        if (quantity > quantityAvailable) {
-            return "Deduct quantity should not exceed current stock.";
+    }
+
+    static String deductStockMessage(byte code) {
+        switch (code) {
+            case StockResult.OK:           return "Stock deducted successfully.";
+            case StockResult.DISCONTINUED: return "Cannot deduct stock. Product is discontinued.";
+            case StockResult.INVALID_QUANTITY: return "Cannot deduct stock. Quantity must not be negative.";
+            default:                       return "Deduct quantity should not exceed current stock.";
         }
-        this.quantityAvailable -= quantity;
-        return "Stock deducted successfully.";
+    }
+
+    /** Adds stock if the product is active. Returns a {@link StockResult} code. */
+    byte tryAddStock(int quantity) {
+        if (quantity < 0) return StockResult.INVALID_QUANTITY;
+        long s, next;
+        do {
+            s = state;
+            if (!active(s)) return StockResult.DISCONTINUED;
+            long q = (long) quantity(s) + quantity;
+            if (q > Integer.MAX_VALUE) return StockResult.QUANTITY_OVERFLOW;
+            next = (s & ~QUANTITY_MASK) | (q & QUANTITY_MASK);
+        } while (!STATE.compareAndSet(this, s, next));
+        return StockResult.OK;
+    }
+
+    /**
+     * Deducts stock if the product is active and has enough that is not reserved.
+     * Returns a {@link StockResult} code.
+     */
+    byte tryDeductStock(int quantity) {
+        if (quantity < 0) return StockResult.INVALID_QUANTITY;
+        long s, next;
+        do {
+            s = state;
+            if (!active(s)) return StockResult.DISCONTINUED;
+            if (quantity > quantity(s) - reserved(s)) return StockResult.INSUFFICIENT_STOCK;
+            next = (s & ~QUANTITY_MASK) | ((quantity(s) - quantity) & QUANTITY_MASK);
+        } while (!STATE.compareAndSet(this, s, next));
+        return StockResult.OK;
+    }
+
+    /** Reserves units of the unreserved stock if the product is active. Returns a {@link StockResult} code. */
+    byte tryReserve(int quantity) {
+        long s;
+        do {
+            s = state;
+            if (!active(s)) return StockResult.DISCONTINUED;
+            if (quantity > quantity(s) - reserved(s)) return StockResult.INSUFFICIENT_STOCK;
+            if (reserved(s) + (long) quantity > MAX_RESERVED) return StockResult.QUANTITY_OVERFLOW;
+        } while (!STATE.compareAndSet(this, s, s + ((long) quantity << RESERVED_SHIFT)));
+        return StockResult.OK;
+    }
+
+    /**
+     * Turns reserved units into a deduction: stock and reserved quantity both drop
+     * by quantity. Fails if the product was discontinued meanwhile, leaving the units
+     * reserved. Returns a {@link StockResult} code.
+     */
+    byte tryCommitReserved(int quantity) {
+        long s, next;
+        do {
+            s = state;
+            if (!active(s)) return StockResult.DISCONTINUED;
+            if (quantity > quantity(s)) return StockResult.INSUFFICIENT_STOCK;
+            next = (s & ~QUANTITY_MASK) - ((long) quantity << RESERVED_SHIFT) | ((quantity(s) - quantity) & QUANTITY_MASK);
+        } while (!STATE.compareAndSet(this, s, next));
+        return StockResult.OK;
+    }
+
+    /** Returns reserved units to the unreserved stock, whatever the status. */
+    void releaseReserved(int quantity) {
+        long s;
+        do {
+            s = state;
+        } while (!STATE.compareAndSet(this, s, s - ((long) quantity << RESERVED_SHIFT)));
+    }
+
+    static final long NO_CHANGE = Long.MIN_VALUE;
+
+    /**
+     * Sets the status if it differs. Returns the quantity held at the moment of the
+     * change, or NO_CHANGE if the product already had that status.
+     */
+    long changeStatus(boolean active) {
+        long s;
+        do {
+            s = state;
+            if (active(s) == active) return NO_CHANGE;
+        } while (!STATE.compareAndSet(this, s, s ^ DISCONTINUED));
+        return quantity(s);
+    }
+
+    /**
+     * Shifts the quantity by delta regardless of status, for replay.
+     * Returns the status the change was applied under.
+     */
+    boolean adjustQuantity(int delta) {
+        long s;
+        do {
+            s = state;
+        } while (!STATE.compareAndSet(this, s,
+                (s & ~QUANTITY_MASK) | ((quantity(s) + delta) & QUANTITY_MASK)));
+        return active(s);
+    }
+
+    /**
+     * Applies what an all-or-nothing batch staged for this product in one step,
+     * whatever the status: the units reserved for its deductions leave stock and
+     * its additions arrive. Nobody else can take reserved units, so this cannot go
+     * below zero. Returns the status the change was applied under.
+     */
+    boolean commitBatch(int reserved, int added) {
+        long s, next;
+        do {
+            s = state;
+            next = (s & ~QUANTITY_MASK) - ((long) reserved << RESERVED_SHIFT)
+                | ((quantity(s) - reserved + added) & QUANTITY_MASK);
+        } while (!STATE.compareAndSet(this, s, next));
+        return active(s);
     }
 
     public double getInventoryValue() {
-        return productPrice * quantityAvailable;
+        return productPrice * getQuantityAvailable();
+    }
+
+    // --- Checkpoint epochs ---
+
+    /**
+     * Moves the product into epoch, saving its state and reorder point as they were
+     * at the end of the previous epoch. Every journaled change calls this before
+     * changing anything, so the first change in an epoch preserves the pre-image a
+     * checkpoint of that epoch's start needs. Parity is enough to tell epochs apart
+     * because a checkpoint moves every product into its epoch before the next starts.
+     */
+    void enterEpoch(long epoch) {
+        long parity = (epoch & 1) == 0 ? 0 : EPOCH_PARITY;
+        while (true) {
+            long s = state;
+            if ((s & EPOCH_PARITY) == parity) return;
+            // The reorder point only changes after this, so it cannot move between
+            // the read and a successful flip
+            int point = reorderPoint;
+            if (STATE.compareAndSet(this, s, s ^ EPOCH_PARITY)) {
+                savedState = s;
+                savedReorderPoint = point;
+                savedEpoch = epoch;
+                return;
+            }
+        }
+    }
+
+    /** Marks a product not yet in the catalog as already in epoch. */
+    void startEpoch(long epoch) {
+        long parity = (epoch & 1) == 0 ? 0 : EPOCH_PARITY;
+        long s;
+        do {
+            s = state;
+        } while (!STATE.compareAndSet(this, s, (s & ~EPOCH_PARITY) | parity));
+    }
+
+    /**
+     * The state the product had when epoch began, whether or not it has changed
+     * since. If a writer moved it into epoch, waits for that writer's saved copy.
+     */
+    long stateBefore(long epoch) {
+        enterEpoch(epoch);
+        while (savedEpoch != epoch) Thread.yield();
+        return savedState;
+    }
+
+    /** The reorder point that goes with the state {@link #stateBefore} last returned. */
+    int reorderPointBefore() {
+        return savedReorderPoint;
+    }
+
+    static int quantity(long s) { return (int) s; }
+    private static int reserved(long s) { return (int) ((s & RESERVED_MASK) >>> RESERVED_SHIFT); }
+    static boolean active(long s) { return (s & DISCONTINUED) == 0; }
+
+    public abstract ProductCategory getCategory();
+
+    /** The category-specific fields, in constructor order. */
+    public List<ProductAttribute> getAttributes() {
+        return attributesOf(getCategory());
+    }
+
+    // Here rather than in ProductCategory, where the constant TV hides the class TV.
+    static List<ProductAttribute> attributesOf(ProductCategory category) {
+        switch (category) {
+            case REFRIGERATOR:    return Refrigerator.ATTRIBUTES;
+            case TV:              return TV.ATTRIBUTES;
+            case WASHING_MACHINE: return WashingMachine.ATTRIBUTES;
+            default:              return SmartPhone.ATTRIBUTES;
+        }
+    }
+
+    /** Creates a product of the given category whose attributes are filled in afterwards. */
+    static Product create(ProductCategory category, int itemNumber, String productName,
+                          int quantityAvailable, double productPrice) {
+        switch (category) {
+            case REFRIGERATOR:    return new Refrigerator(itemNumber, productName, quantityAvailable, productPrice);
+            case TV:              return new TV(itemNumber, productName, quantityAvailable, productPrice);
+            case WASHING_MACHINE: return new WashingMachine(itemNumber, productName, quantityAvailable, productPrice);
+            default:              return new SmartPhone(itemNumber, productName, quantityAvailable, productPrice);
+        }
+    }
+
+    /** Writes the category-specific attributes in the binary form the journal and snapshots use. */
+    abstract void writeAttributes(DataOutput out) throws IOException;
+
+    abstract void readAttributes(DataInput in) throws IOException;
+
+    /** Leaves the attributes in the snapshot until a getter or toString first needs them. */
+    void deferAttributes(CatalogSnapshot source, int slot) {
+        attributeSlot = slot;
+        attributeSource = source;
+    }
+
+    protected final void loadAttributes() {
+        if (attributeSource == null) return;
+        synchronized (this) {
+            CatalogSnapshot source = attributeSource;
+            if (source == null) return;
+            try {
+                readAttributes(source.attributeInput(attributeSlot));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Corrupt snapshot record " + attributeSlot, e);
+            }
+            attributeSource = null;
+        }
     }
 
     @Override
@@ -0,0 +1,70 @@
+import java.util.function.Function;
+
+/**
+ * A category-specific product field, read straight from the product's getter.
+ * Each Product subclass lists its attributes once, in constructor order, in a
+ * static list returned by {@link Product#getAttributes()}.
+ */
+public final class ProductAttribute {
+
+    /** The Java type of an attribute's value. */
+    public enum Kind {
+        TEXT, INTEGER, DECIMAL, YES_NO
+    }
+
+    private final String key;
+    private final String name;
+    private final Kind kind;
+    private final String unit;
+    private final Function<Product, Object> getter;
+
+    private ProductAttribute(String key, String name, Kind kind, String unit, Function<Product, Object> getter) {
+        this.key = key;
+        this.name = name;
+        this.kind = kind;
+        this.unit = unit;
+        this.getter = getter;
+    }
+
+    static <P extends Product> ProductAttribute text(Class<P> owner, String key, String name, Function<P, String> getter) {
+        return new ProductAttribute(key, name, Kind.TEXT, "", p -> getter.apply(owner.cast(p)));
+    }
+
+    static <P extends Product> ProductAttribute integer(Class<P> owner, String key, String name, String unit, Function<P, Integer> getter) {
+        return new ProductAttribute(key, name, Kind.INTEGER, unit, p -> getter.apply(owner.cast(p)));
+    }
+
+    static <P extends Product> ProductAttribute decimal(Class<P> owner, String key, String name, Function<P, Double> getter) {
+        return new ProductAttribute(key, name, Kind.DECIMAL, "", p -> getter.apply(owner.cast(p)));
+    }
+
+    static <P extends Product> ProductAttribute yesNo(Class<P> owner, String key, String name, Function<P, Boolean> getter) {
+        return new ProductAttribute(key, name, Kind.YES_NO, "", p -> getter.apply(owner.cast(p)));
+    }
+
+    /** The field's name in code and in queries, e.g. "screenType". */
+    public String getKey()  { return key; }
+    /** Label shown to users, e.g. "Screen type". */
+    public String getName() { return name; }
+    public Kind getKind()   { return kind; }
+    /** Unit appended to the formatted value, or an empty string. */
+    public String getUnit() { return unit; }
+
+    /** The value as a String, Integer, Double or Boolean according to the kind. */
+    public Object get(Product p) {
+        return getter.apply(p);
+    }
+
+    /** The value as toString() shows it. */
+    public String format(Product p) {
+        Object v = get(p);
+        switch (kind) {
+            case DECIMAL: return String.format("%.1f", (Double) v);
+            case YES_NO:  return (Boolean) v ? "Yes" : "No";
+            default:      return unit.isEmpty() ? String.valueOf(v) : v + " " + unit;
+        }
+    }
+
+    @Override
+    public String toString() { return name; }
+}
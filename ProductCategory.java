@@ -0,0 +1,35 @@
+import java.util.List;
+
+/**
+ * The product kinds the store carries. The byte code is stable and is used by the
+ * on-disk formats, so new categories must only be appended.
+ */
+public enum ProductCategory {
+    REFRIGERATOR("Refrigerator"),
+    TV("TV"),
+    WASHING_MACHINE("Washing Machine"),
+    SMARTPHONE("SmartPhone");
+
+    private static final ProductCategory[] VALUES = values();
+
+    private final String displayName;
+
+    ProductCategory(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() { return displayName; }
+    public byte code()             { return (byte) ordinal(); }
+
+    /** The attributes every product of this category has, in constructor order. */
+    public List<ProductAttribute> getAttributes() {
+        return Product.attributesOf(this);
+    }
+
+    public static ProductCategory fromCode(int code) {
+        if (code < 0 || code >= VALUES.length) {
+            throw new IllegalArgumentException("Unknown product category code: " + code);
+        }
+        return VALUES[code];
+    }
+}
@@ -0,0 +1,80 @@
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.HBox;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+
+/**
+ * List row for a product: status dot, item number, name, type and quantity.
+ * The nodes are built once per cell and only their text and colour change when
+ * the cell is reused for another product, so scrolling allocates almost nothing.
+ */
+class ProductListCell extends ListCell<Product> {
+    private static final Font STATUS_FONT = Font.font("System", 14);
+    private static final Font ID_FONT = Font.font("Segoe UI", FontWeight.BOLD, 15);
+    private static final Font TEXT_FONT = Font.font("Segoe UI", 13);
+    private static final Color ACTIVE = Color.web("#2ecc71");
+    private static final Color DISCONTINUED = Color.web("#e74c3c");
+
+    private final StockManagement stockManager;
+    private final HBox box = new HBox(10);
+    private final Label status = new Label("•");
+    private final Label id = new Label();
+    private final Label name = new Label();
+    private final Label type = new Label();
+    private final Label qty = new Label();
+    private Tooltip tooltip; // created on first hover
+
+    ProductListCell(StockManagement stockManager) {
+        this.stockManager = stockManager;
+        box.setAlignment(Pos.CENTER_LEFT);
+        status.setFont(STATUS_FONT);
+        status.setStyle("-fx-cursor: hand;");
+        id.setFont(ID_FONT);
+        name.setFont(TEXT_FONT);
+        type.setFont(TEXT_FONT);
+        qty.setFont(TEXT_FONT);
+        box.getChildren().addAll(status, id, name, type, qty);
+
+        status.setOnMouseEntered(e -> {
+            if (tooltip == null && getItem() != null) {
+                tooltip = new Tooltip(statusText(getItem()));
+                Tooltip.install(status, tooltip);
+            }
+        });
+        // Clicking the dot toggles the status; the list updater then redraws the row
+        status.setOnMouseClicked(e -> {
+            Product item = getItem();
+            if (item != null) stockManager.setProductStatus(item.getItemNumber(), !item.isProductStatus());
+        });
+    }
+
+    @Override
+    protected void updateItem(Product item, boolean empty) {
+        super.updateItem(item, empty);
+        setText(null);
+        if (empty || item == null) {
+            setGraphic(null);
+        } else {
+            render(item);
+            setGraphic(box);
+        }
+    }
+
+    private void render(Product item) {
+        boolean active = item.isProductStatus();
+        status.setTextFill(active ? ACTIVE : DISCONTINUED);
+        if (tooltip != null) tooltip.setText(statusText(item));
+        id.setText(Product.formatItemNumber(item.getItemNumber()));
+        name.setText(item.getProductName());
+        type.setText(item.getCategory().getDisplayName());
+        qty.setText("Qty: " + item.getQuantityAvailable());
+    }
+
+    private static String statusText(Product item) {
+        return item.isProductStatus() ? "Active" : "Discontinued";
+    }
+}
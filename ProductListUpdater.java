@@ -0,0 +1,112 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+
+/**
+ * Keeps the GUI's product list in step with StockManagement one row at a time.
+ * Changes can arrive on any thread; they are merged per product and applied once
+ * per pulse on the FX thread, where a changed product becomes a single set() on
+ * its row so only that cell re-renders.
+ */
+class ProductListUpdater implements StockListener {
+    private enum Change { ADDED, UPDATED, REMOVED }
+
+    private final ObservableList<Product> list;
+    private final IntIntHashMap rows = new IntIntHashMap(64, -1); // item number to index, FX thread only
+
+    // Guarded by this
+    private Map<Product, Change> pending = new LinkedHashMap<>();
+    private boolean scheduled;
+
+    ProductListUpdater(ObservableList<Product> list) {
+        this.list = list;
+    }
+
+    /** Replaces the whole list. Call on the FX thread. */
+    void reset(List<Product> products) {
+        list.setAll(products);
+        reindex();
+    }
+
+    @Override
+    public void productAdded(Product p) {
+        post(p, Change.ADDED);
+    }
+
+    @Override
+    public void productRemoved(Product p) {
+        post(p, Change.REMOVED);
+    }
+
+    @Override
+    public void quantityChanged(Product p, int delta, boolean active) {
+        post(p, Change.UPDATED);
+    }
+
+    @Override
+    public void statusChanged(Product p, boolean active, int quantity) {
+        post(p, Change.UPDATED);
+    }
+
+    private synchronized void post(Product p, Change change) {
+        Change before = pending.get(p);
+        if (before == Change.ADDED && change == Change.REMOVED) {
+            pending.remove(p);
+        } else if (before == Change.REMOVED && change == Change.ADDED) {
+            pending.put(p, Change.UPDATED);
+        } else if (before == null || change == Change.REMOVED) {
+            pending.put(p, change);
+        } // an update after an add or another update adds nothing
+        if (!scheduled) {
+            scheduled = true;
+            Platform.runLater(this::apply);
+        }
+    }
+
+    private void apply() {
+        Map<Product, Change> changes;
+        synchronized (this) {
+            changes = pending;
+            pending = new LinkedHashMap<>();
+            scheduled = false;
+        }
+        Set<Product> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Map.Entry<Product, Change> e : changes.entrySet()) {
+            if (e.getValue() == Change.REMOVED && rowOf(e.getKey()) >= 0) removed.add(e.getKey());
+        }
+        if (!removed.isEmpty()) {
+            list.removeIf(removed::contains); // one change event for all of them
+            reindex();
+        }
+
+        List<Product> added = new ArrayList<>();
+        for (Map.Entry<Product, Change> e : changes.entrySet()) {
+            Product p = e.getKey();
+            int row = rowOf(p);
+            if (e.getValue() == Change.ADDED && row < 0) added.add(p);
+            else if (e.getValue() == Change.UPDATED && row >= 0) list.set(row, p);
+        }
+        if (!added.isEmpty()) {
+            int row = list.size();
+            for (Product p : added) rows.put(p.getItemNumber(), row++);
+            list.addAll(added);
+        }
+    }
+
+    /** Row showing exactly this product, or -1. */
+    private int rowOf(Product p) {
+        int row = rows.get(p.getItemNumber());
+        return row >= 0 && list.get(row) == p ? row : -1;
+    }
+
+    private void reindex() {
+        rows.clear();
+        for (int i = 0; i < list.size(); i++) rows.put(list.get(i).getItemNumber(), i);
+    }
+}
@@ -0,0 +1,194 @@
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/**
+ * A filter over the catalog: categories, status, price and quantity ranges, and
+ * tests on category attributes by their key ({@link ProductAttribute#getKey()}).
+ * Each call narrows the query and returns it, e.g. active TVs under RM 2000 with
+ * fewer than 5 in stock:
+ *
+ *   new ProductQuery().category(ProductCategory.TV).active(true).priceBelow(2000).quantityBelow(5)
+ *
+ * Ranges include their lower bound and exclude their upper bound. Run it with
+ * {@link StockManagement#query}, or test single products with {@link #matches}.
+ */
+public final class ProductQuery {
+
+    /** A test on one attribute, resolved to its position in each category's list. */
+    private static final class AttributeTest {
+        final String key;
+        final int[] position = new int[ProductCategory.values().length]; // -1 if the category lacks it
+        final Object value;       // for equality tests, else null
+        final double from, to;    // for range tests
+
+        AttributeTest(String key, Object value, double from, double to) {
+            this.key = key;
+            this.value = value;
+            this.from = from;
+            this.to = to;
+        }
+
+        boolean test(Product p) {
+            int at = position[p.getCategory().ordinal()];
+            if (at < 0) return false;
+            ProductAttribute a = p.getAttributes().get(at);
+            Object v = a.get(p);
+            if (value == null) {
+                double d = ((Number) v).doubleValue();
+                return d >= from && d < to;
+            }
+            switch (a.getKind()) {
+                case TEXT:    return ((String) v).equalsIgnoreCase((String) value);
+                case YES_NO:  return v.equals(value);
+                default:      return ((Number) v).doubleValue() == ((Number) value).doubleValue();
+            }
+        }
+    }
+
+    private EnumSet<ProductCategory> categories = EnumSet.allOf(ProductCategory.class);
+    private Boolean active;
+    private double minPrice = Double.NEGATIVE_INFINITY, maxPrice = Double.POSITIVE_INFINITY;
+    private int minQuantity = Integer.MIN_VALUE;
+    private long maxQuantity = Long.MAX_VALUE;
+    private final List<AttributeTest> attributes = new ArrayList<>();
+
+    /** Only products of these categories. Repeated calls intersect. */
+    public ProductQuery category(ProductCategory first, ProductCategory... more) {
+        categories.retainAll(EnumSet.of(first, more));
+        return this;
+    }
+
+    /** Only active products, or only discontinued ones. */
+    public ProductQuery active(boolean active) {
+        this.active = active;
+        return this;
+    }
+
+    /** from <= price < to. */
+    public ProductQuery price(double from, double to) {
+        minPrice = Math.max(minPrice, from);
+        maxPrice = Math.min(maxPrice, to);
+        return this;
+    }
+
+    public ProductQuery priceBelow(double to) {
+        return price(Double.NEGATIVE_INFINITY, to);
+    }
+
+    /** from <= quantity < to. */
+    public ProductQuery quantity(int from, int to) {
+        minQuantity = Math.max(minQuantity, from);
+        maxQuantity = Math.min(maxQuantity, to);
+        return this;
+    }
+
+    public ProductQuery quantityBelow(int to) {
+        return quantity(Integer.MIN_VALUE, to);
+    }
+
+    /**
+     * The attribute equals value: a String (ignoring case) for text attributes, a
+     * Boolean for yes/no ones, a Number for numeric ones. Products of categories
+     * without the attribute do not match.
+     */
+    public ProductQuery attribute(String key, Object value) {
+        if (value == null) throw new IllegalArgumentException("value must not be null");
+        AttributeTest t = new AttributeTest(key, value, 0, 0);
+        resolve(t, k -> k == ProductAttribute.Kind.TEXT ? value instanceof String
+                      : k == ProductAttribute.Kind.YES_NO ? value instanceof Boolean
+                      : value instanceof Number);
+        attributes.add(t);
+        return this;
+    }
+
+    /** from <= attribute < to, for a numeric attribute. */
+    public ProductQuery attributeBetween(String key, double from, double to) {
+        AttributeTest t = new AttributeTest(key, null, from, to);
+        resolve(t, k -> k == ProductAttribute.Kind.INTEGER || k == ProductAttribute.Kind.DECIMAL);
+        attributes.add(t);
+        return this;
+    }
+
+    private void resolve(AttributeTest t, Predicate<ProductAttribute.Kind> accepts) {
+        boolean found = false;
+        for (ProductCategory c : ProductCategory.values()) {
+            List<ProductAttribute> list = c.getAttributes();
+            t.position[c.ordinal()] = -1;
+            for (int i = 0; i < list.size(); i++) {
+                if (!list.get(i).getKey().equalsIgnoreCase(t.key)) continue;
+                if (!accepts.test(list.get(i).getKind())) {
+                    throw new IllegalArgumentException("Wrong kind of value for " + t.key + ", a "
+                        + list.get(i).getKind().name().toLowerCase(Locale.ROOT) + " attribute");
+                }
+                t.position[c.ordinal()] = i;
+                found = true;
+            }
+        }
+        if (!found) throw new IllegalArgumentException("Unknown attribute " + t.key);
+    }
+
+    // --- Read by the planner ---
+
+    /** The categories a match can be in, after the attribute tests rule some out. */
+    EnumSet<ProductCategory> getCategories() {
+        EnumSet<ProductCategory> possible = EnumSet.copyOf(categories);
+        for (AttributeTest t : attributes) {
+            for (ProductCategory c : ProductCategory.values()) {
+                if (t.position[c.ordinal()] < 0) possible.remove(c);
+            }
+        }
+        return possible;
+    }
+
+    /** TRUE or FALSE to match one status only, null for both. */
+    Boolean getActive()     { return active; }
+    double getMinPrice()    { return minPrice; }
+    double getMaxPrice()    { return maxPrice; }
+    double getMinQuantity() { return minQuantity; }
+    double getMaxQuantity() { return maxQuantity; }
+
+    boolean hasPriceRange()    { return minPrice > Double.NEGATIVE_INFINITY || maxPrice < Double.POSITIVE_INFINITY; }
+    boolean hasQuantityRange() { return minQuantity > Integer.MIN_VALUE || maxQuantity < Long.MAX_VALUE; }
+
+    // --- Evaluation ---
+
+    public boolean matches(Product p) {
+        if (!categories.contains(p.getCategory())) return false;
+        if (active != null && p.isProductStatus() != active) return false;
+        double price = p.getProductPrice();
+        if (price < minPrice || price >= maxPrice) return false;
+        int qty = p.getQuantityAvailable();
+        if (qty < minQuantity || qty >= maxQuantity) return false;
+        for (AttributeTest t : attributes) {
+            if (!t.test(p)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("category in ").append(categories);
+        if (active != null) sb.append(active ? " and active" : " and discontinued");
+        range(sb, "price", minPrice, maxPrice,
+            minPrice > Double.NEGATIVE_INFINITY, maxPrice < Double.POSITIVE_INFINITY);
+        range(sb, "quantity", minQuantity, maxQuantity,
+            minQuantity > Integer.MIN_VALUE, maxQuantity < Long.MAX_VALUE);
+        for (AttributeTest t : attributes) {
+            sb.append(" and ").append(t.key);
+            if (t.value != null) sb.append(" = ").append(t.value);
+            else sb.append(" in [").append(t.from).append(", ").append(t.to).append(')');
+        }
+        return sb.toString();
+    }
+
+    private static void range(StringBuilder sb, String name, Number min, Number max, boolean low, boolean high) {
+        if (!low && !high) return;
+        sb.append(" and ");
+        if (low) sb.append(min).append(" <= ");
+        sb.append(name);
+        if (high) sb.append(" < ").append(max);
+    }
+}
@@ -0,0 +1,293 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Secondary indexes for {@link ProductQuery}: one bitmap of rows per category and
+ * one of active rows, the price and quantity orders of {@link SortedProductView},
+ * and a histogram of prices and of quantities to estimate how many products a
+ * range holds.
+ *
+ * For each query a small planner estimates how many candidates each index would
+ * hand over (exactly for the bitmaps, from the histogram for the ranges), reads
+ * the smallest, and tests only those candidates against the whole query.
+ */
+public class ProductQueryIndex implements StockListener {
+
+    /** The index a plan reads its candidates from. */
+    public enum Access { CATEGORY_BITMAP, PRICE_RANGE, QUANTITY_RANGE, FULL_SCAN }
+
+    /** The planner's choice for one query and the candidates it expects. */
+    public static final class Plan {
+        private final Access access;
+        private final long estimate;
+
+        Plan(Access access, long estimate) {
+            this.access = access;
+            this.estimate = estimate;
+        }
+
+        public Access getAccess()  { return access; }
+        public long getEstimate()  { return estimate; }
+
+        @Override
+        public String toString() { return access + " (~" + estimate + " candidates)"; }
+    }
+
+    /** A product's row in the bitmaps and the quantity it is counted under. */
+    private static final class Row {
+        final Product product;
+        final int slot;
+        int filedQuantity; // guarded by product
+
+        Row(Product product, int slot) {
+            this.product = product;
+            this.slot = slot;
+        }
+    }
+
+    private static final Comparator<Product> BY_ITEM_NUMBER = Comparator.comparingInt(Product::getItemNumber);
+    private static final int CATEGORIES = ProductCategory.values().length;
+
+    private final SortedProductView byPrice;
+    private final SortedProductView byQuantity;
+    private final Histogram prices = new Histogram();
+    private final Histogram quantities = new Histogram();
+    private final IntHashMap<Row> rows = new IntHashMap<>(); // written under this, read freely
+
+    // Guarded by this
+    private Product[] slots = new Product[64];
+    private final long[][] categoryBits = new long[CATEGORIES][1];
+    private long[] activeBits = new long[1];
+    private final long[][] counts = new long[CATEGORIES][2]; // [category][active ? 1 : 0]
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int slotCount;
+
+    /** byPrice and byQuantity must be views in PRICE and QUANTITY order of the same catalog. */
+    public ProductQueryIndex(SortedProductView byPrice, SortedProductView byQuantity) {
+        if (byPrice.getOrder() != SortedProductView.Order.PRICE
+                || byQuantity.getOrder() != SortedProductView.Order.QUANTITY) {
+            throw new IllegalArgumentException("Need the PRICE and QUANTITY views");
+        }
+        this.byPrice = byPrice;
+        this.byQuantity = byQuantity;
+    }
+
+    // --- Planning and execution ---
+
+    /** Picks the access path with the fewest expected candidates. */
+    public Plan plan(ProductQuery q) {
+        EnumSet<ProductCategory> categories = q.getCategories();
+        Boolean active = q.getActive();
+        long all = 0, bitmap = 0;
+        synchronized (this) {
+            for (ProductCategory c : ProductCategory.values()) {
+                long[] n = counts[c.ordinal()];
+                all += n[0] + n[1];
+                if (!categories.contains(c)) continue;
+                bitmap += active == null ? n[0] + n[1] : n[active ? 1 : 0];
+            }
+        }
+        Plan best = bitmap < all ? new Plan(Access.CATEGORY_BITMAP, bitmap) : new Plan(Access.FULL_SCAN, all);
+        if (q.hasPriceRange()) {
+            long n = prices.estimate(q.getMinPrice(), q.getMaxPrice());
+            if (n < best.estimate) best = new Plan(Access.PRICE_RANGE, n);
+        }
+        if (q.hasQuantityRange()) {
+            long n = quantities.estimate(q.getMinQuantity(), q.getMaxQuantity());
+            if (n < best.estimate) best = new Plan(Access.QUANTITY_RANGE, n);
+        }
+        return best;
+    }
+
+    /** The products matching q, in item number order. */
+    public List<Product> execute(ProductQuery q) {
+        Plan plan = plan(q);
+        List<Product> hits = new ArrayList<>();
+        switch (plan.access) {
+            case PRICE_RANGE:
+                for (Product p : byPrice.between(q.getMinPrice(), q.getMaxPrice())) {
+                    if (q.matches(p)) hits.add(p);
+                }
+                break;
+            case QUANTITY_RANGE:
+                for (Product p : byQuantity.between(q.getMinQuantity(), q.getMaxQuantity())) {
+                    if (q.matches(p)) hits.add(p);
+                }
+                break;
+            default:
+                scanBitmap(q, plan.access == Access.FULL_SCAN, hits);
+                break;
+        }
+        hits.sort(BY_ITEM_NUMBER);
+        return hits;
+    }
+
+    private void scanBitmap(ProductQuery q, boolean everything, List<Product> hits) {
+        long[] candidates;
+        Product[] rowsNow;
+        synchronized (this) {
+            int words = (slotCount + 63) >>> 6;
+            candidates = new long[words];
+            EnumSet<ProductCategory> categories = everything ? EnumSet.allOf(ProductCategory.class) : q.getCategories();
+            for (ProductCategory c : categories) {
+                long[] bits = categoryBits[c.ordinal()];
+                for (int w = 0; w < words; w++) candidates[w] |= bits[w];
+            }
+            Boolean active = everything ? null : q.getActive();
+            if (active != null) {
+                for (int w = 0; w < words; w++) candidates[w] &= active ? activeBits[w] : ~activeBits[w];
+            }
+            rowsNow = slots;
+        }
+        for (int w = 0; w < candidates.length; w++) {
+            for (long bits = candidates[w]; bits != 0; bits &= bits - 1) {
+                Product p = rowsNow[(w << 6) + Long.numberOfTrailingZeros(bits)];
+                if (p != null && q.matches(p)) hits.add(p);
+            }
+        }
+    }
+
+    // --- Kept current by StockManagement ---
+
+    @Override
+    public void productAdded(Product p) {
+        synchronized (p) {
+            if (rows.containsKey(p.getItemNumber())) return;
+            Row r;
+            synchronized (this) {
+                int slot = freeCount > 0 ? freeSlots[--freeCount] : slotCount++;
+                ensureCapacity(slotCount);
+                slots[slot] = p;
+                r = new Row(p, slot);
+                set(categoryBits[p.getCategory().ordinal()], slot, true);
+                boolean active = p.isProductStatus();
+                set(activeBits, slot, active);
+                counts[p.getCategory().ordinal()][active ? 1 : 0]++;
+                r.filedQuantity = p.getQuantityAvailable();
+                rows.put(p.getItemNumber(), r);
+            }
+            quantities.add(r.filedQuantity, 1);
+            prices.add(p.getProductPrice(), 1);
+        }
+    }
+
+    @Override
+    public void productRemoved(Product p) {
+        synchronized (p) {
+            Row r = rows.get(p.getItemNumber());
+            if (r == null || r.product != p) return;
+            quantities.add(r.filedQuantity, -1);
+            prices.add(p.getProductPrice(), -1);
+            synchronized (this) {
+                rows.remove(p.getItemNumber());
+                slots[r.slot] = null;
+                set(categoryBits[p.getCategory().ordinal()], r.slot, false);
+                counts[p.getCategory().ordinal()][get(activeBits, r.slot) ? 1 : 0]--;
+                set(activeBits, r.slot, false);
+                if (freeCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+                freeSlots[freeCount++] = r.slot;
+            }
+        }
+    }
+
+    @Override
+    public void quantityChanged(Product p, int delta, boolean active) {
+        // Re-reads the live quantity, like SortedProductView, so racing changes
+        // leave the histogram counting the latest value
+        synchronized (p) {
+            Row r = rows.get(p.getItemNumber());
+            if (r == null || r.product != p) return;
+            int now = p.getQuantityAvailable();
+            if (now == r.filedQuantity) return;
+            quantities.add(r.filedQuantity, -1);
+            quantities.add(now, 1);
+            r.filedQuantity = now;
+        }
+    }
+
+    @Override
+    public void statusChanged(Product p, boolean active, int quantity) {
+        synchronized (p) {
+            Row r = rows.get(p.getItemNumber());
+            if (r == null || r.product != p) return;
+            synchronized (this) {
+                boolean now = p.isProductStatus();
+                boolean was = get(activeBits, r.slot);
+                if (now == was) return;
+                set(activeBits, r.slot, now);
+                counts[p.getCategory().ordinal()][was ? 1 : 0]--;
+                counts[p.getCategory().ordinal()][now ? 1 : 0]++;
+            }
+        }
+    }
+
+    private void ensureCapacity(int rowsNeeded) {
+        if (rowsNeeded > slots.length) slots = Arrays.copyOf(slots, Math.max(rowsNeeded, slots.length * 2));
+        int words = (slots.length + 63) >>> 6;
+        if (activeBits.length < words) {
+            activeBits = Arrays.copyOf(activeBits, words);
+            for (int c = 0; c < CATEGORIES; c++) categoryBits[c] = Arrays.copyOf(categoryBits[c], words);
+        }
+    }
+
+    private static void set(long[] bits, int slot, boolean on) {
+        if (on) bits[slot >>> 6] |= 1L << slot;
+        else bits[slot >>> 6] &= ~(1L << slot);
+    }
+
+    private static boolean get(long[] bits, int slot) {
+        return (bits[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    /**
+     * Counts of values in buckets a quarter of a power of two wide, from 1 up;
+     * everything below 1 shares the first bucket. A range's count is estimated by
+     * assuming values spread evenly inside each bucket.
+     */
+    static final class Histogram {
+        private static final int BUCKETS = 1 + 4 * 64;
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+        void add(double value, int delta) {
+            counts.addAndGet(bucket(value), delta);
+        }
+
+        long estimate(double from, double to) {
+            if (!(from < to)) return 0;
+            double total = 0;
+            for (int b = bucket(from), last = bucket(to); b <= last; b++) {
+                long n = counts.get(b);
+                if (n == 0) continue;
+                double lo = lower(b), hi = lower(b + 1);
+                if (from <= lo && to >= hi) {
+                    total += n;
+                } else if (Double.isInfinite(lo) || Double.isInfinite(hi)) {
+                    total += n; // no width to take a fraction of
+                } else {
+                    total += n * (Math.min(to, hi) - Math.max(from, lo)) / (hi - lo);
+                }
+            }
+            return (long) Math.ceil(total);
+        }
+
+        static int bucket(double v) {
+            if (!(v >= 1)) return 0;
+            int exponent = Math.getExponent(v);
+            int quarter = (int) ((Double.doubleToRawLongBits(v) >>> 50) & 3);
+            return Math.min(BUCKETS - 1, 1 + 4 * exponent + quarter);
+        }
+
+        /** The smallest value in bucket b. */
+        static double lower(int b) {
+            if (b == 0) return Double.NEGATIVE_INFINITY;
+            if (b >= BUCKETS) return Double.POSITIVE_INFINITY;
+            int exponent = (b - 1) >> 2, quarter = (b - 1) & 3;
+            return Math.scalb(1 + quarter / 4.0, exponent);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Word search over product names and text attributes (brand, model, color, screen
+ * type, door design, machine type, resolution). Every word of a product is a key
+ * in a sorted dictionary pointing at the item numbers that contain it, so a word
+ * prefix is a range of keys and search-as-you-type needs no scan of the catalog.
+ *
+ * A query matches a product when each of its words is the start of one of the
+ * product's words. Products matching on their name alone come first, then those
+ * that need their attributes, each group in item number order. Kept current by
+ * StockManagement as products are added and removed.
+ */
+public class ProductSearchIndex implements StockListener {
+
+    /**
+     * Item numbers of the products containing one word, ascending. Once emptied it
+     * is dead: it leaves its dictionary and takes no more items, so a racing add
+     * makes a fresh one instead of adding to one no longer reachable.
+     */
+    private static final class Postings {
+        final String word;
+        private int[] items = new int[2];
+        private int size;
+        private boolean dead;
+
+        Postings(String word) {
+            this.word = word;
+        }
+
+        // Readers keep the array and size they were handed; a writer only ever
+        // appends past that size or replaces the array, so neither needs a copy.
+
+        /** Adds item unless this is dead; false if it is. */
+        synchronized boolean add(int item) {
+            if (dead) return false;
+            int at = Arrays.binarySearch(items, 0, size, item);
+            if (at >= 0) return true;
+            at = -at - 1;
+            if (at == size && size < items.length) {
+                items[size++] = item;
+                return true;
+            }
+            int[] grown = new int[size < items.length ? items.length : items.length * 2];
+            System.arraycopy(items, 0, grown, 0, at);
+            grown[at] = item;
+            System.arraycopy(items, at, grown, at + 1, size - at);
+            items = grown;
+            size++;
+            return true;
+        }
+
+        /** Removes item; true if that left this empty, and so dead. */
+        synchronized boolean remove(int item) {
+            int at = Arrays.binarySearch(items, 0, size, item);
+            if (at < 0) return false;
+            int[] shrunk = new int[items.length];
+            System.arraycopy(items, 0, shrunk, 0, at);
+            System.arraycopy(items, at + 1, shrunk, at, size - at - 1);
+            items = shrunk;
+            size--;
+            return dead = size == 0;
+        }
+
+        synchronized int size() { return size; }
+
+        synchronized Cursor cursor() { return new Cursor(items, size); }
+    }
+
+    private static final class Cursor {
+        final int[] items;
+        final int size;
+        int pos;
+
+        Cursor(int[] items, int size) {
+            this.items = items;
+            this.size = size;
+        }
+
+        int current() { return items[pos]; }
+    }
+
+    /** An indexed product and the dictionary entries of its words. */
+    private static final class Doc {
+        final Product product;
+        final Postings[] name; // words of the name, in the name dictionary
+        final Postings[] text; // words of the name and attributes, in the text dictionary
+
+        Doc(Product product, Postings[] name, Postings[] text) {
+            this.product = product;
+            this.name = name;
+            this.text = text;
+        }
+    }
+
+    private final ConcurrentSkipListMap<String, Postings> nameWords = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, Postings> textWords = new ConcurrentSkipListMap<>();
+    private final IntHashMap<Doc> docs = new IntHashMap<>(); // written under its own lock, read freely
+
+    public int size() { return docs.size(); }
+
+    /**
+     * Up to limit products matching every word of query, best matches first.
+     * An empty query matches nothing.
+     */
+    public List<Product> search(String query, int limit) {
+        String[] terms = words(query);
+        if (terms.length == 0 || limit <= 0) return Collections.emptyList();
+        // Longer words tend to be rarer, and bound the work spent sizing the rest
+        Arrays.sort(terms, Comparator.comparingInt(String::length).reversed());
+        List<Product> hits = new ArrayList<>(Math.min(limit, 64));
+        collect(nameWords, terms, true, limit, hits);
+        if (hits.size() < limit) collect(textWords, terms, false, limit, hits);
+        return hits;
+    }
+
+    /**
+     * Walks the item numbers of the rarest term in ascending order and keeps the
+     * products whose other words match as well.
+     */
+    private void collect(ConcurrentSkipListMap<String, Postings> dictionary, String[] terms,
+                         boolean nameOnly, int limit, List<Product> hits) {
+        List<Postings> driver = null;
+        long fewest = Long.MAX_VALUE;
+        for (String term : terms) {
+            List<Postings> matches = new ArrayList<>();
+            long count = 0;
+            for (Postings p : prefixRange(dictionary, term).values()) {
+                matches.add(p);
+                count += p.size();
+                if (count >= fewest) break; // cannot be the rarest
+            }
+            if (count == 0) return;
+            if (count < fewest) {
+                fewest = count;
+                driver = matches;
+            }
+        }
+        Merge items = new Merge(driver);
+        for (int item; hits.size() < limit && (item = items.next()) >= 0; ) {
+            Doc d = docs.get(item);
+            if (d == null) continue;
+            if (nameOnly) {
+                if (matchesAll(d.name, terms)) hits.add(d.product);
+            } else if (matchesAll(d.text, terms) && !matchesAll(d.name, terms)) { // name matches came first
+                hits.add(d.product);
+            }
+        }
+    }
+
+    private static Map<String, Postings> prefixRange(ConcurrentSkipListMap<String, Postings> dictionary, String prefix) {
+        return dictionary.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    private static boolean matchesAll(Postings[] words, String[] terms) {
+        for (String term : terms) {
+            boolean found = false;
+            for (Postings w : words) {
+                if (w.word.startsWith(term)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    /** The union of several postings in ascending order, each item once. */
+    private static final class Merge {
+        private final Cursor single;
+        private final PriorityQueue<Cursor> heap;
+        private int last = -1;
+
+        Merge(List<Postings> postings) {
+            if (postings.size() == 1) {
+                single = postings.get(0).cursor();
+                heap = null;
+            } else {
+                single = null;
+                heap = new PriorityQueue<>(postings.size(), Comparator.comparingInt(Cursor::current));
+                for (Postings p : postings) {
+                    Cursor c = p.cursor();
+                    if (c.size > 0) heap.add(c);
+                }
+            }
+        }
+
+        /** The next item number, or -1 at the end. */
+        int next() {
+            if (single != null) return single.pos < single.size ? single.items[single.pos++] : -1;
+            while (!heap.isEmpty()) {
+                Cursor c = heap.poll();
+                int item = c.items[c.pos++];
+                if (c.pos < c.size) heap.add(c);
+                if (item != last) return last = item;
+            }
+            return -1;
+        }
+    }
+
+    // --- Kept current by StockManagement ---
+
+    @Override
+    public void productAdded(Product p) {
+        synchronized (p) {
+            int item = p.getItemNumber();
+            if (docs.containsKey(item)) return;
+            String[] nameTerms = words(p.getProductName());
+            List<String> textTerms = new ArrayList<>(Arrays.asList(nameTerms));
+            for (ProductAttribute a : p.getAttributes()) {
+                if (a.getKind() != ProductAttribute.Kind.TEXT) continue;
+                for (String w : words((String) a.get(p))) {
+                    if (!textTerms.contains(w)) textTerms.add(w);
+                }
+            }
+            Postings[] name = new Postings[nameTerms.length];
+            for (int i = 0; i < name.length; i++) name[i] = post(nameWords, nameTerms[i], item);
+            Postings[] text = new Postings[textTerms.size()];
+            for (int i = 0; i < text.length; i++) text[i] = post(textWords, textTerms.get(i), item);
+            synchronized (docs) {
+                docs.put(item, new Doc(p, name, text));
+            }
+        }
+    }
+
+    @Override
+    public void productRemoved(Product p) {
+        synchronized (p) {
+            Doc d = docs.get(p.getItemNumber());
+            if (d == null || d.product != p) return;
+            synchronized (docs) {
+                docs.remove(p.getItemNumber());
+            }
+            for (Postings w : d.name) unpost(nameWords, w, p.getItemNumber());
+            for (Postings w : d.text) unpost(textWords, w, p.getItemNumber());
+        }
+    }
+
+    private static Postings post(ConcurrentSkipListMap<String, Postings> dictionary, String word, int item) {
+        while (true) {
+            Postings p = dictionary.computeIfAbsent(word, Postings::new);
+            if (p.add(item)) return p;
+            dictionary.remove(word, p); // dead, and its remover may not have got to it yet
+        }
+    }
+
+    /** Removes item from the word's postings, and the word from the dictionary once no product has it. */
+    private static void unpost(ConcurrentSkipListMap<String, Postings> dictionary, Postings p, int item) {
+        if (p.remove(item)) dictionary.remove(p.word, p);
+    }
+
+    /** The distinct lower-case words of text: runs of letters and digits. */
+    static String[] words(String text) {
+        if (text == null) return new String[0];
+        List<String> words = new ArrayList<>(4);
+        int n = text.length();
+        for (int i = 0; i < n; ) {
+            while (i < n && !Character.isLetterOrDigit(text.charAt(i))) i++;
+            int start = i;
+            while (i < n && Character.isLetterOrDigit(text.charAt(i))) i++;
+            if (i > start) {
+                String w = text.substring(start, i).toLowerCase(Locale.ROOT);
+                if (!words.contains(w)) words.add(w);
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,267 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Input rules for products and user names, shared by the console, the GUI add form
+ * and CSV import. Character classes are ASCII bitmasks built once, so a check is a
+ * loop over the input instead of String.matches, which compiles its regular
+ * expression on every call.
+ *
+ * {@link #validate} checks a whole add-product record in one pass, reports every
+ * field that fails, and builds the product when none does.
+ */
+public final class ProductValidator {
+
+    private static final long[] LETTERS_AND_SPACES = charClass("A-Za-z ");
+    private static final long[] SURNAME = charClass("A-Za-z '/");
+    private static final long[] DIGITS = charClass("0-9");
+
+    /** How a category-specific field is checked and converted. */
+    private enum Rule { LETTERS, NOT_EMPTY, POSITIVE_INTEGER, POSITIVE_DECIMAL, TRUE_FALSE }
+
+    // Labels and rules of the three attribute fields, indexed by category ordinal
+    private static final String[][] ATTRIBUTE_LABELS = {
+        {"Door design", "Color", "Capacity"},
+        {"Screen type", "Resolution", "Display size"},
+        {"Drum size", "Machine type", "Has Dryer"},
+        {"Brand", "Model", "Battery capacity"},
+    };
+    private static final Rule[][] ATTRIBUTE_RULES = {
+        {Rule.LETTERS, Rule.LETTERS, Rule.POSITIVE_DECIMAL},
+        {Rule.LETTERS, Rule.NOT_EMPTY, Rule.POSITIVE_DECIMAL},
+        {Rule.POSITIVE_INTEGER, Rule.LETTERS, Rule.TRUE_FALSE},
+        {Rule.LETTERS, Rule.NOT_EMPTY, Rule.POSITIVE_INTEGER},
+    };
+
+    private ProductValidator() { }
+
+    /** One failed rule: the field's label and a message for the user. */
+    public static final class FieldError {
+        private final String field;
+        private final String message;
+
+        FieldError(String field, String message) {
+            this.field = field;
+            this.message = message;
+        }
+
+        public String getField()   { return field; }
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() { return message; }
+    }
+
+    /** The outcome of {@link #validate}: the errors, or the product the record describes. */
+    public static final class Result {
+        private final List<FieldError> errors;
+        private final int itemNumber;
+        private final Product product;
+
+        private Result(List<FieldError> errors, int itemNumber, Product product) {
+            this.errors = errors;
+            this.itemNumber = itemNumber;
+            this.product = product;
+        }
+
+        public boolean isValid()            { return errors.isEmpty(); }
+        public List<FieldError> getErrors() { return errors; }
+
+        /** The parsed item number, or -1 when that field failed. Set even if other fields failed. */
+        public int getItemNumber()          { return itemNumber; }
+
+        /** The new product, or null unless the record is valid. */
+        public Product getProduct()         { return product; }
+
+        /** The error messages joined with separator. */
+        public String describe(String separator) {
+            StringBuilder sb = new StringBuilder();
+            for (FieldError e : errors) {
+                if (sb.length() > 0) sb.append(separator);
+                sb.append(e.getMessage());
+            }
+            return sb.toString();
+        }
+    }
+
+    // --- Character classes ---
+
+    /** Letters and spaces, at least one character. */
+    public static boolean isLettersAndSpaces(CharSequence s) {
+        return allIn(LETTERS_AND_SPACES, s);
+    }
+
+    /** Letters, spaces, / and ', at least one character. */
+    public static boolean isSurname(CharSequence s) {
+        return allIn(SURNAME, s);
+    }
+
+    /** ASCII digits, at least one. */
+    public static boolean isDigits(CharSequence s) {
+        return allIn(DIGITS, s);
+    }
+
+    /** Exactly four ASCII digits. */
+    public static boolean isItemNumber(CharSequence s) {
+        return s.length() == 4 && allIn(DIGITS, s);
+    }
+
+    /** Why a first name is unacceptable, or null if it is fine. */
+    public static String nameError(String input) {
+        if (input == null || input.trim().isEmpty()) return "Input cannot be empty.";
+        return isLettersAndSpaces(input) ? null : "Invalid input. Letters and spaces only.";
+    }
+
+    /** Why a surname is unacceptable, or null if it is fine. */
+    public static String surnameError(String input) {
+        if (input == null || input.trim().isEmpty()) return "Input cannot be empty.";
+        return isSurname(input) ? null : "Invalid surname. Letters, spaces, / and ' only.";
+    }
+
+    // --- Records ---
+
+    /**
+     * Checks the fields of the add-product form: a category (null when none was
+     * chosen), then the item number, name, quantity, price and the category's three
+     * attributes in {@link Product#getAttributes()} order, all as typed. Whether the
+     * item number is already in use is left to the caller.
+     */
+    public static Result validate(ProductCategory category, String itemNumber, String name,
+                                  String quantity, String price, String a1, String a2, String a3) {
+        List<FieldError> errors = null;
+
+        String itemText = trim(itemNumber);
+        int item = isItemNumber(itemText) ? Integer.parseInt(itemText) : -1;
+        if (item < 0) {
+            errors = add(errors, "Item number", "Item number must be exactly 4 digits");
+        } else if (item == 0) {
+            errors = add(errors, "Item number", "Item number must be a positive number");
+            item = -1;
+        }
+        String productName = name == null ? "" : name;
+        if (!isLettersAndSpaces(productName)) {
+            errors = add(errors, "Product name", "Product name must contain only letters and spaces");
+        }
+        int qty = parseNonNegativeInt(trim(quantity));
+        if (qty < 0) errors = add(errors, "Quantity", "Quantity must be a non-negative number");
+        double pr = parsePositiveDouble(trim(price));
+        if (pr <= 0) errors = add(errors, "Price", "Price must be a positive number");
+
+        if (category == null) {
+            errors = add(errors, "Type", "Please select a product type");
+            return new Result(errors, item, null);
+        }
+        String[] labels = ATTRIBUTE_LABELS[category.ordinal()];
+        Rule[] rules = ATTRIBUTE_RULES[category.ordinal()];
+        String[] values = {a1 == null ? "" : a1, a2 == null ? "" : a2, a3 == null ? "" : a3};
+        Object[] parsed = new Object[3];
+        for (int i = 0; i < 3; i++) {
+            String v = values[i];
+            switch (rules[i]) {
+                case LETTERS:
+                    if (isLettersAndSpaces(v)) parsed[i] = v;
+                    else errors = add(errors, labels[i], labels[i] + " must contain only letters and spaces");
+                    break;
+                case NOT_EMPTY:
+                    if (!v.trim().isEmpty()) parsed[i] = v;
+                    else errors = add(errors, labels[i], labels[i] + " cannot be empty");
+                    break;
+                case POSITIVE_INTEGER:
+                    int n = parseNonNegativeInt(v.trim());
+                    if (n > 0) parsed[i] = n;
+                    else errors = add(errors, labels[i], labels[i] + " must be a positive whole number");
+                    break;
+                case POSITIVE_DECIMAL:
+                    double d = parsePositiveDouble(v.trim());
+                    if (d > 0) parsed[i] = d;
+                    else errors = add(errors, labels[i], labels[i] + " must be a positive number");
+                    break;
+                default:
+                    String b = v.trim();
+                    if (b.equalsIgnoreCase("true") || b.equalsIgnoreCase("false")) parsed[i] = b.equalsIgnoreCase("true");
+                    else errors = add(errors, labels[i], labels[i] + " must be either 'true' or 'false'");
+                    break;
+            }
+        }
+        if (errors != null) return new Result(errors, item, null);
+
+        Product p;
+        switch (category) {
+            case REFRIGERATOR:
+                p = new Refrigerator(item, productName, qty, pr, (String) parsed[0], (String) parsed[1], (Double) parsed[2]);
+                break;
+            case TV:
+                p = new TV(item, productName, qty, pr, (String) parsed[0], (String) parsed[1], (Double) parsed[2]);
+                break;
+            case WASHING_MACHINE:
+                p = new WashingMachine(item, productName, qty, pr, (Integer) parsed[0], (String) parsed[1], (Boolean) parsed[2]);
+                break;
+            default:
+                p = new SmartPhone(item, productName, qty, pr, (String) parsed[0], (String) parsed[1], (Integer) parsed[2]);
+                break;
+        }
+        return new Result(Collections.emptyList(), item, p);
+    }
+
+    private static List<FieldError> add(List<FieldError> errors, String field, String message) {
+        if (errors == null) errors = new ArrayList<>(4);
+        errors.add(new FieldError(field, message));
+        return errors;
+    }
+
+    private static String trim(String s) {
+        return s == null ? "" : s.trim();
+    }
+
+    /** The value of a string of digits, or -1 if it is not one or does not fit an int. */
+    private static int parseNonNegativeInt(String s) {
+        int n = s.length();
+        if (n == 0 || n > 10) return -1;
+        long v = 0;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            v = v * 10 + (c - '0');
+        }
+        return v > Integer.MAX_VALUE ? -1 : (int) v;
+    }
+
+    /** The value of a finite positive number, or -1 if s is not one. */
+    private static double parsePositiveDouble(String s) {
+        if (s.isEmpty()) return -1;
+        try {
+            double v = Double.parseDouble(s);
+            return v > 0 && !Double.isInfinite(v) ? v : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // --- Bitmasks ---
+
+    /** The ASCII characters in spec, where a-z stands for a range, as two 64-bit masks. */
+    private static long[] charClass(String spec) {
+        long[] mask = new long[2];
+        for (int i = 0; i < spec.length(); i++) {
+            char from = spec.charAt(i), to = from;
+            if (i + 2 < spec.length() && spec.charAt(i + 1) == '-') {
+                to = spec.charAt(i + 2);
+                i += 2;
+            }
+            for (char c = from; c <= to; c++) mask[c >> 6] |= 1L << c;
+        }
+        return mask;
+    }
+
+    private static boolean allIn(long[] mask, CharSequence s) {
+        int n = s.length();
+        if (n == 0) return false;
+        long low = mask[0], high = mask[1];
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 128 || (((c < 64 ? low : high) >>> c) & 1) == 0) return false;
+        }
+        return true;
+    }
+}
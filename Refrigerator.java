@@ -1,4 +1,7 @@
-
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
 
 public class Refrigerator extends Product {
     private String doorDesign;
@@ -13,8 +16,41 @@ public class Refrigerator extends Product {
         this.capacity = capacity;
     }
 
+    /** Creates the product with its attributes still to be read or decoded. */
+    Refrigerator(int itemNumber, String productName, int quantityAvailable, double productPrice) {
+        super(itemNumber, productName, quantityAvailable, productPrice);
+    }
+
+    public String getDoorDesign() { loadAttributes(); return doorDesign; }
+    public String getColor()      { loadAttributes(); return color; }
+    public double getCapacity()   { loadAttributes(); return capacity; }
+
+    static final List<ProductAttribute> ATTRIBUTES = List.of(
+        ProductAttribute.text(Refrigerator.class, "doorDesign", "Door design", Refrigerator::getDoorDesign),
+        ProductAttribute.text(Refrigerator.class, "color", "Color", Refrigerator::getColor),
+        ProductAttribute.decimal(Refrigerator.class, "capacity", "Capacity (Litres)", Refrigerator::getCapacity));
+
+    @Override
+    public ProductCategory getCategory() { return ProductCategory.REFRIGERATOR; }
+
+    @Override
+    void writeAttributes(DataOutput out) throws IOException {
+        loadAttributes();
+        out.writeUTF(doorDesign);
+        out.writeUTF(color);
+        out.writeDouble(capacity);
+    }
+
+    @Override
+    void readAttributes(DataInput in) throws IOException {
+        doorDesign = in.readUTF();
+        color = in.readUTF();
+        capacity = in.readDouble();
+    }
+
     @Override
     public String toString() {
+        loadAttributes();
         return String.format(
             "Item number     : %04d%n" +
             "Product name        : %s%n" +
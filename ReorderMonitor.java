@@ -0,0 +1,86 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The products at or below their reorder point, kept current as stock moves. Each
+ * change re-checks only the product it touched, and products without a reorder
+ * point are skipped before any lookup, so a deduction costs O(1) here and nothing
+ * ever scans the catalog. Subscribers hear each time a product crosses its
+ * reorder point, in either direction.
+ */
+public class ReorderMonitor implements StockListener {
+
+    /** Told when a product becomes low on stock, or stops being low. */
+    public interface Subscriber {
+        /**
+         * Called on the thread that made the change, while p is locked, so calls for
+         * one product arrive in order. Must be quick; hand slow work to another thread.
+         */
+        void lowStockChanged(Product p, boolean low, int quantity);
+    }
+
+    private final IntHashMap<Product> low = new IntHashMap<>(); // written under its own lock, read freely
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    public void subscribe(Subscriber s)   { subscribers.add(s); }
+    public void unsubscribe(Subscriber s) { subscribers.remove(s); }
+
+    /** How many products are low on stock. */
+    public int size() { return low.size(); }
+
+    public boolean isLow(int itemNumber) { return low.containsKey(itemNumber); }
+
+    /** The products low on stock, in item number order. */
+    public List<Product> getLowStock() {
+        List<Product> list = new ArrayList<>(low.size());
+        low.forEachValue(list::add);
+        list.sort(Comparator.comparingInt(Product::getItemNumber));
+        return list;
+    }
+
+    // --- Kept current by StockManagement ---
+
+    @Override
+    public void productAdded(Product p) {
+        if (p.getReorderPoint() >= 0) update(p, true);
+    }
+
+    @Override
+    public void productRemoved(Product p) {
+        update(p, false);
+    }
+
+    @Override
+    public void quantityChanged(Product p, int delta, boolean active) {
+        // Clearing a reorder point takes the product out of the set, so one without
+        // a reorder point cannot be in it
+        if (p.getReorderPoint() >= 0) update(p, true);
+    }
+
+    @Override
+    public void statusChanged(Product p, boolean active, int quantity) {
+        if (p.getReorderPoint() >= 0) update(p, true);
+    }
+
+    @Override
+    public void reorderPointChanged(Product p, int reorderPoint) {
+        update(p, true);
+    }
+
+    /** Re-reads the live state under the product's lock, so racing changes settle on the latest. */
+    private void update(Product p, boolean inCatalog) {
+        synchronized (p) {
+            boolean now = inCatalog && p.isLowStock();
+            boolean was = low.get(p.getItemNumber()) == p;
+            if (now == was) return;
+            synchronized (low) {
+                if (now) low.put(p.getItemNumber(), p);
+                else if (low.get(p.getItemNumber()) == p) low.remove(p.getItemNumber());
+            }
+            int quantity = p.getQuantityAvailable();
+            for (Subscriber s : subscribers) s.lowStockChanged(p, now, quantity);
+        }
+    }
+}
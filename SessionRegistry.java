@@ -0,0 +1,238 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The live sessions of the clerks sharing one StockManagement, by session token.
+ * A token is 128 random bits from SecureRandom, handed out once when the session
+ * opens, so only its holder can act on the session. Each open session also gets a
+ * user ID of its own for display: the {@link UserInfo} ID, or if another open
+ * session has that, one of "-2", "-3" and so on after it that is free, so two
+ * clerks both shown as "guest" stay apart. Each ID keeps a hint of its lowest
+ * suffix that may be free, so opening a session probes from there rather than
+ * from the start; closing a session lowers the hint to its suffix again.
+ *
+ * Lookups are one ConcurrentHashMap read; a session's activity time and counters
+ * live in the session itself, so clerks never contend with each other. Sessions
+ * idle for longer than the timeout are closed by {@link #evictIdle()}, which
+ * {@link #startEvictor()} runs in the background.
+ */
+public class SessionRegistry implements AutoCloseable {
+
+    /** What a session did, for its counters. */
+    public enum Operation { READ, ADD_PRODUCT, ADD_STOCK, DEDUCT_STOCK, DISCONTINUE }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    /** Activity within this long of the last recorded time is not written again. */
+    private static final long TOUCH_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long CLOSED = Long.MIN_VALUE;
+    private static final VarHandle LAST_ACTIVE;
+    static {
+        try {
+            LAST_ACTIVE = MethodHandles.lookup().findVarHandle(Session.class, "lastActive", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /** One clerk's session. Counters may be updated from several threads at once. */
+    public static final class Session {
+        private final String token;
+        private String userId; // set before the session is published
+        private int suffix;
+        private final UserInfo user;
+        private final long openedAtMillis = System.currentTimeMillis();
+        private final AtomicLongArray counts = new AtomicLongArray(OPERATIONS.length);
+        private volatile long lastActive = System.nanoTime(); // CLOSED once closed
+
+        Session(String token, UserInfo user) {
+            this.token = token;
+            this.user = user;
+        }
+
+        /** The secret that identifies this session; give it only to its clerk. */
+        public String getToken()        { return token; }
+        /** The registry's ID for this session, unique among the open ones. */
+        public String getUserId()       { return userId; }
+        public UserInfo getUser()       { return user; }
+        public long getOpenedAtMillis() { return openedAtMillis; }
+        public boolean isOpen()         { return lastActive != CLOSED; }
+
+        public long getCount(Operation op) { return counts.get(op.ordinal()); }
+
+        public long getTotalCount() {
+            long n = 0;
+            for (int i = 0; i < OPERATIONS.length; i++) n += counts.get(i);
+            return n;
+        }
+
+        /** Milliseconds since the session was last active, or -1 once closed. */
+        public long getIdleMillis() {
+            long t = lastActive;
+            return t == CLOSED ? -1 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t);
+        }
+
+        /** Counts op and marks the session active. False if the session has been closed. */
+        public boolean record(Operation op) {
+            if (!touch()) return false;
+            counts.incrementAndGet(op.ordinal());
+            return true;
+        }
+
+        /**
+         * Marks the session active, unless it is closed. Both this and eviction
+         * compare-and-set the same word, so a session is never evicted after a touch
+         * it has seen, and a touch never revives an evicted session.
+         */
+        boolean touch() {
+            long now = System.nanoTime();
+            while (true) {
+                long t = lastActive;
+                if (t == CLOSED) return false;
+                if (now - t < TOUCH_NANOS || LAST_ACTIVE.compareAndSet(this, t, now)) return true;
+            }
+        }
+
+        /** Closes the session if it has been idle since before cutoff, or always if cutoff is CLOSED. */
+        boolean closeIfIdle(long cutoff) {
+            while (true) {
+                long t = lastActive;
+                if (t == CLOSED) return false;
+                if (cutoff != CLOSED && t - cutoff >= 0) return false;
+                if (LAST_ACTIVE.compareAndSet(this, t, CLOSED)) return true;
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(userId).append(" (").append(user.getCompleteName()).append(')');
+            for (Operation op : OPERATIONS) sb.append(' ').append(op).append('=').append(getCount(op));
+            return sb.toString();
+        }
+    }
+
+    private static final int TOKEN_BYTES = 16;
+
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>(); // by token
+    private final SecureRandom random = new SecureRandom();
+    private final ConcurrentHashMap<String, Session> byUserId = new ConcurrentHashMap<>(); // open ones only
+    // By UserInfo ID: the lowest suffix that may be free, 1 standing for no suffix
+    private final ConcurrentHashMap<String, AtomicInteger> nextSuffix = new ConcurrentHashMap<>();
+    private final long idleNanos;
+    private Thread evictor; // guarded by this
+    private boolean closed; // guarded by this
+
+    /** Sessions idle for longer than idleTimeoutMillis are evicted. */
+    public SessionRegistry(long idleTimeoutMillis) {
+        if (idleTimeoutMillis <= 0) throw new IllegalArgumentException("Idle timeout must be positive");
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+    }
+
+    /** Opens a session for user under a new token and a user ID no other open session has. */
+    public Session open(UserInfo user) {
+        String base = user.getUserId();
+        Session s = new Session(newToken(), user);
+        AtomicInteger hint = nextSuffix.computeIfAbsent(base, k -> new AtomicInteger(1));
+        int from = hint.get();
+        for (int n = from; ; n++) {
+            String id = n == 1 ? base : base + "-" + n;
+            if (byUserId.putIfAbsent(id, s) == null) {
+                s.userId = id;
+                s.suffix = n;
+                // Unless a close lowered it meanwhile, everything up to n is taken
+                hint.compareAndSet(from, n + 1);
+                break;
+            }
+        }
+        sessions.put(s.getToken(), s); // 128 random bits: tokens do not collide
+        return s;
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /** The open session with this token, marked active, or null if there is none. */
+    public Session get(String token) {
+        Session s = sessions.get(token);
+        return s != null && s.touch() ? s : null;
+    }
+
+    /** Closes the session with this token. False if there was no open session. */
+    public boolean close(String token) {
+        Session s = sessions.get(token);
+        if (s == null || !s.closeIfIdle(CLOSED)) return false;
+        forget(s);
+        return true;
+    }
+
+    private void forget(Session s) {
+        sessions.remove(s.getToken(), s);
+        if (byUserId.remove(s.getUserId(), s)) {
+            nextSuffix.get(s.getUser().getUserId()).accumulateAndGet(s.suffix, Math::min);
+        }
+    }
+
+    /** How many sessions are open. */
+    public int size() { return sessions.size(); }
+
+    /** The open sessions, in user ID order. */
+    public List<Session> getSessions() {
+        List<Session> list = new ArrayList<>(sessions.values());
+        list.sort(Comparator.comparing(Session::getUserId));
+        return list;
+    }
+
+    /** Closes every session idle for longer than the timeout and returns how many it closed. */
+    public int evictIdle() {
+        long cutoff = System.nanoTime() - idleNanos;
+        int evicted = 0;
+        for (Session s : sessions.values()) {
+            if (s.closeIfIdle(cutoff)) {
+                forget(s);
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /** Starts a daemon thread that evicts idle sessions every quarter of the timeout. */
+    public synchronized void startEvictor() {
+        if (evictor != null || closed) return;
+        long pauseMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(idleNanos) / 4);
+        evictor = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(pauseMillis);
+                    evictIdle();
+                }
+            } catch (InterruptedException e) {
+                // close() stops the evictor
+            }
+        }, "session-evictor");
+        evictor.setDaemon(true);
+        evictor.start();
+    }
+
+    /** Stops the evictor. Open sessions stay open. */
+    @Override
+    public void close() {
+        Thread t;
+        synchronized (this) {
+            closed = true;
+            t = evictor;
+            evictor = null;
+        }
+        if (t != null) t.interrupt();
+    }
+}
@@ -0,0 +1,356 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * The catalog split into shards by a hash of the item number, each shard a
+ * StockManagement of its own that only one writer thread ever mutates. Callers
+ * hand mutations to the owning shard through a lock-free queue and wait on the
+ * returned future, so writers on different shards never contend, not even for
+ * the StockManagement lock that product inserts take. Reads go straight to the
+ * shards and are merged: lookups by item number read one shard, totals add up
+ * every shard, listings and queries merge the shards' item number orders.
+ *
+ * Every item number lives in exactly one shard, so a product's changes keep their
+ * order. A batch spanning shards is applied shard by shard with no order between
+ * shards, and a batch of new products is all-or-nothing within each shard only.
+ */
+public class ShardedStockEngine implements AutoCloseable {
+
+    /** A queued mutation and the future it completes. */
+    private static final class Task<R> implements Runnable {
+        final Function<StockManagement, R> op;
+        final StockManagement sm;
+        final CompletableFuture<R> result = new CompletableFuture<>();
+
+        Task(Function<StockManagement, R> op, StockManagement sm) {
+            this.op = op;
+            this.sm = sm;
+        }
+
+        /** Any Throwable fails the future only, so the writer carries on with the next task. */
+        @Override
+        public void run() {
+            try {
+                result.complete(op.apply(sm));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        void refuse() {
+            result.completeExceptionally(new IllegalStateException("The engine is closed"));
+        }
+    }
+
+    /** One shard: its catalog, the queue of mutations waiting for it and the thread applying them. */
+    private static final class Shard implements Runnable {
+        final StockManagement sm;
+        final ConcurrentLinkedQueue<Task<?>> inbox = new ConcurrentLinkedQueue<>();
+        final Thread writer;
+        volatile boolean parked;
+        volatile boolean stopping;
+
+        Shard(StockManagement sm, String name) {
+            this.sm = sm;
+            this.writer = new Thread(this, name);
+            writer.setDaemon(true);
+        }
+
+        <R> CompletableFuture<R> submit(Function<StockManagement, R> op) {
+            if (stopping) throw new IllegalStateException("The engine is closed");
+            Task<R> task = new Task<>(op, sm);
+            inbox.add(task);
+            // close() may have begun after the check above and the writer may be gone;
+            // whoever takes the task off the queue first runs or refuses it
+            if (stopping) {
+                if (inbox.remove(task)) task.refuse();
+            } else if (parked) {
+                LockSupport.unpark(writer);
+            }
+            return task.result;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Task<?> task = inbox.poll();
+                if (task != null) {
+                    task.run();
+                    continue;
+                }
+                if (stopping) return;
+                // Announce the park before the last look at the inbox; a submitter
+                // that added after that look sees parked and unparks us
+                parked = true;
+                if (inbox.isEmpty() && !stopping) LockSupport.park(this);
+                parked = false;
+            }
+        }
+
+        /** Fails whatever the writer left behind, once it has exited. */
+        void refuseRemaining() {
+            for (Task<?> task; (task = inbox.poll()) != null; ) task.refuse();
+        }
+    }
+
+    private final Shard[] shards;
+
+    /** count in-memory shards. */
+    public ShardedStockEngine(int count) {
+        this(count, i -> new StockManagement());
+    }
+
+    /**
+     * count shards made by factory, e.g. each with its own journal. The engine owns
+     * them from here on and closes them in {@link #close()}.
+     */
+    public ShardedStockEngine(int count, IntFunction<StockManagement> factory) {
+        if (count <= 0) throw new IllegalArgumentException("Need at least one shard");
+        shards = new Shard[count];
+        for (int i = 0; i < count; i++) shards[i] = new Shard(factory.apply(i), "stock-shard-" + i);
+        for (Shard s : shards) s.writer.start();
+    }
+
+    public int getShardCount() { return shards.length; }
+
+    /** The shard owning itemNumber. The hash spreads runs of consecutive item numbers. */
+    int shardOf(int itemNumber) {
+        int h = itemNumber * 0x9E3779B9;
+        return (int) (((h ^ (h >>> 16)) & 0xFFFFFFFFL) % shards.length);
+    }
+
+    // --- Mutations, applied by the owning shard's writer ---
+
+    /** Applies one movement. The future completes with its {@link StockResult} code. */
+    public CompletableFuture<Byte> applyAsync(StockMovement m) {
+        return shards[shardOf(m.getItemNumber())].submit(
+            sm -> sm.applyBatch(Collections.singletonList(m), false).code(0));
+    }
+
+    /** Applies one movement and returns its {@link StockResult} code. */
+    public byte apply(StockMovement m) {
+        return applyAsync(m).join();
+    }
+
+    /**
+     * Applies every movement, each shard its own lines in order, and reports a code
+     * per line. Lines are never rolled back: unlike StockManagement there is no
+     * all-or-nothing mode, since shards apply their parts independently.
+     */
+    public BatchResult applyBatch(List<StockMovement> movements) {
+        List<List<StockMovement>> parts = new ArrayList<>(shards.length);
+        List<int[]> lines = new ArrayList<>(shards.length);
+        int[] counts = new int[shards.length];
+        int[] shardOfLine = new int[movements.size()];
+        for (int i = 0; i < movements.size(); i++) counts[shardOfLine[i] = shardOf(movements.get(i).getItemNumber())]++;
+        for (int s = 0; s < shards.length; s++) {
+            parts.add(new ArrayList<>(counts[s]));
+            lines.add(new int[counts[s]]);
+        }
+        for (int i = 0; i < movements.size(); i++) {
+            int s = shardOfLine[i];
+            lines.get(s)[parts.get(s).size()] = i;
+            parts.get(s).add(movements.get(i));
+        }
+        List<CompletableFuture<BatchResult>> results = new ArrayList<>(shards.length);
+        for (int s = 0; s < shards.length; s++) {
+            List<StockMovement> part = parts.get(s);
+            results.add(part.isEmpty() ? null : shards[s].submit(sm -> sm.applyBatch(part, false)));
+        }
+        byte[] codes = new byte[movements.size()];
+        int ok = 0;
+        for (int s = 0; s < shards.length; s++) {
+            if (results.get(s) == null) continue;
+            BatchResult r = results.get(s).join();
+            int[] at = lines.get(s);
+            for (int k = 0; k < at.length; k++) codes[at[k]] = r.code(k);
+            ok += r.getSuccessCount();
+        }
+        return new BatchResult(codes, ok, true);
+    }
+
+    /**
+     * Adds many products, each shard its share as one StockManagement.addProducts
+     * call. Item numbers repeated in the batch or already used are refused up front;
+     * one taken by a racing caller meanwhile fails only the shard that owns it.
+     *
+     * @throws IllegalArgumentException if an item number is already used or repeated
+     */
+    public void addProducts(List<? extends Product> batch) {
+        IntHashMap<Product> seen = new IntHashMap<>(batch.size());
+        List<List<Product>> parts = new ArrayList<>(shards.length);
+        for (int s = 0; s < shards.length; s++) parts.add(new ArrayList<>());
+        for (Product p : batch) {
+            if (seen.put(p.getItemNumber(), p) != null || isItemNumberUsed(p.getItemNumber())) {
+                throw new IllegalArgumentException("Item number " + p.getItemNumber() + " is already used.");
+            }
+            parts.get(shardOf(p.getItemNumber())).add(p);
+        }
+        List<CompletableFuture<Void>> done = new ArrayList<>(shards.length);
+        for (int s = 0; s < shards.length; s++) {
+            List<Product> part = parts.get(s);
+            if (part.isEmpty()) continue;
+            done.add(shards[s].submit(sm -> {
+                sm.addProducts(part);
+                return null;
+            }));
+        }
+        RuntimeException failure = null;
+        for (CompletableFuture<Void> f : done) {
+            try {
+                f.join();
+            } catch (RuntimeException e) {
+                if (failure == null) failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    /** Removes a product. Returns false if there was none. */
+    public boolean removeProduct(int itemNumber) {
+        return shards[shardOf(itemNumber)].submit(sm -> sm.removeProduct(itemNumber)).join();
+    }
+
+    /** Sets the reorder point; see {@link StockManagement#setReorderPoint}. */
+    public boolean setReorderPoint(int itemNumber, int reorderPoint) {
+        return shards[shardOf(itemNumber)].submit(sm -> sm.setReorderPoint(itemNumber, reorderPoint)).join();
+    }
+
+    // --- Reads, straight from the shards ---
+
+    public Product getProduct(int itemNumber) {
+        return shards[shardOf(itemNumber)].sm.getProduct(itemNumber);
+    }
+
+    public boolean isItemNumberUsed(int itemNumber) {
+        return shards[shardOf(itemNumber)].sm.isItemNumberUsed(itemNumber);
+    }
+
+    public long getProductCount() {
+        long n = 0;
+        for (Shard s : shards) n += s.sm.getTotals().getProductCount();
+        return n;
+    }
+
+    public long getTotalUnits() {
+        long n = 0;
+        for (Shard s : shards) n += s.sm.getTotals().getTotalUnits();
+        return n;
+    }
+
+    /** Summed in cents, like InventoryTotals, so the shard count does not change the result. */
+    public double getTotalValue() {
+        long cents = 0;
+        for (Shard s : shards) cents += s.sm.getTotals().getTotalValueCents();
+        return cents / 100.0;
+    }
+
+    public long getProductCount(ProductCategory c) {
+        long n = 0;
+        for (Shard s : shards) n += s.sm.getTotals().getProductCount(c);
+        return n;
+    }
+
+    public long getUnits(ProductCategory c) {
+        long n = 0;
+        for (Shard s : shards) n += s.sm.getTotals().getUnits(c);
+        return n;
+    }
+
+    public double getValue(ProductCategory c) {
+        long cents = 0;
+        for (Shard s : shards) {
+            InventoryTotals t = s.sm.getTotals();
+            cents += t.getValueCents(c, true) + t.getValueCents(c, false);
+        }
+        return cents / 100.0;
+    }
+
+    /** Every product in item number order, merged from the shards' sorted views. */
+    public List<Product> getProducts() {
+        List<Iterable<Product>> views = new ArrayList<>(shards.length);
+        for (Shard s : shards) views.add(s.sm.getSortedView(SortedProductView.Order.ITEM_NUMBER));
+        return merge(views);
+    }
+
+    /** The products matching q in item number order, each shard queried on its own indexes. */
+    public List<Product> query(ProductQuery q) {
+        List<Iterable<Product>> hits = new ArrayList<>(shards.length);
+        for (Shard s : shards) hits.add(s.sm.query(q));
+        return merge(hits);
+    }
+
+    /** Merges lists each in item number order. */
+    private static List<Product> merge(List<Iterable<Product>> sources) {
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(Math.max(1, sources.size()));
+        for (Iterable<Product> source : sources) {
+            Iterator<Product> it = source.iterator();
+            if (it.hasNext()) heads.add(new Cursor(it));
+        }
+        List<Product> merged = new ArrayList<>();
+        while (!heads.isEmpty()) {
+            Cursor c = heads.poll();
+            merged.add(c.head);
+            if (c.it.hasNext()) {
+                c.head = c.it.next();
+                heads.add(c);
+            }
+        }
+        return merged;
+    }
+
+    private static final class Cursor implements Comparable<Cursor> {
+        final Iterator<Product> it;
+        Product head;
+
+        Cursor(Iterator<Product> it) {
+            this.it = it;
+            this.head = it.next();
+        }
+
+        @Override
+        public int compareTo(Cursor o) {
+            return Integer.compare(head.getItemNumber(), o.head.getItemNumber());
+        }
+    }
+
+    /** Lets each writer finish what is queued, then closes the shards. */
+    @Override
+    public void close() throws IOException {
+        for (Shard s : shards) {
+            s.stopping = true;
+            LockSupport.unpark(s.writer);
+        }
+        boolean interrupted = false;
+        for (Shard s : shards) {
+            while (true) {
+                try {
+                    s.writer.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        for (Shard s : shards) s.refuseRemaining();
+        IOException failure = null;
+        for (Shard s : shards) {
+            try {
+                s.sm.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+        }
+        if (failure != null) throw failure;
+    }
+}
@@ -1,4 +1,7 @@
-
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
 
 public class SmartPhone extends Product {
     private String brand;
@@ -13,8 +16,41 @@ public class SmartPhone extends Product {
         this.batteryCapacity = batteryCapacity;
     }
 
+    /** Creates the product with its attributes still to be read or decoded. */
+    SmartPhone(int itemNumber, String productName, int quantityAvailable, double productPrice) {
+        super(itemNumber, productName, quantityAvailable, productPrice);
+    }
+
+    public String getBrand()        { loadAttributes(); return brand; }
+    public String getModel()        { loadAttributes(); return model; }
+    public int getBatteryCapacity() { loadAttributes(); return batteryCapacity; }
+
+    static final List<ProductAttribute> ATTRIBUTES = List.of(
+        ProductAttribute.text(SmartPhone.class, "brand", "Brand", SmartPhone::getBrand),
+        ProductAttribute.text(SmartPhone.class, "model", "Model", SmartPhone::getModel),
+        ProductAttribute.integer(SmartPhone.class, "batteryCapacity", "Battery(mAh)", "", SmartPhone::getBatteryCapacity));
+
+    @Override
+    public ProductCategory getCategory() { return ProductCategory.SMARTPHONE; }
+
+    @Override
+    void writeAttributes(DataOutput out) throws IOException {
+        loadAttributes();
+        out.writeUTF(brand);
+        out.writeUTF(model);
+        out.writeInt(batteryCapacity);
+    }
+
+    @Override
+    void readAttributes(DataInput in) throws IOException {
+        brand = in.readUTF();
+        model = in.readUTF();
+        batteryCapacity = in.readInt();
+    }
+
     @Override
     public String toString() {
+        loadAttributes();
         return String.format(
             "Item number         : %04d%n" +
             "Product name        : %s%n" +
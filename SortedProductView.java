@@ -0,0 +1,168 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * The catalog kept in one order as products come and go and their stock changes.
+ * Each product has one entry in a skip list, so an add, a removal or a re-sort
+ * after a stock change is O(log n) and iterating never sorts or touches the list
+ * StockManagement stores products in.
+ *
+ * Entries hold a copy of the sort key, so a product is always found under the
+ * key it was filed with. Iteration is weakly consistent, like any concurrent
+ * collection.
+ */
+public class SortedProductView implements StockListener, Iterable<Product> {
+
+    public enum Order {
+        ITEM_NUMBER, NAME, QUANTITY, INVENTORY_VALUE, PRICE;
+
+        /** Whether a change in stock can move a product in this order. */
+        boolean dependsOnQuantity() {
+            return this == QUANTITY || this == INVENTORY_VALUE;
+        }
+    }
+
+    private static final class Entry {
+        final Product product;
+        final int itemNumber;
+        final double key; // quantity, inventory value or price, when the order uses one
+
+        Entry(Product product, double key) {
+            this.product = product;
+            this.itemNumber = product.getItemNumber();
+            this.key = key;
+        }
+
+        /** A search bound placed before every product with this key. */
+        Entry(double key) {
+            this.product = null;
+            this.itemNumber = Integer.MIN_VALUE;
+            this.key = key;
+        }
+    }
+
+    /** Where a product is filed; the entry is swapped under the product's lock as its key moves. */
+    private static final class Filing {
+        volatile Entry entry;
+
+        Filing(Entry entry) {
+            this.entry = entry;
+        }
+    }
+
+    private static final Comparator<Entry> BY_ITEM_NUMBER = (a, b) -> Integer.compare(a.itemNumber, b.itemNumber);
+    private static final Comparator<Entry> BY_KEY = (a, b) -> {
+        int c = Double.compare(a.key, b.key);
+        return c != 0 ? c : Integer.compare(a.itemNumber, b.itemNumber);
+    };
+    private static final Comparator<Entry> BY_NAME =
+        Comparator.<Entry, String>comparing(e -> e.product.getProductName(), String.CASE_INSENSITIVE_ORDER)
+                  .thenComparing(BY_ITEM_NUMBER);
+
+    private final Order order;
+    private final ConcurrentSkipListSet<Entry> entries;
+    // Written under its own lock, only as products come and go; read freely
+    private final IntHashMap<Filing> byItemNumber = new IntHashMap<>();
+
+    public SortedProductView(Order order) {
+        this.order = order;
+        this.entries = new ConcurrentSkipListSet<>(
+            order == Order.NAME ? BY_NAME : order == Order.ITEM_NUMBER ? BY_ITEM_NUMBER : BY_KEY);
+    }
+
+    public Order getOrder() { return order; }
+    public int size()       { return byItemNumber.size(); }
+
+    /** Products in ascending order. */
+    @Override
+    public Iterator<Product> iterator() {
+        return products(entries.iterator());
+    }
+
+    /** Products in descending order. */
+    public Iterable<Product> descending() {
+        return () -> products(entries.descendingIterator());
+    }
+
+    /**
+     * Products whose key is at least from and below to, in ascending order. Only
+     * for the orders with a numeric key: QUANTITY, INVENTORY_VALUE and PRICE.
+     */
+    public Iterable<Product> between(double from, double to) {
+        if (order == Order.ITEM_NUMBER || order == Order.NAME) {
+            throw new IllegalStateException("No numeric key in " + order + " order");
+        }
+        if (!(from < to)) return Collections.emptyList();
+        return () -> products(entries.subSet(new Entry(from), new Entry(to)).iterator());
+    }
+
+    /** A copy of the current order. */
+    public List<Product> toList() {
+        List<Product> list = new ArrayList<>(size());
+        for (Entry e : entries) list.add(e.product);
+        return list;
+    }
+
+    // --- Kept current by StockManagement ---
+
+    @Override
+    public void productAdded(Product p) {
+        synchronized (p) {
+            if (byItemNumber.get(p.getItemNumber()) != null) return;
+            Entry e = new Entry(p, key(p));
+            entries.add(e);
+            synchronized (byItemNumber) {
+                byItemNumber.put(e.itemNumber, new Filing(e));
+            }
+        }
+    }
+
+    @Override
+    public void productRemoved(Product p) {
+        synchronized (p) {
+            Filing f = byItemNumber.get(p.getItemNumber());
+            if (f == null || f.entry.product != p) return;
+            synchronized (byItemNumber) {
+                byItemNumber.remove(p.getItemNumber());
+            }
+            entries.remove(f.entry);
+        }
+    }
+
+    @Override
+    public void quantityChanged(Product p, int delta, boolean active) {
+        if (!order.dependsOnQuantity()) return;
+        // Re-reads the live quantity rather than applying delta, so updates racing
+        // on the same product still leave it filed under its latest value.
+        synchronized (p) {
+            Filing f = byItemNumber.get(p.getItemNumber());
+            if (f == null || f.entry.product != p) return;
+            double key = key(p);
+            if (key == f.entry.key) return;
+            Entry e = new Entry(p, key);
+            entries.remove(f.entry);
+            entries.add(e);
+            f.entry = e;
+        }
+    }
+
+    private double key(Product p) {
+        switch (order) {
+            case QUANTITY:        return p.getQuantityAvailable();
+            case INVENTORY_VALUE: return p.getInventoryValue();
+            case PRICE:           return p.getProductPrice();
+            default:              return 0;
+        }
+    }
+
+    private static Iterator<Product> products(Iterator<Entry> it) {
+        return new Iterator<Product>() {
+            @Override public boolean hasNext() { return it.hasNext(); }
+            @Override public Product next()    { return it.next().product; }
+        };
+    }
+}
@@ -0,0 +1,624 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * The quantity of every product over time, recorded from each change as it is
+ * made, so stock can be read as of any moment and summarised over any period.
+ *
+ * Each product's points are packed into chunks of up to 1 KiB: the first point of
+ * a chunk is kept whole, every later one as the milliseconds since the previous
+ * point and the change in quantity, both varints, so a point takes two to four
+ * bytes. A chunk also keeps its last point, its minimum, maximum and time-weighted
+ * total, so a summary decodes only the chunks at the two ends of its period and an
+ * as-of lookup binary-searches the chunks and decodes one.
+ *
+ * Changes to one product that race each other may be recorded in either order; the
+ * levels in between can then be off briefly, but every level after them is right.
+ *
+ * Sealed chunks older than the retention are dropped, a quarter of a product's
+ * chunks at a time, so it can read back NO_DATA for a while before that.
+ *
+ * A journaled StockManagement writes its history with each checkpoint and rebuilds
+ * the rest from the journal's timestamps on replay, so it survives a restart.
+ */
+public class StockHistory implements StockListener {
+
+    /** Returned by {@link #quantityAt} for a time before the product's first record. */
+    public static final int NO_DATA = Integer.MIN_VALUE;
+
+    /** Passed as the retention to keep every point. */
+    public static final long FOREVER = Long.MAX_VALUE;
+
+    private static final int FILE_MAGIC = 0x534D4831;   // "SMH1"
+    private static final int CHUNKS_MAGIC = 0x534D4843; // "SMHC"
+    private static final int CHUNK_BYTES = 1024;
+    private static final int MAX_POINT_BYTES = 10 + 5;
+
+    /** One product's quantity over a period. */
+    public static final class Summary {
+        private final long fromMillis;
+        private final long toMillis;
+        private final int opening;
+        private final int closing;
+        private final int min;
+        private final int max;
+        private final double average;
+        private final long changes;
+
+        Summary(long fromMillis, long toMillis, int opening, int closing, int min, int max,
+                double average, long changes) {
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+            this.opening = opening;
+            this.closing = closing;
+            this.min = min;
+            this.max = max;
+            this.average = average;
+            this.changes = changes;
+        }
+
+        /** Start of the period, or of the product's history if that began later. */
+        public long getFromMillis() { return fromMillis; }
+        public long getToMillis()   { return toMillis; }
+        public int getOpening()     { return opening; }
+        public int getClosing()     { return closing; }
+        public int getMin()         { return min; }
+        public int getMax()         { return max; }
+        /** The quantity averaged over time, so a level held twice as long counts twice as much. */
+        public double getAverage()  { return average; }
+        /** Units added less units removed during the period. */
+        public long getNetMovement() { return (long) closing - opening; }
+        /** How many changes were recorded during the period. */
+        public long getChanges()    { return changes; }
+
+        @Override
+        public String toString() {
+            return String.format("opening=%d closing=%d min=%d max=%d average=%.2f net=%d changes=%d",
+                opening, closing, min, max, average, getNetMovement(), changes);
+        }
+    }
+
+    /** A run of points, appended to until full. */
+    private static final class Chunk {
+        final long firstMillis;
+        final int firstLevel;
+        long lastMillis;
+        int lastLevel;
+        int min;
+        int max;
+        int points;
+        double area; // quantity times milliseconds, from the first point to the last
+        byte[] data = new byte[64];
+        int size;
+        boolean written; // sealed and in a chunk file
+
+        Chunk(long millis, int level) {
+            firstMillis = lastMillis = millis;
+            firstLevel = lastLevel = min = max = level;
+            points = 1;
+        }
+    }
+
+    /** Walks the points of a chunk in order. */
+    private static final class Cursor {
+        private final Chunk chunk;
+        private int pos;
+        long millis;
+        int level;
+
+        Cursor(Chunk chunk) {
+            this.chunk = chunk;
+            this.millis = chunk.firstMillis;
+            this.level = chunk.firstLevel;
+        }
+
+        boolean next() {
+            if (pos >= chunk.size) return false;
+            millis += readVarLong();
+            long zigzag = readVarLong();
+            level += (int) ((zigzag >>> 1) ^ -(zigzag & 1));
+            return true;
+        }
+
+        private long readVarLong() {
+            byte[] data = chunk.data;
+            long v = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data[pos++];
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return v;
+            }
+        }
+    }
+
+    /** One product's chunks; appends and reads lock it. */
+    private static final class Series {
+        final int itemNumber;
+        Chunk[] chunks = new Chunk[1];
+        int count;
+        int persisted; // leading chunks already in a chunk file
+        long bytes;
+
+        Series(int itemNumber) {
+            this.itemNumber = itemNumber;
+        }
+
+        Chunk last() { return count == 0 ? null : chunks[count - 1]; }
+
+        void append(long millis, int level) {
+            Chunk c = last();
+            if (c != null && millis < c.lastMillis) millis = c.lastMillis; // a racing change got in first
+            if (c == null || c.size + MAX_POINT_BYTES > CHUNK_BYTES) {
+                if (c != null) c.data = Arrays.copyOf(c.data, c.size); // sealed, so trim it
+                if (count == chunks.length) chunks = Arrays.copyOf(chunks, count * 2);
+                chunks[count++] = new Chunk(millis, level);
+                return;
+            }
+            if (c.size + MAX_POINT_BYTES > c.data.length) {
+                c.data = Arrays.copyOf(c.data, Math.min(CHUNK_BYTES, c.data.length * 2));
+            }
+            int before = c.size;
+            writeVarLong(c, millis - c.lastMillis);
+            long delta = (long) level - c.lastLevel;
+            writeVarLong(c, (delta << 1) ^ (delta >> 63));
+            bytes += c.size - before;
+            c.area += (double) c.lastLevel * (millis - c.lastMillis);
+            c.lastMillis = millis;
+            c.lastLevel = level;
+            c.min = Math.min(c.min, level);
+            c.max = Math.max(c.max, level);
+            c.points++;
+        }
+
+        /** Adds a sealed chunk read back from a chunk file. */
+        void addWritten(Chunk c) {
+            if (count == chunks.length) chunks = Arrays.copyOf(chunks, count * 2);
+            chunks[count++] = c;
+            persisted = count;
+            bytes += c.size;
+        }
+
+        /**
+         * Drops the sealed chunks that end before millis, once they are at least a
+         * quarter of the series, so each drop copies the rest rarely.
+         */
+        void dropBefore(long millis) {
+            int n = 0;
+            while (n < count - 1 && chunks[n].lastMillis < millis) n++;
+            if (n == 0 || n < count / 4) return;
+            for (int i = 0; i < n; i++) bytes -= chunks[i].size;
+            System.arraycopy(chunks, n, chunks, 0, count - n);
+            Arrays.fill(chunks, count - n, count, null);
+            count -= n;
+            persisted = Math.max(0, persisted - n);
+        }
+
+        static void writeVarLong(Chunk c, long v) {
+            while ((v & ~0x7FL) != 0) {
+                c.data[c.size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            c.data[c.size++] = (byte) v;
+        }
+
+        /** The index of the last chunk starting at or before millis, or -1. */
+        int chunkAt(long millis) {
+            int lo = 0, hi = count - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (chunks[mid].firstMillis <= millis) lo = mid + 1;
+                else hi = mid - 1;
+            }
+            return hi;
+        }
+
+        /**
+         * The points before millis in the chunks from index from on, as one unbounded
+         * chunk, or null if there are none.
+         */
+        Chunk pointsBefore(int from, long millis) {
+            Chunk out = null;
+            for (int i = from; i < count; i++) {
+                Cursor cur = new Cursor(chunks[i]);
+                do {
+                    if (cur.millis >= millis) return out;
+                    if (out == null) {
+                        out = new Chunk(cur.millis, cur.level);
+                        continue;
+                    }
+                    if (out.size + MAX_POINT_BYTES > out.data.length) out.data = Arrays.copyOf(out.data, out.data.length * 2);
+                    writeVarLong(out, cur.millis - out.lastMillis);
+                    long delta = (long) cur.level - out.lastLevel;
+                    writeVarLong(out, (delta << 1) ^ (delta >> 63));
+                    out.lastMillis = cur.millis;
+                    out.lastLevel = cur.level;
+                } while (cur.next());
+            }
+            return out;
+        }
+
+        int levelAt(long millis) {
+            int k = chunkAt(millis);
+            if (k < 0) return NO_DATA;
+            Chunk c = chunks[k];
+            if (millis >= c.lastMillis) return c.lastLevel;
+            Cursor cur = new Cursor(c);
+            int level = cur.level;
+            while (cur.next() && cur.millis <= millis) level = cur.level;
+            return level;
+        }
+    }
+
+    private final IntHashMap<Series> series = new IntHashMap<>(); // new ones are put under its lock
+    private final LongSupplier clock;
+    private final long retentionMillis;
+
+    // Chunk files on disk as {number, newest point}, oldest first; only write touches them
+    private final ArrayDeque<long[]> chunkFiles = new ArrayDeque<>();
+    private int nextChunkFile = 1;
+
+    /** Records changes at the wall-clock time they are made, and keeps them forever. */
+    public StockHistory() {
+        this(System::currentTimeMillis, FOREVER);
+    }
+
+    /** Keeps sealed chunks until their last point is retentionMillis old. */
+    public StockHistory(long retentionMillis) {
+        this(System::currentTimeMillis, retentionMillis);
+    }
+
+    /** Reads the time from clock, in milliseconds, instead of System.currentTimeMillis. */
+    StockHistory(LongSupplier clock) {
+        this(clock, FOREVER);
+    }
+
+    StockHistory(LongSupplier clock, long retentionMillis) {
+        if (retentionMillis <= 0) throw new IllegalArgumentException("retentionMillis must be positive");
+        this.clock = clock;
+        this.retentionMillis = retentionMillis;
+    }
+
+    private long cutoff(long now) {
+        return retentionMillis == FOREVER ? Long.MIN_VALUE : now - retentionMillis;
+    }
+
+    private void append(Series s, long millis, int level) {
+        int before = s.count;
+        s.append(millis, level);
+        if (s.count != before && retentionMillis != FOREVER) s.dropBefore(cutoff(millis));
+    }
+
+    /** The quantity the product had at millis, or NO_DATA if that is before its first record. */
+    public int quantityAt(int itemNumber, long millis) {
+        Series s = series.get(itemNumber);
+        if (s == null) return NO_DATA;
+        synchronized (s) {
+            return s.levelAt(millis);
+        }
+    }
+
+    /**
+     * Summarises the product's quantity from fromMillis to toMillis, both included.
+     * Returns null if nothing was recorded for it by toMillis.
+     */
+    public Summary summarize(int itemNumber, long fromMillis, long toMillis) {
+        if (toMillis < fromMillis) throw new IllegalArgumentException("The period ends before it starts");
+        Series s = series.get(itemNumber);
+        if (s == null) return null;
+        synchronized (s) {
+            if (s.count == 0 || s.chunks[0].firstMillis > toMillis) return null;
+            long start = Math.max(fromMillis, s.chunks[0].firstMillis);
+            int k = s.chunkAt(start);
+            int opening = s.levelAt(start);
+            int level = opening, min = opening, max = opening;
+            long at = start;
+            long changes = 0;
+            double area = 0;
+            for (int i = k; i < s.count; i++) {
+                Chunk c = s.chunks[i];
+                if (c.firstMillis > toMillis) break;
+                if (c.firstMillis > start && c.lastMillis <= toMillis) {
+                    // Wholly inside the period: its summary stands in for its points
+                    area += (double) level * (c.firstMillis - at) + c.area;
+                    min = Math.min(min, c.min);
+                    max = Math.max(max, c.max);
+                    changes += c.points;
+                    at = c.lastMillis;
+                    level = c.lastLevel;
+                    continue;
+                }
+                Cursor cur = new Cursor(c);
+                do {
+                    if (cur.millis <= start) continue;
+                    if (cur.millis > toMillis) break;
+                    area += (double) level * (cur.millis - at);
+                    at = cur.millis;
+                    level = cur.level;
+                    min = Math.min(min, level);
+                    max = Math.max(max, level);
+                    changes++;
+                } while (cur.next());
+            }
+            area += (double) level * (toMillis - at);
+            double average = toMillis > start ? area / (toMillis - start) : level;
+            return new Summary(start, toMillis, opening, level, min, max, average, changes);
+        }
+    }
+
+    /** How many points are recorded for the product. */
+    public long getPointCount(int itemNumber) {
+        Series s = series.get(itemNumber);
+        if (s == null) return 0;
+        synchronized (s) {
+            long n = 0;
+            for (int i = 0; i < s.count; i++) n += s.chunks[i].points;
+            return n;
+        }
+    }
+
+    /** Bytes the product's points take up, chunk bookkeeping aside. */
+    public long getEncodedBytes(int itemNumber) {
+        Series s = series.get(itemNumber);
+        if (s == null) return 0;
+        synchronized (s) {
+            return s.bytes + (long) s.count * (Long.BYTES + Integer.BYTES);
+        }
+    }
+
+    // --- Persistence ---
+
+    /**
+     * Loads a history written by {@link #write}: the chunk files whole, as they were
+     * encoded, then the points of the history file itself. Chunks and chunk files
+     * already past retentionMillis are skipped and deleted. It goes on recording at
+     * the wall-clock time.
+     */
+    static StockHistory load(Path path, long retentionMillis) throws IOException {
+        StockHistory history = new StockHistory(System::currentTimeMillis, retentionMillis);
+        long cutoff = history.cutoff(history.clock.getAsLong());
+        for (int n : history.listChunkFiles(path)) {
+            Path file = chunkFilePath(path, n);
+            long newest = Long.MIN_VALUE;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+                if (in.readInt() != CHUNKS_MAGIC) throw new IOException(file + " is not a stock history chunk file");
+                while (in.readBoolean()) {
+                    int itemNumber = in.readInt();
+                    Chunk c = readChunk(in);
+                    newest = Math.max(newest, c.lastMillis);
+                    if (c.lastMillis >= cutoff) history.seriesFor(itemNumber).addWritten(c);
+                }
+            }
+            if (newest < cutoff) Files.delete(file);
+            else history.chunkFiles.add(new long[] {n, newest});
+            history.nextChunkFile = n + 1;
+        }
+        if (Files.exists(path)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+                if (in.readInt() != FILE_MAGIC) throw new IOException(path + " is not a stock history");
+                while (in.readBoolean()) {
+                    int itemNumber = in.readInt();
+                    Chunk points = new Chunk(in.readLong(), in.readInt());
+                    points.size = in.readInt();
+                    points.data = new byte[points.size];
+                    in.readFully(points.data);
+                    Cursor cur = new Cursor(points);
+                    do {
+                        history.recordAt(itemNumber, cur.millis, cur.level);
+                    } while (cur.next());
+                }
+            }
+        }
+        return history;
+    }
+
+    /**
+     * Writes the history as of beforeMillis, for a checkpoint. The chunks sealed
+     * since the last write go to a new chunk file next to path, so each chunk is
+     * written once; chunk files are never rewritten, only deleted once everything
+     * in them is past the retention. The points not in a chunk file yet are written
+     * to path itself, through a temporary file and an atomic rename so a crash
+     * leaves the previous one whole. Only the checkpointer calls this.
+     */
+    void write(Path path, long beforeMillis) throws IOException {
+        List<Series> all = new ArrayList<>(series.size());
+        series.forEachValue(all::add);
+        List<Series> items = new ArrayList<>();
+        List<Chunk[]> sealed = new ArrayList<>();
+        List<Chunk> tails = new ArrayList<>();
+        boolean anySealed = false;
+        for (Series s : all) {
+            synchronized (s) {
+                // Sealed chunks wholly before beforeMillis; a later one waits for the next write
+                int k = s.persisted;
+                while (k < s.count - 1 && s.chunks[k].lastMillis < beforeMillis) k++;
+                Chunk[] done = Arrays.copyOfRange(s.chunks, s.persisted, k);
+                Chunk tail = s.pointsBefore(k, beforeMillis);
+                if (done.length == 0 && tail == null) continue;
+                anySealed |= done.length > 0;
+                items.add(s);
+                sealed.add(done);
+                tails.add(tail);
+            }
+        }
+        if (anySealed) {
+            int n = nextChunkFile;
+            long newest = Long.MIN_VALUE;
+            Path file = chunkFilePath(path, n);
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16));
+                out.writeInt(CHUNKS_MAGIC);
+                for (int i = 0; i < items.size(); i++) {
+                    for (Chunk c : sealed.get(i)) {
+                        out.writeBoolean(true);
+                        out.writeInt(items.get(i).itemNumber);
+                        writeChunk(out, c);
+                        newest = Math.max(newest, c.lastMillis);
+                    }
+                }
+                out.writeBoolean(false);
+                out.flush();
+                ch.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            nextChunkFile = n + 1;
+            chunkFiles.add(new long[] {n, newest});
+            // On disk now whatever becomes of this checkpoint, so never written again
+            for (int i = 0; i < items.size(); i++) {
+                Series s = items.get(i);
+                synchronized (s) {
+                    for (Chunk c : sealed.get(i)) c.written = true;
+                    while (s.persisted < s.count && s.chunks[s.persisted].written) s.persisted++;
+                }
+            }
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16));
+            out.writeInt(FILE_MAGIC);
+            for (int i = 0; i < items.size(); i++) {
+                Chunk points = tails.get(i);
+                if (points == null) continue;
+                out.writeBoolean(true);
+                out.writeInt(items.get(i).itemNumber);
+                out.writeLong(points.firstMillis);
+                out.writeInt(points.firstLevel);
+                out.writeInt(points.size);
+                out.write(points.data, 0, points.size);
+            }
+            out.writeBoolean(false);
+            out.flush();
+            ch.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        long cutoff = cutoff(clock.getAsLong());
+        while (!chunkFiles.isEmpty() && chunkFiles.peekFirst()[1] < cutoff) {
+            Files.deleteIfExists(chunkFilePath(path, (int) chunkFiles.pollFirst()[0]));
+        }
+    }
+
+    private static Path chunkFilePath(Path path, int n) {
+        return path.resolveSibling(path.getFileName() + "." + n);
+    }
+
+    /** The numbers of the chunk files next to path, in order, deleting unfinished ones. */
+    private int[] listChunkFiles(Path path) throws IOException {
+        String prefix = path.getFileName() + ".";
+        int[] found = new int[8];
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path.toAbsolutePath().getParent(), prefix + "*")) {
+            for (Path f : files) {
+                String suffix = f.getFileName().toString().substring(prefix.length());
+                if (suffix.endsWith(".tmp")) {
+                    Files.delete(f);
+                    continue;
+                }
+                if (suffix.isEmpty() || suffix.length() > 9 || !suffix.chars().allMatch(Character::isDigit)) continue;
+                if (count == found.length) found = Arrays.copyOf(found, count * 2);
+                found[count++] = Integer.parseInt(suffix);
+            }
+        }
+        found = Arrays.copyOf(found, count);
+        Arrays.sort(found);
+        return found;
+    }
+
+    private static void writeChunk(DataOutputStream out, Chunk c) throws IOException {
+        out.writeLong(c.firstMillis);
+        out.writeInt(c.firstLevel);
+        out.writeLong(c.lastMillis);
+        out.writeInt(c.lastLevel);
+        out.writeInt(c.min);
+        out.writeInt(c.max);
+        out.writeInt(c.points);
+        out.writeDouble(c.area);
+        out.writeInt(c.size);
+        out.write(c.data, 0, c.size);
+    }
+
+    private static Chunk readChunk(DataInputStream in) throws IOException {
+        Chunk c = new Chunk(in.readLong(), in.readInt());
+        c.lastMillis = in.readLong();
+        c.lastLevel = in.readInt();
+        c.min = in.readInt();
+        c.max = in.readInt();
+        c.points = in.readInt();
+        c.area = in.readDouble();
+        c.size = in.readInt();
+        c.data = new byte[c.size];
+        in.readFully(c.data);
+        c.written = true;
+        return c;
+    }
+
+    /**
+     * Records level as of millis while the journal is replayed, unless the product
+     * already has a later point, as when it was read back from the history files,
+     * or the level is unchanged.
+     */
+    void recordAt(int itemNumber, long millis, int level) {
+        Series s = seriesFor(itemNumber);
+        synchronized (s) {
+            Chunk last = s.last();
+            if (last != null && (millis < last.lastMillis || level == last.lastLevel)) return;
+            append(s, millis, level);
+        }
+    }
+
+    private Series seriesFor(int itemNumber) {
+        Series s = series.get(itemNumber);
+        if (s != null) return s;
+        synchronized (series) {
+            s = series.get(itemNumber);
+            if (s == null) series.put(itemNumber, s = new Series(itemNumber));
+            return s;
+        }
+    }
+
+    /** Records delta as a change, or as the new level if absolute. */
+    private void record(Product p, int delta, boolean absolute) {
+        long now = clock.getAsLong();
+        Series s = seriesFor(p.getItemNumber());
+        synchronized (s) {
+            Chunk last = s.last();
+            // A change racing with the first record already shows in the live quantity
+            int level = absolute ? delta : last == null ? p.getQuantityAvailable() : last.lastLevel + delta;
+            append(s, now, level);
+        }
+    }
+
+    // --- Kept current by StockManagement ---
+
+    @Override
+    public void productAdded(Product p) {
+        record(p, p.getQuantityAvailable(), true);
+    }
+
+    /** A removed product's history stays, ending at zero. */
+    @Override
+    public void productRemoved(Product p) {
+        record(p, 0, true);
+    }
+
+    @Override
+    public void quantityChanged(Product p, int delta, boolean active) {
+        record(p, delta, false);
+    }
+}
@@ -0,0 +1,642 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP/JSON access to a StockManagement, on the JDK's built-in server:
+ *
+ *   GET  /products/{item}                 one product
+ *   GET  /products?search=WORDS&limit=N   products matching the words (limit 50 by default)
+ *   POST /products                        add a product; fields below
+ *   POST /products/{item}/add-stock       {"quantity": N}
+ *   POST /products/{item}/deduct-stock    {"quantity": N}
+ *   POST /products/{item}/discontinue
+ *   GET  /products/{item}/history?at=T    the quantity at time T
+ *   GET  /products/{item}/history?from=T&to=T  min, max, average and net movement
+ *   GET  /totals                          the running inventory totals
+ *   POST /sessions                        open a session: {"firstName": .., "surname": ..}
+ *   GET  /sessions                        open sessions and their operation counts, to a session
+ *   GET  /sessions/{token}                one session
+ *   DELETE /sessions/{token}              close a session
+ *
+ * Opening a session answers with its token, which is never shown again; a
+ * session can only be read or closed by its token, and only a request with an
+ * open session's token can list the sessions, without their tokens. A request carrying an
+ * X-Session-Token header is counted against that session, and refused with 401
+ * if the session is not open; requests without one are anonymous. Sessions idle
+ * for longer than sms.session.idleMillis (default 30 minutes) are closed.
+ *
+ * A product is added from a flat object: category (a {@link ProductCategory}
+ * name), itemNumber, name, quantity, price and the category's attributes by key,
+ * e.g. "screenType". Fields are checked by {@link ProductValidator}, like the GUI
+ * add form. Stock changes answer with their {@link StockResult} code. History
+ * comes from {@link StockManagement#getStockHistory()}; times are epoch
+ * milliseconds, and a period without from or to runs from the first record or up
+ * to now.
+ *
+ * Each request runs on its own virtual thread when the JDK has them (21 and
+ * later), and on a cached thread pool otherwise.
+ *
+ * Launch with -Dsun.net.httpserver.nodelay=true: the JDK server otherwise leaves
+ * Nagle's algorithm on, and each small response waits on the client's delayed
+ * ACK, about 40 ms per request on a keep-alive connection. The setting applies to
+ * every HttpServer in the process, so it is left to the launcher;
+ * StockManagementConsole --serve sets it.
+ */
+public class StockHttpServer implements AutoCloseable {
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int DEFAULT_SEARCH_LIMIT = 50;
+
+    private final StockManagement sm;
+    private final SessionRegistry sessions =
+        new SessionRegistry(Long.getLong("sms.session.idleMillis", 30 * 60 * 1000L));
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    /** Binds to address; port 0 picks a free one. Call {@link #start()} to serve. */
+    public StockHttpServer(StockManagement sm, InetSocketAddress address) throws IOException {
+        this.sm = sm;
+        this.server = HttpServer.create(address, 4096);
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "http-request");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /** Executors.newVirtualThreadPerTaskExecutor(), looked up so the code still builds for Java 11. */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    public void start() {
+        sessions.startEvictor();
+        server.start();
+    }
+
+    public int getPort() { return server.getAddress().getPort(); }
+
+    public boolean usesVirtualThreads() { return virtualThreads; }
+
+    public SessionRegistry getSessions() { return sessions; }
+
+    /** Stops accepting requests and waits up to a second for those in progress. */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        sessions.close();
+    }
+
+    // --- Routing ---
+
+    private void handle(HttpExchange ex) throws IOException {
+        Response r;
+        try {
+            String token = ex.getRequestHeaders().getFirst("X-Session-Token");
+            SessionRegistry.Session session = token == null ? null : sessions.get(token);
+            if (token != null && session == null) {
+                r = error(401, "NO_SESSION", "No open session with this token");
+            } else {
+                r = route(ex.getRequestMethod(), ex.getRequestURI().getRawPath(), ex.getRequestURI().getRawQuery(),
+                    ex, session);
+            }
+        } catch (BadRequest e) {
+            r = error(400, "BAD_REQUEST", e.getMessage());
+        } catch (RuntimeException e) {
+            r = error(500, "INTERNAL_ERROR", String.valueOf(e.getMessage()));
+        }
+        byte[] body = r.body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(r.status, body.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private Response route(String method, String path, String query, HttpExchange ex,
+                           SessionRegistry.Session session) throws IOException {
+        String[] parts = path.split("/");
+        // parts[0] is the empty string before the leading slash
+        if (parts.length == 2 && parts[1].equals("totals")) {
+            if (!method.equals("GET")) return methodNotAllowed();
+            count(session, SessionRegistry.Operation.READ);
+            return totals();
+        }
+        if (parts.length >= 2 && parts[1].equals("sessions")) return routeSessions(method, parts, ex, session);
+        if (parts.length < 2 || !parts[1].equals("products")) return error(404, "NO_SUCH_PATH", path);
+        if (parts.length == 2) {
+            switch (method) {
+                case "GET":
+                    count(session, SessionRegistry.Operation.READ);
+                    return search(query);
+                case "POST":
+                    count(session, SessionRegistry.Operation.ADD_PRODUCT);
+                    return addProduct(readJson(ex));
+                default:
+                    return methodNotAllowed();
+            }
+        }
+        int item = itemNumber(parts[2]);
+        if (parts.length == 3) {
+            if (!method.equals("GET")) return methodNotAllowed();
+            count(session, SessionRegistry.Operation.READ);
+            return product(item);
+        }
+        if (parts.length == 4 && parts[3].equals("history")) {
+            if (!method.equals("GET")) return methodNotAllowed();
+            count(session, SessionRegistry.Operation.READ);
+            return history(item, query);
+        }
+        if (parts.length == 4 && method.equals("POST")) {
+            switch (parts[3]) {
+                case "add-stock":
+                    count(session, SessionRegistry.Operation.ADD_STOCK);
+                    return move(StockMovement.add(item, quantity(readJson(ex))));
+                case "deduct-stock":
+                    count(session, SessionRegistry.Operation.DEDUCT_STOCK);
+                    return move(StockMovement.deduct(item, quantity(readJson(ex))));
+                case "discontinue":
+                    count(session, SessionRegistry.Operation.DISCONTINUE);
+                    return move(StockMovement.discontinue(item));
+                default:
+                    break;
+            }
+        }
+        return parts.length == 4 ? methodNotAllowed() : error(404, "NO_SUCH_PATH", path);
+    }
+
+    private Response routeSessions(String method, String[] parts, HttpExchange ex,
+                                   SessionRegistry.Session session) throws IOException {
+        if (parts.length == 2) {
+            switch (method) {
+                case "GET":
+                    if (session == null) return error(401, "NO_SESSION", "Listing sessions needs an X-Session-Token");
+                    count(session, SessionRegistry.Operation.READ);
+                    return listSessions();
+                case "POST": return openSession(readJson(ex));
+                default:     return methodNotAllowed();
+            }
+        }
+        if (parts.length != 3) return error(404, "NO_SUCH_PATH", String.join("/", parts));
+        String token = URLDecoder.decode(parts[2], StandardCharsets.UTF_8);
+        switch (method) {
+            case "GET": {
+                SessionRegistry.Session s = sessions.get(token);
+                if (s == null) return error(404, "NO_SESSION", "No open session with this token");
+                StringBuilder sb = new StringBuilder(256);
+                appendSession(sb, s, false);
+                return new Response(200, sb.toString());
+            }
+            case "DELETE":
+                return sessions.close(token)
+                    ? new Response(200, "{\"result\":\"OK\"}")
+                    : error(404, "NO_SESSION", "No open session with this token");
+            default:
+                return methodNotAllowed();
+        }
+    }
+
+    private static void count(SessionRegistry.Session session, SessionRegistry.Operation op) {
+        if (session != null) session.record(op);
+    }
+
+    // --- Endpoints ---
+
+    private Response product(int item) {
+        Product p = sm.getProduct(item);
+        if (p == null) return error(404, StockResult.name(StockResult.NOT_FOUND), "No product " + item);
+        StringBuilder sb = new StringBuilder(256);
+        appendProduct(sb, p);
+        return new Response(200, sb.toString());
+    }
+
+    private Response history(int item, String query) {
+        Map<String, String> params = queryParams(query);
+        StockHistory history = sm.getStockHistory();
+        if (history == null) return error(404, "NO_DATA", "Stock history is turned off");
+        StringBuilder sb = new StringBuilder(192).append("{\"itemNumber\":").append(item);
+        if (params.containsKey("at")) {
+            long at = millis(params.get("at"), "at");
+            int quantity = history.quantityAt(item, at);
+            if (quantity == StockHistory.NO_DATA) return error(404, "NO_DATA", "No history of " + item + " at " + at);
+            return new Response(200, sb.append(",\"at\":").append(at).append(",\"quantity\":").append(quantity)
+                .append('}').toString());
+        }
+        long from = params.containsKey("from") ? millis(params.get("from"), "from") : 0;
+        long to = params.containsKey("to") ? millis(params.get("to"), "to") : System.currentTimeMillis();
+        if (to < from) throw new BadRequest("to must not be before from");
+        StockHistory.Summary s = history.summarize(item, from, to);
+        if (s == null) return error(404, "NO_DATA", "No history of " + item + " by " + to);
+        sb.append(",\"from\":").append(s.getFromMillis())
+          .append(",\"to\":").append(s.getToMillis())
+          .append(",\"opening\":").append(s.getOpening())
+          .append(",\"closing\":").append(s.getClosing())
+          .append(",\"min\":").append(s.getMin())
+          .append(",\"max\":").append(s.getMax())
+          .append(",\"average\":").append(s.getAverage())
+          .append(",\"netMovement\":").append(s.getNetMovement())
+          .append(",\"changes\":").append(s.getChanges());
+        return new Response(200, sb.append('}').toString());
+    }
+
+    private Response search(String query) {
+        Map<String, String> params = queryParams(query);
+        String words = params.get("search");
+        if (words == null) throw new BadRequest("Add ?search=WORDS to list products");
+        int limit = params.containsKey("limit") ? positiveInt(params.get("limit"), "limit") : DEFAULT_SEARCH_LIMIT;
+        List<Product> hits = sm.search(words, limit);
+        StringBuilder sb = new StringBuilder(64 + hits.size() * 256).append("{\"products\":[");
+        for (int i = 0; i < hits.size(); i++) {
+            if (i > 0) sb.append(',');
+            appendProduct(sb, hits.get(i));
+        }
+        return new Response(200, sb.append("]}").toString());
+    }
+
+    private Response addProduct(Map<String, Object> body) {
+        String categoryName = text(body, "category");
+        ProductCategory category = null;
+        for (ProductCategory c : ProductCategory.values()) {
+            if (c.name().equalsIgnoreCase(categoryName)) category = c;
+        }
+        String[] attributes = new String[3];
+        if (category != null) {
+            List<ProductAttribute> list = category.getAttributes();
+            for (int i = 0; i < list.size(); i++) attributes[i] = text(body, list.get(i).getKey());
+        }
+        Object item = body.get("itemNumber");
+        String itemText = item instanceof Number ? Product.formatItemNumber(((Number) item).longValue()) : text(body, "itemNumber");
+        ProductValidator.Result v = ProductValidator.validate(category, itemText, text(body, "name"),
+            text(body, "quantity"), text(body, "price"), attributes[0], attributes[1], attributes[2]);
+        if (!v.isValid()) {
+            StringBuilder sb = new StringBuilder("{\"result\":\"INVALID_PRODUCT\",\"errors\":[");
+            for (int i = 0; i < v.getErrors().size(); i++) {
+                ProductValidator.FieldError e = v.getErrors().get(i);
+                if (i > 0) sb.append(',');
+                fieldError(sb, e.getField(), e.getMessage());
+            }
+            return new Response(400, sb.append("]}").toString());
+        }
+        try {
+            sm.addProducts(Collections.singletonList(v.getProduct()));
+        } catch (IllegalArgumentException e) { // the item number is taken
+            return error(409, "DUPLICATE_ITEM_NUMBER", e.getMessage());
+        }
+        StringBuilder sb = new StringBuilder(256).append("{\"result\":\"OK\",\"product\":");
+        appendProduct(sb, v.getProduct());
+        return new Response(201, sb.append('}').toString());
+    }
+
+    private Response move(StockMovement m) {
+        byte code = sm.applyBatch(Collections.singletonList(m), false).code(0);
+        int status;
+        switch (code) {
+            case StockResult.OK:               status = 200; break;
+            case StockResult.NOT_FOUND:        status = 404; break;
+            case StockResult.INVALID_QUANTITY: status = 400; break;
+            default:                           status = 409; break;
+        }
+        StringBuilder sb = new StringBuilder(64).append("{\"result\":\"").append(StockResult.name(code)).append('"');
+        Product p = sm.getProduct(m.getItemNumber());
+        if (p != null) {
+            sb.append(",\"quantity\":").append(p.getQuantityAvailable())
+              .append(",\"active\":").append(p.isProductStatus());
+        }
+        return new Response(status, sb.append('}').toString());
+    }
+
+    private Response openSession(Map<String, Object> body) {
+        String firstName = text(body, "firstName").trim();
+        String surname = text(body, "surname").trim();
+        String firstNameError = ProductValidator.nameError(firstName);
+        String surnameError = ProductValidator.surnameError(surname);
+        if (firstNameError != null || surnameError != null) {
+            StringBuilder sb = new StringBuilder("{\"result\":\"INVALID_USER\",\"errors\":[");
+            if (firstNameError != null) fieldError(sb, "First name", firstNameError);
+            if (surnameError != null) {
+                if (firstNameError != null) sb.append(',');
+                fieldError(sb, "Surname", surnameError);
+            }
+            return new Response(400, sb.append("]}").toString());
+        }
+        SessionRegistry.Session s = sessions.open(new UserInfo(firstName, surname));
+        StringBuilder sb = new StringBuilder(256);
+        appendSession(sb, s, true);
+        return new Response(201, sb.toString());
+    }
+
+    private Response listSessions() {
+        List<SessionRegistry.Session> open = sessions.getSessions();
+        StringBuilder sb = new StringBuilder(64 + open.size() * 192).append("{\"sessions\":[");
+        for (int i = 0; i < open.size(); i++) {
+            if (i > 0) sb.append(',');
+            appendSession(sb, open.get(i), false);
+        }
+        return new Response(200, sb.append("]}").toString());
+    }
+
+    private Response totals() {
+        InventoryTotals t = sm.getTotals();
+        StringBuilder sb = new StringBuilder(128)
+            .append("{\"products\":").append(t.getProductCount())
+            .append(",\"activeProducts\":").append(t.getProductCount(true))
+            .append(",\"units\":").append(t.getTotalUnits())
+            .append(",\"value\":").append(t.getTotalValue())
+            .append(",\"lowStock\":").append(sm.getReorderMonitor().size())
+            .append(",\"byCategory\":{");
+        for (ProductCategory c : ProductCategory.values()) {
+            if (c.ordinal() > 0) sb.append(',');
+            sb.append('"').append(c.name()).append("\":{\"products\":").append(t.getProductCount(c))
+              .append(",\"units\":").append(t.getUnits(c))
+              .append(",\"value\":").append(t.getValue(c)).append('}');
+        }
+        return new Response(200, sb.append("}}").toString());
+    }
+
+    // --- JSON ---
+
+    private static void appendProduct(StringBuilder sb, Product p) {
+        sb.append("{\"itemNumber\":").append(p.getItemNumber())
+          .append(",\"category\":\"").append(p.getCategory().name())
+          .append("\",\"name\":");
+        string(sb, p.getProductName());
+        sb.append(",\"quantity\":").append(p.getQuantityAvailable())
+          .append(",\"reserved\":").append(p.getQuantityReserved())
+          .append(",\"price\":").append(p.getProductPrice())
+          .append(",\"active\":").append(p.isProductStatus())
+          .append(",\"reorderPoint\":").append(p.getReorderPoint())
+          .append(",\"attributes\":{");
+        List<ProductAttribute> attributes = p.getAttributes();
+        for (int i = 0; i < attributes.size(); i++) {
+            ProductAttribute a = attributes.get(i);
+            if (i > 0) sb.append(',');
+            sb.append('"').append(a.getKey()).append("\":");
+            Object v = a.get(p);
+            if (v instanceof String) string(sb, (String) v);
+            else sb.append(v);
+        }
+        sb.append("}}");
+    }
+
+    /** The session as JSON; its token only for the client that just opened it. */
+    private static void appendSession(StringBuilder sb, SessionRegistry.Session s, boolean withToken) {
+        sb.append('{');
+        if (withToken) {
+            sb.append("\"token\":");
+            string(sb, s.getToken());
+            sb.append(',');
+        }
+        sb.append("\"userId\":");
+        string(sb, s.getUserId());
+        sb.append(",\"completeName\":");
+        string(sb, s.getUser().getCompleteName());
+        sb.append(",\"openedAt\":").append(s.getOpenedAtMillis())
+          .append(",\"idleMillis\":").append(s.getIdleMillis())
+          .append(",\"operations\":{");
+        for (SessionRegistry.Operation op : SessionRegistry.Operation.values()) {
+            if (op.ordinal() > 0) sb.append(',');
+            sb.append('"').append(op.name()).append("\":").append(s.getCount(op));
+        }
+        sb.append("}}");
+    }
+
+    private static void fieldError(StringBuilder sb, String field, String message) {
+        sb.append("{\"field\":");
+        string(sb, field);
+        sb.append(",\"message\":");
+        string(sb, message);
+        sb.append('}');
+    }
+
+    static void string(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Parses a flat JSON object: string, number, true, false and null values only.
+     * Numbers are returned as Double, or Long when they have no fraction or exponent.
+     */
+    static Map<String, Object> parseObject(String json) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        int[] at = {skipSpace(json, 0)};
+        expect(json, at, '{');
+        if (peek(json, at) == '}') {
+            at[0]++;
+        } else {
+            while (true) {
+                String key = parseString(json, at);
+                expect(json, at, ':');
+                map.put(key, parseValue(json, at));
+                char c = peek(json, at);
+                at[0]++;
+                if (c == '}') break;
+                if (c != ',') throw new BadRequest("Expected , or } at offset " + (at[0] - 1));
+            }
+        }
+        if (skipSpace(json, at[0]) != json.length()) throw new BadRequest("Text after the JSON object");
+        return map;
+    }
+
+    private static Object parseValue(String json, int[] at) {
+        char c = peek(json, at);
+        if (c == '"') return parseString(json, at);
+        if (c == '{' || c == '[') throw new BadRequest("Nested objects and arrays are not accepted");
+        int start = at[0];
+        while (at[0] < json.length() && ",}] \t\r\n".indexOf(json.charAt(at[0])) < 0) at[0]++;
+        String token = json.substring(start, at[0]);
+        switch (token) {
+            case "true":  return Boolean.TRUE;
+            case "false": return Boolean.FALSE;
+            case "null":  return null;
+            default:
+                try {
+                    if (token.indexOf('.') < 0 && token.indexOf('e') < 0 && token.indexOf('E') < 0) {
+                        return Long.parseLong(token);
+                    }
+                    return Double.parseDouble(token);
+                } catch (NumberFormatException e) {
+                    throw new BadRequest("Not a JSON value: " + token);
+                }
+        }
+    }
+
+    private static String parseString(String json, int[] at) {
+        expect(json, at, '"');
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            if (at[0] >= json.length()) throw new BadRequest("Unterminated string");
+            char c = json.charAt(at[0]++);
+            if (c == '"') return sb.toString();
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (at[0] >= json.length()) throw new BadRequest("Unterminated string");
+            char e = json.charAt(at[0]++);
+            switch (e) {
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    if (at[0] + 4 > json.length()) throw new BadRequest("Bad \\u escape");
+                    try {
+                        sb.append((char) Integer.parseInt(json.substring(at[0], at[0] + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw new BadRequest("Bad \\u escape");
+                    }
+                    at[0] += 4;
+                    break;
+                default: sb.append(e); // \" \\ \/
+            }
+        }
+    }
+
+    private static void expect(String json, int[] at, char c) {
+        if (peek(json, at) != c) throw new BadRequest("Expected " + c + " at offset " + at[0]);
+        at[0]++;
+    }
+
+    /** The next non-space character, leaving at on it. */
+    private static char peek(String json, int[] at) {
+        at[0] = skipSpace(json, at[0]);
+        if (at[0] >= json.length()) throw new BadRequest("Unexpected end of JSON");
+        return json.charAt(at[0]);
+    }
+
+    private static int skipSpace(String s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+        return i;
+    }
+
+    // --- Request helpers ---
+
+    private static Map<String, Object> readJson(HttpExchange ex) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = ex.getRequestBody()) {
+            byte[] buf = new byte[4096];
+            for (int n; (n = in.read(buf)) > 0; ) {
+                if (bytes.size() + n > MAX_BODY_BYTES) throw new BadRequest("Body larger than " + MAX_BODY_BYTES + " bytes");
+                bytes.write(buf, 0, n);
+            }
+        }
+        if (bytes.size() == 0) return Collections.emptyMap();
+        return parseObject(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, String> queryParams(String raw) {
+        Map<String, String> params = new LinkedHashMap<>();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    /** A body field as the text the validator checks; numbers and booleans as written. */
+    private static String text(Map<String, Object> body, String key) {
+        Object v = body.get(key);
+        if (v == null) return "";
+        if (v instanceof Double) {
+            double d = (Double) v;
+            return d == Math.rint(d) && Math.abs(d) < 1e15 ? Long.toString((long) d) : Double.toString(d);
+        }
+        return v.toString();
+    }
+
+    private static int quantity(Map<String, Object> body) {
+        Object q = body.get("quantity");
+        if (!(q instanceof Long) || (Long) q < 0 || (Long) q > Integer.MAX_VALUE) {
+            throw new BadRequest("quantity must be a non-negative whole number");
+        }
+        return (int) (long) (Long) q;
+    }
+
+    private static int itemNumber(String segment) {
+        return positiveInt(segment, "item number");
+    }
+
+    private static long millis(String text, String what) {
+        if (text == null || text.isEmpty() || !ProductValidator.isDigits(text) || text.length() > 15) {
+            throw new BadRequest(what + " must be a time in epoch milliseconds");
+        }
+        return Long.parseLong(text);
+    }
+
+    private static int positiveInt(String text, String what) {
+        int n = ProductValidator.isDigits(text) && text.length() <= 9 ? Integer.parseInt(text) : 0;
+        if (n < 1) throw new BadRequest(what + " must be a positive whole number");
+        return n;
+    }
+
+    private static Response error(int status, String result, String message) {
+        StringBuilder sb = new StringBuilder(64).append("{\"result\":\"").append(result).append("\",\"message\":");
+        string(sb, message);
+        return new Response(status, sb.append('}').toString());
+    }
+
+    private static Response methodNotAllowed() {
+        return error(405, "METHOD_NOT_ALLOWED", "Method not allowed here");
+    }
+
+    private static final class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    /** A request the client got wrong; answered with 400. */
+    private static final class BadRequest extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BadRequest(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,696 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary write-ahead log of every StockManagement mutation.
+ * Each record is framed as [payload length][CRC32][payload] so a torn tail
+ * left by a crash is detected and cut off on replay.
+ *
+ * The log is a run of numbered segments: segment 0 is the file at the journal's
+ * path and segment n the file with ".n" added. A checkpoint, written next to them
+ * with ".checkpoint.n" added, is a catalog snapshot of everything before segment
+ * n; once it is on disk the segments and checkpoints before it are deleted, and
+ * replay loads the newest checkpoint and then only the segments after it. Each
+ * checkpoint gets a new file because products restored from the previous one
+ * keep it mapped, and Windows refuses to replace or delete a mapped file; one that
+ * cannot be deleted yet is tried again after the next checkpoint.
+ *
+ * Appends are stamped with the wall-clock time whenever it has moved on since the
+ * last stamp, and every later segment starts with one, so replay knows roughly
+ * when each change was made.
+ */
+public class StockJournal implements AutoCloseable {
+
+    /** When an appended record becomes durable. */
+    public enum SyncMode {
+        /** The appending thread writes and fsyncs its own record. */
+        PER_OPERATION,
+        /** A committer thread writes everything queued so far and fsyncs once for the group. */
+        PER_BATCH,
+        /** Like PER_BATCH, but the committer also waits out a time window to grow each group. */
+        TIME_WINDOW
+    }
+
+    private static final int MAGIC = 0x534D4A31; // "SMJ1"
+    private static final int HEADER_BYTES = 4;
+    private static final int FRAME_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+
+    static final byte ADD_PRODUCT = 1;
+    static final byte STOCK_DELTA = 2;
+    static final byte STATUS = 3;
+    static final byte REMOVE_PRODUCT = 4;
+    static final byte REORDER_POINT = 5;
+    static final byte TIME = 6;
+
+    /** A switch to a new segment, due once the records queued before it are written. */
+    private static final class Rotation {
+        final FileChannel next;
+        final int recordsBefore; // how many pending buffers belong to the old segment
+
+        Rotation(FileChannel next, int recordsBefore) {
+            this.next = next;
+            this.recordsBefore = recordsBefore;
+        }
+    }
+
+    private final Path path;
+    private final SyncMode mode;
+    private final long windowNanos;
+    private final int[] replaySegments; // in order, the last one open as channel
+    private CatalogSnapshot checkpoint;  // loaded before the segments, if any
+    // The segment being written: only the committer writes it outside PER_OPERATION
+    private FileChannel channel;
+
+    // Guarded by this: records waiting for the committer, and the commit progress.
+    private ArrayList<ByteBuffer> pending = new ArrayList<>();
+    private Rotation rotation;
+    private int segment;       // the segment appends go to
+    private long segmentBytes; // appended to it so far, header included
+    private long stampMillis = -1;  // the time last stamped, never going back
+    private long segmentStartMillis; // the time the current segment was started
+    private long appendedSeq;
+    private long durableSeq;
+    private IOException failure;
+    private boolean replayed;
+    private boolean closed;
+    private Thread committer;
+
+    private StockJournal(Path path, SyncMode mode, long windowMillis, CatalogSnapshot checkpoint,
+                         int[] replaySegments, FileChannel channel) {
+        this.path = path;
+        this.mode = mode;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.checkpoint = checkpoint;
+        this.replaySegments = replaySegments;
+        this.channel = channel;
+        this.segment = replaySegments[replaySegments.length - 1];
+    }
+
+    public static StockJournal open(Path path, SyncMode mode) throws IOException {
+        return open(path, mode, 5);
+    }
+
+    /**
+     * windowMillis is only used by {@link SyncMode#TIME_WINDOW}. Segments already
+     * covered by the checkpoint, left behind by a crash right after it was written,
+     * are deleted.
+     */
+    public static StockJournal open(Path path, SyncMode mode, long windowMillis) throws IOException {
+        if (windowMillis < 0) throw new IllegalArgumentException("windowMillis must not be negative");
+        Path historyPath = historyPath(path);
+        Files.deleteIfExists(historyPath.resolveSibling(historyPath.getFileName() + ".tmp"));
+        Path checkpointPath = latestCheckpoint(path);
+        CatalogSnapshot checkpoint = checkpointPath == null ? null : CatalogSnapshot.open(checkpointPath);
+        int first = checkpoint == null ? 0 : checkpoint.getFirstSegment();
+        if (checkpointPath != null) deleteCheckpointsBut(path, checkpointPath);
+
+        int[] found = listSegments(path);
+        int live = 0;
+        for (int n : found) {
+            if (n < first) Files.delete(segmentPath(path, n));
+            else found[live++] = n;
+        }
+        int[] segments = live == 0 ? new int[] {first} : Arrays.copyOf(found, live);
+        for (int i = 0; i < segments.length - 1; i++) {
+            try (FileChannel ch = FileChannel.open(segmentPath(path, segments[i]), StandardOpenOption.READ)) {
+                checkHeader(ch, segmentPath(path, segments[i]));
+            }
+        }
+        FileChannel last = openSegment(path, segments[segments.length - 1]);
+        return new StockJournal(path, mode, windowMillis, checkpoint, segments, last);
+    }
+
+    /** Opens a segment for appending, writing the header if it is new or never got one. */
+    private static FileChannel openSegment(Path base, int n) throws IOException {
+        Path file = segmentPath(base, n);
+        FileChannel ch = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (ch.size() < HEADER_BYTES) {
+                ch.truncate(0);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC);
+                header.flip();
+                ch.write(header, 0);
+                ch.force(true);
+                ch.position(HEADER_BYTES);
+                syncDirectory(file);
+            } else {
+                checkHeader(ch, file);
+            }
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+        return ch;
+    }
+
+    private static void checkHeader(FileChannel ch, Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        ch.read(header, 0);
+        if (header.position() < HEADER_BYTES || header.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a stock journal");
+        }
+    }
+
+    /** The numbers of the segments on disk, in order. */
+    private static int[] listSegments(Path base) throws IOException {
+        Path dir = base.toAbsolutePath().getParent();
+        String prefix = base.getFileName() + ".";
+        int[] found = new int[8];
+        int count = 0;
+        if (Files.exists(base)) found[count++] = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, prefix + "*")) {
+            for (Path f : files) {
+                String suffix = f.getFileName().toString().substring(prefix.length());
+                if (suffix.isEmpty() || suffix.length() > 9 || !suffix.chars().allMatch(Character::isDigit)) continue;
+                if (count == found.length) found = Arrays.copyOf(found, count * 2);
+                found[count++] = Integer.parseInt(suffix);
+            }
+        }
+        found = Arrays.copyOf(found, count);
+        Arrays.sort(found);
+        return found;
+    }
+
+    static Path segmentPath(Path base, int n) {
+        return n == 0 ? base : base.resolveSibling(base.getFileName() + "." + n);
+    }
+
+    /** The checkpoint of everything before segment firstSegment. */
+    static Path checkpointPath(Path base, int firstSegment) {
+        return base.resolveSibling(base.getFileName() + ".checkpoint." + firstSegment);
+    }
+
+    /**
+     * The newest checkpoint on disk, or null if there is none, after deleting any a
+     * crash left half-written. A checkpoint named without a number comes from before
+     * they were numbered, so it is older than any numbered one.
+     */
+    static Path latestCheckpoint(Path base) throws IOException {
+        Path unnumbered = base.resolveSibling(base.getFileName() + ".checkpoint");
+        Path latest = Files.exists(unnumbered) ? unnumbered : null;
+        int newest = -1;
+        for (Path f : listCheckpoints(base)) {
+            String name = f.getFileName().toString();
+            if (name.endsWith(".tmp")) {
+                Files.delete(f);
+                continue;
+            }
+            int n = Integer.parseInt(name.substring(name.lastIndexOf('.') + 1));
+            if (n > newest) {
+                newest = n;
+                latest = f;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Deletes every finished checkpoint but latest, which is the newest. One that is
+     * still mapped on a platform that will not delete it is left for the next call.
+     */
+    private static void deleteCheckpointsBut(Path base, Path latest) throws IOException {
+        List<Path> old = listCheckpoints(base);
+        old.add(base.resolveSibling(base.getFileName() + ".checkpoint"));
+        for (Path f : old) {
+            if (f.getFileName().toString().endsWith(".tmp") || f.getFileName().equals(latest.getFileName())) continue;
+            try {
+                Files.deleteIfExists(f);
+            } catch (IOException e) {
+                // Products restored from it still map it; nothing reads it any more
+            }
+        }
+    }
+
+    /** The numbered checkpoints on disk, finished or not, in no particular order. */
+    private static List<Path> listCheckpoints(Path base) throws IOException {
+        Path dir = base.toAbsolutePath().getParent();
+        String prefix = base.getFileName() + ".checkpoint.";
+        List<Path> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, prefix + "*")) {
+            for (Path f : files) {
+                String suffix = f.getFileName().toString().substring(prefix.length());
+                if (suffix.equals("tmp")) { // unfinished, from before checkpoints were numbered
+                    found.add(f);
+                    continue;
+                }
+                int digits = suffix.endsWith(".tmp") ? suffix.length() - 4 : suffix.length();
+                if (digits == 0 || digits > 9 || !suffix.chars().limit(digits).allMatch(Character::isDigit)) continue;
+                found.add(f);
+            }
+        }
+        return found;
+    }
+
+    static Path historyPath(Path base) {
+        return base.resolveSibling(base.getFileName() + ".history");
+    }
+
+    /** Makes a file's creation, rename or deletion in its directory durable. */
+    private static void syncDirectory(Path file) throws IOException {
+        try (FileChannel dir = FileChannel.open(file.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Not every platform can open a directory; there the rename is as durable as it gets
+        }
+    }
+
+    public Path getPath()     { return path; }
+    public SyncMode getMode() { return mode; }
+
+    /** Where the checkpoint of everything before segment firstSegment is written. */
+    public Path getCheckpointPath(int firstSegment) { return checkpointPath(path, firstSegment); }
+
+    /** Where the stock history is written with each checkpoint. */
+    public Path getHistoryPath() { return historyPath(path); }
+
+    /** The time the current segment was started, stamped as its first record. */
+    synchronized long getSegmentStartMillis() { return segmentStartMillis; }
+
+    /** The segment appends go to. */
+    public synchronized int getSegment() { return segment; }
+
+    /** Bytes appended to the current segment, which is everything since the last checkpoint began. */
+    public synchronized long getSegmentBytes() { return segmentBytes; }
+
+    // --- Replay ---
+
+    /**
+     * Loads the checkpoint into target, if there is one, re-applies every intact
+     * record of the segments after it, drops a torn tail, and readies the journal
+     * for appends. Returns the number of records replayed.
+     *
+     * @throws IOException if a segment before the last is damaged: only the last
+     *         one can have been cut short by a crash
+     */
+    synchronized int replay(StockManagement target) throws IOException {
+        if (replayed) throw new IllegalStateException("Journal already replayed");
+        if (checkpoint != null) target.restoreCheckpoint(checkpoint);
+        checkpoint = null;
+        int count = 0;
+        for (int i = 0; i < replaySegments.length; i++) {
+            boolean last = i == replaySegments.length - 1;
+            FileChannel ch = last ? channel
+                : FileChannel.open(segmentPath(path, replaySegments[i]), StandardOpenOption.READ);
+            try {
+                count += replaySegment(ch, target, last ? null : segmentPath(path, replaySegments[i]));
+            } finally {
+                if (!last) ch.close();
+            }
+        }
+        segmentBytes = channel.position();
+        replayed = true;
+        if (mode != SyncMode.PER_OPERATION) {
+            committer = new Thread(this::commitLoop, "stock-journal-committer");
+            committer.setDaemon(true);
+            committer.start();
+        }
+        return count;
+    }
+
+    /**
+     * Replays one segment and leaves it positioned at the end of its last intact
+     * record, truncating anything after that. A sealed segment, one appends have
+     * moved on from, is named by sealed and must be intact to the end.
+     */
+    private static int replaySegment(FileChannel channel, StockManagement target, Path sealed) throws IOException {
+        channel.position(HEADER_BYTES);
+        DataInputStream in = new DataInputStream(
+            new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+        long validEnd = HEADER_BYTES;
+        int count = 0;
+        CRC32 crc = new CRC32();
+        byte[] payload = new byte[256];
+        while (true) {
+            int len, sum;
+            try {
+                len = in.readInt();
+                sum = in.readInt();
+                if (len <= 0 || len > MAX_RECORD_BYTES) break;
+                if (payload.length < len) payload = new byte[Math.max(len, payload.length * 2)];
+                in.readFully(payload, 0, len);
+            } catch (EOFException torn) {
+                break;
+            }
+            crc.reset();
+            crc.update(payload, 0, len);
+            if ((int) crc.getValue() != sum) break;
+            apply(target, new DataInputStream(new ByteArrayInputStream(payload, 0, len)));
+            validEnd += FRAME_BYTES + len;
+            count++;
+        }
+        if (channel.size() > validEnd) {
+            if (sealed != null) throw new IOException(sealed + " is damaged at byte " + validEnd);
+            channel.truncate(validEnd);
+            channel.force(true);
+        }
+        channel.position(validEnd);
+        return count;
+    }
+
+    private static void apply(StockManagement target, DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case ADD_PRODUCT:
+                target.restoreProduct(readProduct(in));
+                break;
+            case STOCK_DELTA:
+                target.restoreQuantityDelta(in.readInt(), in.readInt());
+                break;
+            case STATUS:
+                target.restoreStatus(in.readInt(), in.readBoolean());
+                break;
+            case REMOVE_PRODUCT:
+                target.restoreRemove(in.readInt());
+                break;
+            case REORDER_POINT:
+                target.restoreReorderPoint(in.readInt(), in.readInt());
+                break;
+            case TIME:
+                target.restoreTime(in.readLong());
+                break;
+            default:
+                throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    // --- Record encoding ---
+
+    static ByteBuffer productRecord(Product p) {
+        return encode(out -> {
+            out.writeByte(ADD_PRODUCT);
+            writeProduct(out, p);
+        });
+    }
+
+    static ByteBuffer quantityDeltaRecord(int itemNumber, int delta) {
+        ByteBuffer b = ByteBuffer.allocate(FRAME_BYTES + 9);
+        b.position(FRAME_BYTES);
+        b.put(STOCK_DELTA).putInt(itemNumber).putInt(delta);
+        return frame(b);
+    }
+
+    static ByteBuffer statusRecord(int itemNumber, boolean active) {
+        ByteBuffer b = ByteBuffer.allocate(FRAME_BYTES + 6);
+        b.position(FRAME_BYTES);
+        b.put(STATUS).putInt(itemNumber).put((byte) (active ? 1 : 0));
+        return frame(b);
+    }
+
+    static ByteBuffer removeRecord(int itemNumber) {
+        ByteBuffer b = ByteBuffer.allocate(FRAME_BYTES + 5);
+        b.position(FRAME_BYTES);
+        b.put(REMOVE_PRODUCT).putInt(itemNumber);
+        return frame(b);
+    }
+
+    static ByteBuffer reorderPointRecord(int itemNumber, int reorderPoint) {
+        ByteBuffer b = ByteBuffer.allocate(FRAME_BYTES + 9);
+        b.position(FRAME_BYTES);
+        b.put(REORDER_POINT).putInt(itemNumber).putInt(reorderPoint);
+        return frame(b);
+    }
+
+    static ByteBuffer timeRecord(long millis) {
+        ByteBuffer b = ByteBuffer.allocate(FRAME_BYTES + 9);
+        b.position(FRAME_BYTES);
+        b.put(TIME).putLong(millis);
+        return frame(b);
+    }
+
+    static void writeProduct(DataOutputStream out, Product p) throws IOException {
+        out.writeByte(p.getCategory().code());
+        out.writeInt(p.getItemNumber());
+        out.writeUTF(p.getProductName());
+        out.writeInt(p.getQuantityAvailable());
+        out.writeDouble(p.getProductPrice());
+        out.writeBoolean(p.isProductStatus());
+        p.writeAttributes(out);
+    }
+
+    static Product readProduct(DataInputStream in) throws IOException {
+        ProductCategory category = ProductCategory.fromCode(in.readByte());
+        int itemNumber = in.readInt();
+        String name = in.readUTF();
+        int qty = in.readInt();
+        double price = in.readDouble();
+        boolean active = in.readBoolean();
+        Product p = Product.create(category, itemNumber, name, qty, price);
+        p.readAttributes(in);
+        p.setProductStatus(active);
+        return p;
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static ByteBuffer encode(RecordWriter writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try {
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(0); // frame placeholder
+            writer.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return frame(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    /** Fills in the length and checksum of a buffer whose payload starts after the frame. */
+    private static ByteBuffer frame(ByteBuffer b) {
+        int len = b.capacity() - FRAME_BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(b.array(), FRAME_BYTES, len);
+        b.putInt(0, len).putInt(4, (int) crc.getValue());
+        b.position(0).limit(b.capacity());
+        return b;
+    }
+
+    // --- Appending ---
+
+    /**
+     * Queues records and returns a sequence number to pass to {@link #awaitDurable}.
+     * In PER_OPERATION mode the records are already durable on return.
+     */
+    synchronized long append(ByteBuffer... records) {
+        checkWritable();
+        long now = System.currentTimeMillis();
+        if (now > stampMillis) {
+            stampMillis = now;
+            ByteBuffer[] stamped = new ByteBuffer[records.length + 1];
+            stamped[0] = timeRecord(now);
+            System.arraycopy(records, 0, stamped, 1, records.length);
+            records = stamped;
+        }
+        if (mode == SyncMode.PER_OPERATION) {
+            try {
+                writeFully(channel, records, 0, records.length);
+                channel.force(false);
+            } catch (IOException e) {
+                failure = e;
+                throw new UncheckedIOException("Stock journal write failed", e);
+            }
+            for (ByteBuffer r : records) segmentBytes += r.limit();
+            durableSeq = ++appendedSeq;
+            return appendedSeq;
+        }
+        for (ByteBuffer r : records) {
+            pending.add(r);
+            segmentBytes += r.remaining();
+        }
+        appendedSeq++;
+        notifyAll();
+        return appendedSeq;
+    }
+
+    /** Blocks until every record up to seq has been fsynced. */
+    synchronized void awaitDurable(long seq) {
+        boolean interrupted = false;
+        while (durableSeq < seq && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        if (durableSeq < seq) throw new UncheckedIOException("Stock journal write failed", failure);
+    }
+
+    /**
+     * Starts a new segment and returns its number: records appended from now on go
+     * to it, while those appended before still go to the old one. Callers keep
+     * appends they need in the old segment from racing with this.
+     */
+    synchronized int rotate() throws IOException {
+        checkWritable();
+        while (rotation != null && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for the previous segment switch");
+            }
+        }
+        checkWritable();
+        FileChannel next = openSegment(path, segment + 1);
+        stampMillis = Math.max(stampMillis, System.currentTimeMillis());
+        ByteBuffer start = timeRecord(stampMillis);
+        if (mode == SyncMode.PER_OPERATION) {
+            // Every record so far is written already, by appenders holding this lock
+            try {
+                writeFully(next, new ByteBuffer[] {start}, 0, 1);
+                next.force(false);
+            } catch (IOException e) {
+                next.close();
+                throw e;
+            }
+            channel.close();
+            channel = next;
+        } else {
+            rotation = new Rotation(next, pending.size());
+            pending.add(start);
+            notifyAll();
+        }
+        segment++;
+        segmentBytes = HEADER_BYTES + start.limit();
+        segmentStartMillis = stampMillis;
+        return segment;
+    }
+
+    /**
+     * Called once the checkpoint covering everything before firstSegment is on
+     * disk: makes its rename durable, then deletes the segments and the older
+     * checkpoints it replaces.
+     */
+    void checkpointWritten(int firstSegment) throws IOException {
+        synchronized (this) {
+            // Let the committer finish with the old segment before it goes
+            while (rotation != null && failure == null && !closed) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        syncDirectory(getCheckpointPath(firstSegment));
+        for (int n : listSegments(path)) {
+            if (n < firstSegment) Files.deleteIfExists(segmentPath(path, n));
+        }
+        deleteCheckpointsBut(path, getCheckpointPath(firstSegment));
+    }
+
+    private void checkWritable() {
+        if (!replayed) throw new IllegalStateException("Journal must be replayed before appending");
+        if (closed) throw new IllegalStateException("Journal is closed");
+        if (failure != null) throw new UncheckedIOException("Stock journal write failed", failure);
+    }
+
+    private void commitLoop() {
+        while (true) {
+            ArrayList<ByteBuffer> group;
+            long groupSeq;
+            Rotation rot;
+            synchronized (this) {
+                while (pending.isEmpty() && rotation == null && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.isEmpty() && rotation == null) return;
+                if (mode == SyncMode.TIME_WINDOW && !closed && rotation == null) {
+                    long deadline = System.nanoTime() + windowNanos;
+                    long left;
+                    while ((left = deadline - System.nanoTime()) > 0 && !closed) {
+                        try {
+                            TimeUnit.NANOSECONDS.timedWait(this, left);
+                        } catch (InterruptedException e) {
+                            break;
+                        }
+                    }
+                }
+                group = pending;
+                groupSeq = appendedSeq;
+                rot = rotation;
+                pending = new ArrayList<>();
+            }
+            try {
+                ByteBuffer[] records = group.toArray(new ByteBuffer[0]);
+                int split = rot == null ? records.length : rot.recordsBefore;
+                writeFully(channel, records, 0, split);
+                channel.force(false);
+                if (rot != null) {
+                    channel.close();
+                    channel = rot.next;
+                    if (split < records.length) {
+                        writeFully(channel, records, split, records.length - split);
+                        channel.force(false);
+                    }
+                }
+                synchronized (this) {
+                    durableSeq = groupSeq;
+                    if (rot != null) rotation = null;
+                    notifyAll();
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer[] records, int from, int count) throws IOException {
+        long remaining = 0;
+        for (int i = from; i < from + count; i++) remaining += records[i].remaining();
+        while (remaining > 0) remaining -= channel.write(records, from, count);
+    }
+
+    /** Flushes everything queued, stops the committer and closes the file. */
+    @Override
+    public void close() throws IOException {
+        Thread t;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            notifyAll();
+            t = committer;
+        }
+        if (t != null) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        channel.close();
+        Rotation unfinished = rotation;
+        if (unfinished != null) unfinished.next.close();
+    }
+}
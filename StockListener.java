@@ -0,0 +1,25 @@
+/**
+ * Receives every change StockManagement makes, on the thread that made it, once
+ * the change is durable in the journal if there is one. A batch reports its lines
+ * after the whole batch is durable, and an all-or-nothing batch that fails reports
+ * nothing. Adds and removals are reported under the catalog lock, so they arrive in
+ * the order the catalog changed. Implementations must be quick and thread-safe.
+ */
+public interface StockListener {
+    default void productAdded(Product p) { }
+
+    default void productRemoved(Product p) { }
+
+    /**
+     * The quantity of p moved by delta. active is the status the change was applied
+     * under; it is only false while replaying, or for an all-or-nothing batch that
+     * commits to a product discontinued after the batch checked it.
+     */
+    default void quantityChanged(Product p, int delta, boolean active) { }
+
+    /** p became active or discontinued while holding quantity units. */
+    default void statusChanged(Product p, boolean active, int quantity) { }
+
+    /** The reorder point of p was set, or cleared to {@link Product#NO_REORDER_POINT}. */
+    default void reorderPointChanged(Product p, int reorderPoint) { }
+}
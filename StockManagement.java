@@ -1,17 +1,282 @@
 
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+public class StockManagement implements AutoCloseable {
+    private static final String PRODUCT_NOT_FOUND = "Product not found.";
+    // Writers inside an epoch are counted in one of these stripes, picked by thread
+    // and padded a cache line apart, so they do not contend on one counter
+    private static final int EPOCH_STRIPES = 32;
+    private static final int STRIPE_SPACING = 8;
 
-public class StockManagement {
     private final ArrayList<Product> products = new ArrayList<>();
+    private final IntHashMap<Product> productsByItemNumber = new IntHashMap<>();
+    private final StockJournal journal;
+    private final InventoryTotals totals = new InventoryTotals();
+    private final CopyOnWriteArrayList<StockListener> listeners = new CopyOnWriteArrayList<>();
+    private ConsoleProductRenderer renderer; // created on first listing
+    private final EnumMap<SortedProductView.Order, SortedProductView> sortedViews =
+        new EnumMap<>(SortedProductView.Order.class); // guarded by this
+    private ProductSearchIndex searchIndex; // guarded by this, built on first search
+    private ProductQueryIndex queryIndex;   // guarded by this, built on first query
+    private ReorderMonitor reorderMonitor;  // guarded by this, built on first request
+    private final StockHistory stockHistory; // recording from the start, null if turned off
+    private final ConcurrentHashMap<Long, Reservation> reservations = new ConcurrentHashMap<>();
+    private final AtomicLong lastReservationId = new AtomicLong();
+    private volatile TimingWheel<Reservation> reservationExpiry; // started on first reservation
+    private boolean closed; // guarded by this
+
+    // Checkpoints: journaled changes run inside the current epoch, and a checkpoint
+    // captures the catalog as it was when its epoch began
+    private volatile long epoch;
+    private volatile boolean switchingEpoch;
+    private final AtomicLongArray writersInEpoch = new AtomicLongArray(EPOCH_STRIPES * STRIPE_SPACING);
+    private final Object checkpointLock = new Object(); // one checkpoint at a time
+    private Thread checkpointer;        // guarded by this
+    private volatile boolean checkpointing;
+
+    // Replay only: the time of the record being replayed, and whether the levels of
+    // a just-loaded checkpoint still wait for a time to be recorded at
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private long replayMillis = NO_TIME;
+    private boolean checkpointLevelsPending;
     
+    /**
+     * An in-memory catalog. The stock history keeps sms.history.days days (default
+     * 90) of points; 0 turns it off.
+     */
     public StockManagement() {
-        // nothing else
+        this.journal = null;
+        long retention = historyRetentionMillis();
+        this.stockHistory = retention == 0 ? null : new StockHistory(retention);
+        listeners.add(totals);
+        if (stockHistory != null) listeners.add(stockHistory);
+    }
+
+    /**
+     * Rebuilds the catalog from the journal's checkpoint and the segments after it,
+     * then journals every later mutation before the mutating call returns. The stock
+     * history, kept as for {@link #StockManagement()}, is read back from the journal's
+     * history files and the replayed records.
+     */
+    public StockManagement(StockJournal journal) throws IOException {
+        long retention = historyRetentionMillis();
+        this.stockHistory = retention == 0 ? null : StockHistory.load(journal.getHistoryPath(), retention);
+        listeners.add(totals);
+        journal.replay(this);
+        if (stockHistory != null) {
+            // Journals from before the time stamps, or a checkpoint with nothing after
+            // it, leave levels without a time; they are recorded as of now
+            long now = System.currentTimeMillis();
+            for (Product p : products) stockHistory.recordAt(p.getItemNumber(), now, p.getQuantityAvailable());
+            listeners.add(stockHistory);
+        }
+        this.journal = journal;
+    }
+
+    /**
+     * Loads the catalog from a snapshot. Only names and the hot fields are read up
+     * front; category attributes stay in the mapping until first used.
+     */
+    public StockManagement(CatalogSnapshot snapshot) {
+        this.journal = null;
+        long retention = historyRetentionMillis();
+        this.stockHistory = retention == 0 ? null : new StockHistory(retention);
+        listeners.add(totals);
+        if (stockHistory != null) listeners.add(stockHistory);
+        restoreCheckpoint(snapshot);
+    }
+
+    /** sms.history.days in milliseconds, 0 if the history is turned off. */
+    private static long historyRetentionMillis() {
+        long days = Long.getLong("sms.history.days", 90);
+        if (days < 0) throw new IllegalArgumentException("sms.history.days must not be negative");
+        return days == 0 ? 0 : TimeUnit.DAYS.toMillis(days);
+    }
+
+    /** Writes the current catalog as a memory-mappable snapshot. */
+    public synchronized void saveSnapshot(Path path) throws IOException {
+        CatalogSnapshot.write(products, path);
+    }
+
+    /**
+     * Creates the engine the entry points use: journaled when the sms.journal system
+     * property names a file (sync mode from sms.journal.sync, window from
+     * sms.journal.windowMillis), in-memory otherwise. A journaled engine checkpoints
+     * in the background each time sms.journal.checkpointBytes (default 64 MiB, 0 for
+     * never) have been journaled since the last checkpoint.
+     */
+    public static StockManagement open() {
+        String path = System.getProperty("sms.journal");
+        if (path == null || path.isEmpty()) return new StockManagement();
+        try {
+            StockJournal.SyncMode mode = StockJournal.SyncMode.valueOf(
+                System.getProperty("sms.journal.sync", StockJournal.SyncMode.PER_BATCH.name()));
+            long window = Long.getLong("sms.journal.windowMillis", 5);
+            long checkpointBytes = Long.getLong("sms.journal.checkpointBytes", 64L << 20);
+            StockManagement sm = new StockManagement(StockJournal.open(Paths.get(path), mode, window));
+            if (checkpointBytes > 0) sm.startCheckpointing(checkpointBytes);
+            return sm;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open stock journal " + path, e);
+        }
+    }
+
+    /**
+     * Closes the journal, if any, after flushing what it has queued, and stops
+     * expiring reservations and checkpointing. A checkpoint under way is finished first.
+     */
+    @Override
+    public void close() throws IOException {
+        TimingWheel<Reservation> wheel;
+        Thread t;
+        synchronized (this) {
+            closed = true;
+            wheel = reservationExpiry;
+            t = checkpointer;
+            checkpointer = null;
+            checkpointing = false;
+        }
+        if (wheel != null) wheel.close();
+        if (t != null) {
+            LockSupport.unpark(t);
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    t.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+        if (journal != null) journal.close();
+    }
+
+    // --- Checkpoints ---
+
+    /**
+     * Writes a checkpoint of the catalog and deletes the journal segments it
+     * replaces, so replay starts from the checkpoint. Writers carry on meanwhile:
+     * the switch to a new epoch only waits for changes already under way to reach
+     * the journal, and each product's first change in the new epoch keeps a copy of
+     * its old state for the checkpoint to write.
+     *
+     * @throws IllegalStateException if there is no journal
+     */
+    public void checkpoint() throws IOException {
+        if (journal == null) throw new IllegalStateException("No journal to checkpoint");
+        synchronized (checkpointLock) {
+            Product[] captured;
+            long next;
+            int firstSegment;
+            // Adds and removals hold this lock, so the product list and the
+            // segment switch agree
+            synchronized (this) {
+                switchingEpoch = true;
+                try {
+                    while (writersInEpoch() != 0) Thread.yield();
+                    firstSegment = journal.rotate();
+                    next = epoch + 1;
+                    epoch = next;
+                } finally {
+                    switchingEpoch = false;
+                }
+                captured = products.toArray(new Product[0]);
+            }
+            long[] states = new long[captured.length];
+            int[] reorderPoints = new int[captured.length];
+            for (int i = 0; i < captured.length; i++) {
+                states[i] = captured[i].stateBefore(next);
+                reorderPoints[i] = captured[i].reorderPointBefore();
+            }
+            // The history goes first: until the checkpoint replaces the old one, replay
+            // skips the points it already holds
+            if (stockHistory != null) stockHistory.write(journal.getHistoryPath(), journal.getSegmentStartMillis());
+            CatalogSnapshot.write(Arrays.asList(captured), states, reorderPoints, firstSegment,
+                journal.getCheckpointPath(firstSegment));
+            journal.checkpointWritten(firstSegment);
+        }
+    }
+
+    /**
+     * Starts a daemon thread that checkpoints whenever segmentBytes have been
+     * journaled since the last checkpoint. Failed checkpoints are reported on
+     * System.err and retried at the next check.
+     */
+    public synchronized void startCheckpointing(long segmentBytes) {
+        if (journal == null) throw new IllegalStateException("No journal to checkpoint");
+        if (segmentBytes <= 0) throw new IllegalArgumentException("segmentBytes must be positive");
+        if (checkpointer != null || closed) return;
+        checkpointing = true;
+        checkpointer = new Thread(() -> {
+            while (checkpointing) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+                if (!checkpointing || journal.getSegmentBytes() < segmentBytes) continue;
+                try {
+                    checkpoint();
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Checkpoint of " + journal.getPath() + " failed: " + e);
+                }
+            }
+        }, "stock-checkpointer");
+        checkpointer.setDaemon(true);
+        checkpointer.start();
+    }
+
+    /**
+     * Joins the current epoch and returns it. A writer must call this before
+     * changing a product and {@link #exitEpoch} once its change is appended to
+     * the journal, so a checkpoint sees it either wholly before or wholly after.
+     */
+    private long enterEpoch() {
+        if (journal == null) return 0;
+        int stripe = epochStripe();
+        while (true) {
+            long e = epoch;
+            writersInEpoch.incrementAndGet(stripe);
+            if (!switchingEpoch && epoch == e) return e;
+            writersInEpoch.decrementAndGet(stripe);
+            while (switchingEpoch) Thread.yield();
+        }
+    }
+
+    private void exitEpoch() {
+        if (journal != null) writersInEpoch.decrementAndGet(epochStripe());
+    }
+
+    /** Never below the number of writers inside the epoch, as each stripe only counts its own. */
+    private long writersInEpoch() {
+        long n = 0;
+        for (int i = 0; i < EPOCH_STRIPES; i++) n += writersInEpoch.get(i * STRIPE_SPACING);
+        return n;
+    }
+
+    private static int epochStripe() {
+        long id = Thread.currentThread().getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 59) * STRIPE_SPACING;
     }
     
     /** Exactly the console flow, moved out of static main */
@@ -52,6 +317,10 @@ public class StockManagement {
         }
 
         // ----- Menu Loop -----
+        getReorderMonitor().subscribe((p, low, quantity) -> {
+            if (low) System.out.printf("%n[Low stock] %04d %s: %d left, reorder point %d%n",
+                p.getItemNumber(), p.getProductName(), quantity, p.getReorderPoint());
+        });
         int choice;
         do {
             choice = displayMenu(scanner);
@@ -67,8 +336,10 @@ public class StockManagement {
     }
 
     
-    public static void main(String[] args) {
-        new StockManagement().runConsole();
+    public static void main(String[] args) throws IOException {
+        try (StockManagement sm = open()) {
+            sm.runConsole();
+        }
     }
 
 
@@ -80,8 +351,10 @@ public class StockManagement {
         System.out.println("2. Add stock");
         System.out.println("3. Deduct stock");
         System.out.println("4. Discontinue product");
+        System.out.println("5. Set reorder point");
+        System.out.println("6. View low stock");
         System.out.println("0. Exit");
-        return getMenuChoice(scanner, "Please enter a menu option: ", 0, 4);
+        return getMenuChoice(scanner, "Please enter a menu option: ", 0, 6);
     }
 
     private static int getMenuChoice(Scanner scanner, String prompt, int min, int max) {
@@ -115,40 +388,41 @@ public class StockManagement {
 
     public void executeMenuChoice(int choice, Scanner scanner) {
         switch (choice) {
-            case 1: displayProducts();        break;
+            case 1: displayProducts(scanner); break;
             case 2: addStockConsole(scanner); break;
             case 3: deductStockConsole(scanner); break;
             case 4: discontinueConsole(scanner);  break;
+            case 5: reorderPointConsole(scanner); break;
+            case 6: lowStockConsole(scanner); break;
             case 0: System.out.println("Exiting the program."); break;
         }
     }
 
     // Exactly Console methods to avoid GUI clashes
 
-    private void displayProducts() {
+    /** Lists the products by item number and returns them in the order shown. */
+    private List<Product> displayProducts(Scanner scanner) {
         System.out.println("\n--- Product List ---");
-        products.sort(Comparator.comparingInt(Product::getItemNumber));
-        for (int i = 0; i < products.size(); i++) {
-            System.out.printf("[%02d]%s%n%n", i + 1, products.get(i));
-        }
+        List<Product> listed = getSortedView(SortedProductView.Order.ITEM_NUMBER).toList();
+        if (renderer == null) renderer = ConsoleProductRenderer.forConsole();
+        renderer.render(listed, scanner);
+        return listed;
     }
 
     private void addStockConsole(Scanner scanner) {
-        int idx = selectProduct(scanner);
-        if (idx < 0) { System.out.println("Add stock canceled."); return; }
-        Product p = products.get(idx);
+        Product p = selectProduct(scanner);
+        if (p == null) { System.out.println("Add stock canceled."); return; }
         if (!p.isProductStatus()) {
             System.out.println("Cannot add stock. Product is discontinued.");
             return;
         }
         int q = getNonNegativeInt(scanner, "Enter quantity to add: ");
-        System.out.println(p.addStock(q));
+        System.out.println(addStock(p, q));
     }
 
     private void deductStockConsole(Scanner scanner) {
-        int idx = selectProduct(scanner);
-        if (idx < 0) { System.out.println("Deduct stock canceled."); return; }
-        Product p = products.get(idx);
+        Product p = selectProduct(scanner);
+        if (p == null) { System.out.println("Deduct stock canceled."); return; }
         if (!p.isProductStatus()) {
             System.out.println("Cannot deduct stock. Product is discontinued.");
             return;
@@ -160,30 +434,48 @@ public class StockManagement {
                 System.out.println("Quantity exceeds stock. Re-enter.");
             }
         } while (q > p.getQuantityAvailable());
-        System.out.println(p.deductStock(q));
+        System.out.println(deductStock(p, q));
+    }
+
+    private void reorderPointConsole(Scanner scanner) {
+        Product p = selectProduct(scanner);
+        if (p == null) { System.out.println("Reorder point canceled."); return; }
+        int point = getNonNegativeInt(scanner, "Alert when quantity is at or below: ");
+        setReorderPoint(p.getItemNumber(), point);
+        System.out.println("Reorder point set." + (p.isLowStock() ? " The product is already low on stock." : ""));
+    }
+
+    private void lowStockConsole(Scanner scanner) {
+        System.out.println("\n--- Low Stock ---");
+        List<Product> low = getReorderMonitor().getLowStock();
+        if (low.isEmpty()) {
+            System.out.println("No product is at or below its reorder point.");
+            return;
+        }
+        if (renderer == null) renderer = ConsoleProductRenderer.forConsole();
+        renderer.render(low, scanner);
     }
 
     private void discontinueConsole(Scanner scanner) {
-        int idx = selectProduct(scanner);
-        if (idx < 0) { System.out.println("Discontinue canceled."); return; }
-        Product p = products.get(idx);
+        Product p = selectProduct(scanner);
+        if (p == null) { System.out.println("Discontinue canceled."); return; }
         if (!p.isProductStatus()) {
             System.out.println("Product is already discontinued.");
             return;
         }
-        p.setProductStatus(false);
-        System.out.println("Product discontinued.");
+        System.out.println(discontinue(p));
     }
 
-    private int selectProduct(Scanner scanner) {
-        displayProducts();
+    /** Lists the products and returns the one picked by its listed index, or null. */
+    private Product selectProduct(Scanner scanner) {
+        List<Product> listed = displayProducts(scanner);
         int idx;
         do {
             idx = getNonNegativeInt(scanner,
-                "Select a product by index (1-" + products.size() + ", 0 to cancel): ") - 1;
-            if (idx < 0) return -1;
-        } while (idx < 0 || idx >= products.size());
-        return idx;
+                "Select a product by index (1-" + listed.size() + ", 0 to cancel): ") - 1;
+            if (idx < 0) return null;
+        } while (idx >= listed.size());
+        return listed.get(idx);
     }
 
     public static String getValidatedString(Scanner scanner, String prompt) {
@@ -191,7 +483,7 @@ public class StockManagement {
         do {
             System.out.print(prompt);
             in = scanner.nextLine().trim();
-            if (!in.matches("[A-Za-z ]+")) {
+            if (!ProductValidator.isLettersAndSpaces(in)) {
                 System.out.println("Invalid input. Letters and spaces only.");
                 in = "";
             }
@@ -204,7 +496,7 @@ public class StockManagement {
         do {
             System.out.print(prompt);
             in = scanner.nextLine().trim();
-            if (!in.matches("[A-Za-z '/]+")) {
+            if (!ProductValidator.isSurname(in)) {
                 System.out.println("Invalid surname. Letters, spaces, / and ' only.");
                 in = "";
             }
@@ -231,13 +523,8 @@ public class StockManagement {
         double cap   = getStrictPositiveDouble(scanner, "Enter capacity: ");
         int qty      = getNonNegativeInt(scanner, "Enter quantity: ");
         double pr    = getStrictPositiveDouble(scanner, "Enter price: ");
-        int id;
-        do {
-            id = getNonNegativeInt(scanner, "Enter item number: ");
-            if (isItemNumberUsed(id)) 
-                System.out.println("Item number already used. Enter a different one.");
-        } while (isItemNumberUsed(id));
-        products.add(new Refrigerator(id, name, qty, pr, des, col, cap));
+        int id = getUnusedItemNumber(scanner);
+        addProduct(new Refrigerator(id, name, qty, pr, des, col, cap));
     }
 
     public void addTVConsole(Scanner scanner) {
@@ -247,13 +534,8 @@ public class StockManagement {
         double ds   = getStrictPositiveDouble(scanner, "Enter display size: ");
         int qty     = getNonNegativeInt(scanner, "Enter quantity: ");
         double pr   = getStrictPositiveDouble(scanner, "Enter price: ");
-        int id;
-        do {
-            id = getNonNegativeInt(scanner, "Enter item number: ");
-            if (isItemNumberUsed(id)) 
-                System.out.println("Item number already used. Enter a different one.");
-        } while (isItemNumberUsed(id));
-        products.add(new TV(id, name, qty, pr, st, res, ds));
+        int id = getUnusedItemNumber(scanner);
+        addProduct(new TV(id, name, qty, pr, st, res, ds));
     }
 
     public void addWashingMachineConsole(Scanner scanner) {
@@ -269,13 +551,8 @@ public class StockManagement {
         boolean hd = dIn.equalsIgnoreCase("y");
         int qty = getNonNegativeInt(scanner, "Enter quantity: ");
         double pr = getStrictPositiveDouble(scanner, "Enter price: ");
-        int id;
-        do {
-            id = getNonNegativeInt(scanner, "Enter item number: ");
-            if (isItemNumberUsed(id)) 
-                System.out.println("Item number already used. Enter a different one.");
-        } while (isItemNumberUsed(id));
-        products.add(new WashingMachine(id, name, qty, pr, drum, tp, hd));
+        int id = getUnusedItemNumber(scanner);
+        addProduct(new WashingMachine(id, name, qty, pr, drum, tp, hd));
     }
 
     public void addSmartPhoneConsole(Scanner scanner) {
@@ -285,13 +562,17 @@ public class StockManagement {
         int bc      = getNonNegativeInt(scanner, "Enter battery capacity (mAh): ");
         int qty     = getNonNegativeInt(scanner, "Enter quantity: ");
         double pr   = getStrictPositiveDouble(scanner, "Enter price: ");
-        int id;
-        do {
+        int id = getUnusedItemNumber(scanner);
+        addProduct(new SmartPhone(id, name, qty, pr, bd, mo, bc));
+    }
+
+    private int getUnusedItemNumber(Scanner scanner) {
+        int id = getNonNegativeInt(scanner, "Enter item number: ");
+        while (isItemNumberUsed(id)) {
+            System.out.println("Item number already used. Enter a different one.");
             id = getNonNegativeInt(scanner, "Enter item number: ");
-            if (isItemNumberUsed(id)) 
-                System.out.println("Item number already used. Enter a different one.");
-        } while (isItemNumberUsed(id));
-        products.add(new SmartPhone(id, name, qty, pr, bd, mo, bc));
+        }
+        return id;
     }
 
     private static String getAnyString(Scanner scanner, String prompt) {
@@ -319,7 +600,7 @@ public class StockManagement {
                                 String doorDesign,
                                 String color,
                                 double capacity) {
-        products.add(new Refrigerator(
+        addProduct(new Refrigerator(
             itemNumber, productName, quantityAvailable, productPrice,
             doorDesign, color, capacity));
     }
@@ -331,7 +612,7 @@ public class StockManagement {
                       String screenType,
                       String resolution,
                       double displaySize) {
-        products.add(new TV(
+        addProduct(new TV(
             itemNumber, productName, quantityAvailable, productPrice,
             screenType, resolution, displaySize));
     }
@@ -343,7 +624,7 @@ public class StockManagement {
                                   int drumSize,
                                   String type,
                                   boolean hasDryer) {
-        products.add(new WashingMachine(
+        addProduct(new WashingMachine(
             itemNumber, productName, quantityAvailable, productPrice,
             drumSize, type, hasDryer));
     }
@@ -355,29 +636,678 @@ public class StockManagement {
                               String brand,
                               String model,
                               int batteryCapacity) {
-        products.add(new SmartPhone(
+        addProduct(new SmartPhone(
             itemNumber, productName, quantityAvailable, productPrice,
             brand, model, batteryCapacity));
     }
 
     
     // --- Engine helpers for GUI usage ---
+    private void addProduct(Product p) {
+        synchronized (this) {
+            if (productsByItemNumber.containsKey(p.getItemNumber())) {
+                throw new IllegalArgumentException(
+                    "Item number " + p.getItemNumber() + " is already used.");
+            }
+            // Journal it while no other thread can reach it, so a concurrent change
+            // is neither folded into this record nor journaled ahead of it. The wait
+            // holds the lock so listeners hear of adds and removals in catalog order.
+            if (journal != null) awaitJournal(journal.append(StockJournal.productRecord(p)));
+            insertProduct(p);
+        }
+    }
+
+    /**
+     * Adds many products at once: one capacity check, one journal group and one wait.
+     * Nothing is added if any item number is already used or repeated.
+     */
+    public void addProducts(List<? extends Product> batch) {
+        synchronized (this) {
+            IntHashMap<Product> seen = new IntHashMap<>(batch.size());
+            for (Product p : batch) {
+                if (productsByItemNumber.containsKey(p.getItemNumber())
+                        || seen.put(p.getItemNumber(), p) != null) {
+                    throw new IllegalArgumentException(
+                        "Item number " + p.getItemNumber() + " is already used.");
+                }
+            }
+            products.ensureCapacity(products.size() + batch.size());
+            productsByItemNumber.ensureCapacity(productsByItemNumber.size() + batch.size());
+            if (journal != null && !batch.isEmpty()) {
+                // Durable before any of them is reachable, as in addProduct
+                ByteBuffer[] records = new ByteBuffer[batch.size()];
+                for (int i = 0; i < records.length; i++) records[i] = StockJournal.productRecord(batch.get(i));
+                awaitJournal(journal.append(records));
+            }
+            for (Product p : batch) insertProduct(p);
+        }
+    }
+
+    private synchronized void insertProduct(Product p) {
+        if (productsByItemNumber.containsKey(p.getItemNumber())) {
+            throw new IllegalArgumentException(
+                "Item number " + p.getItemNumber() + " is already used.");
+        }
+        p.startEpoch(epoch);
+        products.add(p);
+        productsByItemNumber.put(p.getItemNumber(), p);
+        for (StockListener l : listeners) l.productAdded(p);
+    }
+
     public boolean isItemNumberUsed(int itemNumber) {
-        return products.stream().anyMatch(p -> p.getItemNumber() == itemNumber);
+        return productsByItemNumber.containsKey(itemNumber);
+    }
+    /** Returns the product with this item number, or null if there is none. */
+    public Product getProduct(int itemNumber) {
+        return productsByItemNumber.get(itemNumber);
+    }
+    /** Removes the product with this item number. Returns false if there was none. */
+    public boolean removeProduct(int itemNumber) {
+        synchronized (this) {
+            Product p = productsByItemNumber.remove(itemNumber);
+            if (p == null) return false;
+            products.remove(p);
+            // Listeners hear of it once durable, still under the lock as in addProduct
+            if (journal != null) awaitJournal(journal.append(StockJournal.removeRecord(itemNumber)));
+            for (StockListener l : listeners) l.productRemoved(p);
+        }
+        return true;
     }
     public ArrayList<Product> getProducts() {
         return products;
     }
     public String addStock(int idx, int qty) {
-        return products.get(idx).addStock(qty);
+        return addStock(products.get(idx), qty);
     }
     public String deductStock(int idx, int qty) {
-        return products.get(idx).deductStock(qty);
+        return deductStock(products.get(idx), qty);
     }
     public String discontinueProduct(int idx) {
-        Product p = products.get(idx);
-        if (!p.isProductStatus()) return "Product is already discontinued.";
-        p.setProductStatus(false);
+        return discontinue(products.get(idx));
+    }
+
+    // --- Item-number variants, independent of list positions ---
+    public String addStockByItemNumber(int itemNumber, int qty) {
+        Product p = getProduct(itemNumber);
+        return p == null ? PRODUCT_NOT_FOUND : addStock(p, qty);
+    }
+    public String deductStockByItemNumber(int itemNumber, int qty) {
+        Product p = getProduct(itemNumber);
+        return p == null ? PRODUCT_NOT_FOUND : deductStock(p, qty);
+    }
+    public String discontinueByItemNumber(int itemNumber) {
+        Product p = getProduct(itemNumber);
+        return p == null ? PRODUCT_NOT_FOUND : discontinue(p);
+    }
+    /** Sets the active flag directly, e.g. to reactivate a product. Returns false if there is no such product. */
+    public boolean setProductStatus(int itemNumber, boolean active) {
+        Product p = getProduct(itemNumber);
+        if (p == null) return false;
+        synchronized (p) {
+            long q;
+            long seq = 0;
+            long e = enterEpoch();
+            try {
+                p.enterEpoch(e);
+                q = p.changeStatus(active);
+                if (q != Product.NO_CHANGE) seq = append(StockJournal.statusRecord(itemNumber, active));
+            } finally {
+                exitEpoch();
+            }
+            if (q != Product.NO_CHANGE) {
+                awaitJournal(seq);
+                fireStatusChanged(p, active, (int) q);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sets the quantity at or below which the product counts as low on stock, or
+     * clears it with {@link Product#NO_REORDER_POINT}. Returns false if there is no
+     * such product.
+     */
+    public boolean setReorderPoint(int itemNumber, int reorderPoint) {
+        if (reorderPoint < Product.NO_REORDER_POINT) throw new IllegalArgumentException("Negative reorder point");
+        Product p = getProduct(itemNumber);
+        if (p == null) return false;
+        synchronized (p) {
+            if (p.getReorderPoint() == reorderPoint) return true;
+            long seq;
+            long e = enterEpoch();
+            try {
+                p.enterEpoch(e);
+                seq = append(StockJournal.reorderPointRecord(itemNumber, reorderPoint));
+                p.setReorderPoint(reorderPoint);
+            } finally {
+                exitEpoch();
+            }
+            awaitJournal(seq);
+            for (StockListener l : listeners) l.reorderPointChanged(p, reorderPoint);
+        }
+        return true;
+    }
+
+    /** The live set of products at or below their reorder point, built on first request. */
+    public synchronized ReorderMonitor getReorderMonitor() {
+        if (reorderMonitor == null) {
+            ReorderMonitor monitor = new ReorderMonitor();
+            listeners.add(monitor);
+            for (Product p : products) monitor.productAdded(p);
+            reorderMonitor = monitor;
+        }
+        return reorderMonitor;
+    }
+
+    /**
+     * The quantity of every product over time, recorded from the moment the engine
+     * opens and, for a journaled engine, kept across restarts. Null if sms.history.days
+     * is 0.
+     */
+    public StockHistory getStockHistory() {
+        return stockHistory;
+    }
+
+    // --- Change notifications and running totals ---
+
+    /** Running totals by category and status, each read in O(1). */
+    public InventoryTotals getTotals() {
+        return totals;
+    }
+
+    /**
+     * Recomputes the totals from scratch and lists any bucket where the running
+     * totals disagree. Run it while stock is not being changed.
+     */
+    public synchronized List<String> checkTotals() {
+        return totals.findDrift(products);
+    }
+
+    /**
+     * The products kept in the given order from now on. The view is built on first
+     * request; after that each change re-files only the product it touches.
+     */
+    public synchronized SortedProductView getSortedView(SortedProductView.Order order) {
+        SortedProductView view = sortedViews.get(order);
+        if (view == null) {
+            view = new SortedProductView(order);
+            // Listen first, so a stock change racing with the fill is not lost
+            listeners.add(view);
+            for (Product p : products) view.productAdded(p);
+            sortedViews.put(order, view);
+        }
+        return view;
+    }
+
+    /** The word index over names and text attributes, built on first request like the sorted views. */
+    public synchronized ProductSearchIndex getSearchIndex() {
+        if (searchIndex == null) {
+            ProductSearchIndex index = new ProductSearchIndex();
+            listeners.add(index);
+            for (Product p : products) index.productAdded(p);
+            searchIndex = index;
+        }
+        return searchIndex;
+    }
+
+    /** Up to limit products matching every word of query; see {@link ProductSearchIndex#search}. */
+    public List<Product> search(String query, int limit) {
+        return getSearchIndex().search(query, limit);
+    }
+
+    /** The secondary indexes behind {@link #query}, built on first request. */
+    public synchronized ProductQueryIndex getQueryIndex() {
+        if (queryIndex == null) {
+            ProductQueryIndex index = new ProductQueryIndex(
+                getSortedView(SortedProductView.Order.PRICE), getSortedView(SortedProductView.Order.QUANTITY));
+            listeners.add(index);
+            for (Product p : products) index.productAdded(p);
+            queryIndex = index;
+        }
+        return queryIndex;
+    }
+
+    /** The products matching q, in item number order, read through the most selective index. */
+    public List<Product> query(ProductQuery q) {
+        return getQueryIndex().execute(q);
+    }
+
+    /** The plan {@link #query} would use for q, e.g. "PRICE_RANGE (~120 candidates)". */
+    public String explain(ProductQuery q) {
+        return getQueryIndex().plan(q).toString();
+    }
+
+    public void addStockListener(StockListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeStockListener(StockListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void fireQuantityChanged(Product p, int delta, boolean active) {
+        for (StockListener l : listeners) l.quantityChanged(p, delta, active);
+    }
+
+    private void fireStatusChanged(Product p, boolean active, int quantity) {
+        for (StockListener l : listeners) l.statusChanged(p, active, quantity);
+    }
+
+    // Every stock change funnels through these so it is journaled exactly once.
+    private String addStock(Product p, int qty) {
+        return Product.addStockMessage(changeStock(p, qty, true));
+    }
+
+    private String deductStock(Product p, int qty) {
+        return Product.deductStockMessage(changeStock(p, qty, false));
+    }
+
+    private byte changeStock(Product p, int qty, boolean add) {
+        byte code;
+        int delta = add ? qty : -qty;
+        long seq = 0;
+        long e = enterEpoch();
+        try {
+            p.enterEpoch(e);
+            code = add ? p.tryAddStock(qty) : p.tryDeductStock(qty);
+            if (code == StockResult.OK) seq = append(StockJournal.quantityDeltaRecord(p.getItemNumber(), delta));
+        } finally {
+            exitEpoch();
+        }
+        if (code == StockResult.OK) {
+            awaitJournal(seq);
+            fireQuantityChanged(p, delta, true);
+        }
+        return code;
+    }
+
+    private String discontinue(Product p) {
+        long q;
+        long seq = 0;
+        long e = enterEpoch();
+        try {
+            p.enterEpoch(e);
+            q = p.changeStatus(false);
+            if (q != Product.NO_CHANGE) seq = append(StockJournal.statusRecord(p.getItemNumber(), false));
+        } finally {
+            exitEpoch();
+        }
+        if (q == Product.NO_CHANGE) return "Product is already discontinued.";
+        awaitJournal(seq);
+        fireStatusChanged(p, false, (int) q);
         return "Product discontinued.";
     }
+
+    /** Appends to the journal, if any; call inside the epoch and wait on the result outside it. */
+    private long append(ByteBuffer... records) {
+        return journal == null ? 0 : journal.append(records);
+    }
+
+    private void awaitJournal(long seq) {
+        if (journal != null) journal.awaitDurable(seq);
+    }
+
+    // --- Reservations ---
+
+    /** Units held on one product for a pending order. Whoever removes it from reservations owns it. */
+    private static final class Reservation {
+        final long id;
+        final Product product;
+        final int quantity;
+        volatile TimingWheel.Timeout<Reservation> expiry;
+
+        Reservation(long id, Product product, int quantity) {
+            this.id = id;
+            this.product = product;
+            this.quantity = quantity;
+        }
+    }
+
+    /**
+     * Holds quantity units of the product's unreserved stock for holdMillis, after
+     * which they are released unless committed first. Reserved units stay in stock
+     * but can no longer be deducted or reserved by anyone else.
+     *
+     * Returns a reservation ID, which is positive, or a failure as a negated
+     * {@link StockResult} code: -NOT_FOUND, -DISCONTINUED, -INSUFFICIENT_STOCK,
+     * -INVALID_QUANTITY or -QUANTITY_OVERFLOW.
+     *
+     * @throws IllegalStateException once the engine is closed, since nothing would
+     *         release the hold any more
+     */
+    public long reserve(int itemNumber, int quantity, long holdMillis) {
+        if (quantity <= 0) return -StockResult.INVALID_QUANTITY;
+        Product p = getProduct(itemNumber);
+        if (p == null) return -StockResult.NOT_FOUND;
+        TimingWheel<Reservation> wheel = reservationExpiry();
+        byte code = p.tryReserve(quantity);
+        if (code != StockResult.OK) return -code;
+        Reservation r = new Reservation(lastReservationId.incrementAndGet(), p, quantity);
+        // In the map before the timeout exists, so an early expiry still finds it
+        reservations.put(r.id, r);
+        r.expiry = wheel.schedule(r, holdMillis);
+        // close() may have stopped the wheel meanwhile; undo the hold unless it is gone already
+        if (wheel.isClosed() && take(r.id) != null) {
+            p.releaseReserved(quantity);
+            throw new IllegalStateException("The engine is closed");
+        }
+        return r.id;
+    }
+
+    /**
+     * Deducts the reserved units from stock, as one journaled deduction. If the
+     * product was discontinued or removed meanwhile the units are released instead.
+     * Returns a {@link StockResult} code, NO_RESERVATION if the reservation is not
+     * held any more.
+     */
+    public byte commitReservation(long reservationId) {
+        Reservation r = take(reservationId);
+        if (r == null) return StockResult.NO_RESERVATION;
+        Product p = r.product;
+        byte code = StockResult.NOT_FOUND;
+        long seq = 0;
+        long e = enterEpoch();
+        try {
+            if (getProduct(p.getItemNumber()) == p) {
+                p.enterEpoch(e);
+                code = p.tryCommitReserved(r.quantity);
+            }
+            if (code == StockResult.OK) seq = append(StockJournal.quantityDeltaRecord(p.getItemNumber(), -r.quantity));
+        } finally {
+            exitEpoch();
+        }
+        if (code != StockResult.OK) {
+            p.releaseReserved(r.quantity);
+            return code;
+        }
+        awaitJournal(seq);
+        fireQuantityChanged(p, -r.quantity, true);
+        return StockResult.OK;
+    }
+
+    /** Returns the reserved units to the unreserved stock. Returns OK or NO_RESERVATION. */
+    public byte releaseReservation(long reservationId) {
+        Reservation r = take(reservationId);
+        if (r == null) return StockResult.NO_RESERVATION;
+        r.product.releaseReserved(r.quantity);
+        return StockResult.OK;
+    }
+
+    /** How many reservations are held. */
+    public int getReservationCount() {
+        return reservations.size();
+    }
+
+    private Reservation take(long reservationId) {
+        Reservation r = reservations.remove(reservationId);
+        if (r == null) return null;
+        TimingWheel.Timeout<Reservation> expiry = r.expiry;
+        if (expiry != null) expiry.cancel(); // else reserve has not scheduled it yet, and it will find r gone
+        return r;
+    }
+
+    private void expire(Reservation r) {
+        if (reservations.remove(r.id, r)) r.product.releaseReserved(r.quantity);
+    }
+
+    /** Ticks every 100 ms; 4096 buckets cover holds of up to about 7 minutes in one turn. */
+    private TimingWheel<Reservation> reservationExpiry() {
+        TimingWheel<Reservation> wheel = reservationExpiry;
+        if (wheel != null && !wheel.isClosed()) return wheel;
+        synchronized (this) {
+            if (closed) throw new IllegalStateException("The engine is closed");
+            if (reservationExpiry == null) {
+                wheel = new TimingWheel<>(100, 4096, this::expire);
+                wheel.start("stock-reservation-expiry");
+                reservationExpiry = wheel;
+            }
+            return reservationExpiry;
+        }
+    }
+
+    // --- Journal replay; the journal is not attached yet, so nothing is re-journaled ---
+
+    /** Loads a snapshot or checkpoint into an empty catalog, attributes left in the mapping. */
+    void restoreCheckpoint(CatalogSnapshot snapshot) {
+        int n = snapshot.size();
+        synchronized (this) {
+            products.ensureCapacity(products.size() + n);
+            productsByItemNumber.ensureCapacity(productsByItemNumber.size() + n);
+        }
+        for (int i = 0; i < n; i++) {
+            insertProduct(snapshot.product(i));
+        }
+        checkpointLevelsPending = true;
+    }
+
+    /**
+     * The time of the records that follow. The first one after a checkpoint is
+     * when its segment began, which is when the checkpoint's levels held.
+     */
+    void restoreTime(long millis) {
+        replayMillis = millis;
+        if (checkpointLevelsPending) {
+            checkpointLevelsPending = false;
+            if (stockHistory != null) for (Product p : products) stockHistory.recordAt(p.getItemNumber(), millis, p.getQuantityAvailable());
+        }
+    }
+
+    private void recordReplayed(int itemNumber, int level) {
+        if (replayMillis != NO_TIME && stockHistory != null) stockHistory.recordAt(itemNumber, replayMillis, level);
+    }
+
+    void restoreProduct(Product p) {
+        insertProduct(p);
+        recordReplayed(p.getItemNumber(), p.getQuantityAvailable());
+    }
+
+    void restoreRemove(int itemNumber) {
+        if (removeProduct(itemNumber)) recordReplayed(itemNumber, 0);
+    }
+
+    void restoreQuantityDelta(int itemNumber, int delta) {
+        Product p = getProduct(itemNumber);
+        if (p == null) return;
+        fireQuantityChanged(p, delta, p.adjustQuantity(delta));
+        recordReplayed(itemNumber, p.getQuantityAvailable());
+    }
+
+    void restoreReorderPoint(int itemNumber, int reorderPoint) {
+        Product p = getProduct(itemNumber);
+        if (p == null) return;
+        p.setReorderPoint(reorderPoint);
+        for (StockListener l : listeners) l.reorderPointChanged(p, reorderPoint);
+    }
+
+    void restoreStatus(int itemNumber, boolean active) {
+        Product p = getProduct(itemNumber);
+        if (p == null) return;
+        long q = p.changeStatus(active);
+        if (q != Product.NO_CHANGE) fireStatusChanged(p, active, (int) q);
+    }
+
+    // --- Batched stock movements ---
+
+    /**
+     * Applies every movement in order and reports a {@link StockResult} code per line.
+     * With allOrNothing, the batch takes effect only if every line passes; the first
+     * failing line leaves every product as it was, and the remaining lines are not
+     * attempted.
+     */
+    public BatchResult applyBatch(List<StockMovement> movements, boolean allOrNothing) {
+        if (allOrNothing) return applyAllOrNothing(movements);
+        int n = movements.size();
+        byte[] codes = new byte[n];
+        Product[] touched = new Product[n];
+        int[] discontinuedAt = null; // per line, the quantity a discontinue left
+        int ok = 0;
+        long seq;
+        long e = enterEpoch();
+        try {
+            for (int i = 0; i < n; i++) {
+                StockMovement m = movements.get(i);
+                Product p = getProduct(m.getItemNumber());
+                byte code;
+                if (p == null) {
+                    code = StockResult.NOT_FOUND;
+                } else if (m.getType() == StockMovement.Type.DISCONTINUE) {
+                    p.enterEpoch(e);
+                    long q = p.changeStatus(false);
+                    code = q == Product.NO_CHANGE ? StockResult.ALREADY_DISCONTINUED : StockResult.OK;
+                    if (code == StockResult.OK) {
+                        if (discontinuedAt == null) discontinuedAt = new int[n];
+                        discontinuedAt[i] = (int) q;
+                    }
+                } else {
+                    p.enterEpoch(e);
+                    code = applyMovement(p, m);
+                }
+                codes[i] = code;
+                if (code == StockResult.OK) {
+                    ok++;
+                    touched[i] = p;
+                }
+            }
+            seq = appendBatch(movements, codes, ok);
+        } finally {
+            exitEpoch();
+        }
+        awaitJournal(seq);
+        // Listeners hear of the batch only once it is durable, as with single changes
+        for (int i = 0; i < n; i++) {
+            Product p = touched[i];
+            if (p == null) continue;
+            StockMovement m = movements.get(i);
+            if (m.getType() == StockMovement.Type.DISCONTINUE) fireStatusChanged(p, false, discontinuedAt[i]);
+            else fireQuantityChanged(p, m.getType() == StockMovement.Type.ADD ? m.getQuantity() : -m.getQuantity(), true);
+        }
+        return new BatchResult(codes, ok, true);
+    }
+
+    /**
+     * Stages every line before any takes effect: deductions reserve their units,
+     * while additions and discontinues are only noted. Other callers see nothing of
+     * the batch until it commits, and a failing line just releases what was reserved.
+     * The commit then changes each product once, even if another caller discontinued
+     * it after it was staged, as replay would.
+     */
+    private BatchResult applyAllOrNothing(List<StockMovement> movements) {
+        int n = movements.size();
+        byte[] codes = new byte[n];
+        Staged[] lines = new Staged[n];
+        Map<Product, Staged> staged = new IdentityHashMap<>();
+        for (int i = 0; i < n; i++) {
+            StockMovement m = movements.get(i);
+            Product p = getProduct(m.getItemNumber());
+            byte code = StockResult.NOT_FOUND;
+            if (p != null) {
+                lines[i] = staged.computeIfAbsent(p, Staged::new);
+                code = lines[i].stage(m);
+            }
+            if (code != StockResult.OK) {
+                for (Staged st : staged.values()) st.release();
+                Arrays.fill(codes, 0, i, StockResult.ROLLED_BACK);
+                codes[i] = code;
+                Arrays.fill(codes, i + 1, n, StockResult.NOT_ATTEMPTED);
+                return new BatchResult(codes, 0, false);
+            }
+        }
+        long seq;
+        long e = enterEpoch();
+        try {
+            for (Staged st : staged.values()) {
+                st.product.enterEpoch(e);
+                st.commit();
+            }
+            seq = appendBatch(movements, codes, n);
+        } finally {
+            exitEpoch();
+        }
+        awaitJournal(seq);
+        for (int i = 0; i < n; i++) {
+            Staged st = lines[i];
+            StockMovement m = movements.get(i);
+            if (m.getType() != StockMovement.Type.DISCONTINUE) {
+                fireQuantityChanged(st.product, m.getType() == StockMovement.Type.ADD ? m.getQuantity() : -m.getQuantity(), st.active);
+            } else if (st.discontinuedAt != Product.NO_CHANGE) {
+                fireStatusChanged(st.product, false, (int) st.discontinuedAt);
+            }
+        }
+        return new BatchResult(codes, n, true);
+    }
+
+    /** What an all-or-nothing batch will do to one product once every line has passed. */
+    private static final class Staged {
+        final Product product;
+        int reserved;        // units held for the batch's deductions
+        int added;           // units the batch adds that its own deductions have not used
+        boolean discontinue;
+        boolean active;
+        long discontinuedAt = Product.NO_CHANGE;
+
+        Staged(Product product) {
+            this.product = product;
+        }
+
+        /** Checks one line against the product as the earlier lines leave it. */
+        byte stage(StockMovement m) {
+            if (m.getType() == StockMovement.Type.DISCONTINUE) {
+                if (discontinue || !product.isProductStatus()) return StockResult.ALREADY_DISCONTINUED;
+                discontinue = true;
+                return StockResult.OK;
+            }
+            int q = m.getQuantity();
+            if (q < 0) return StockResult.INVALID_QUANTITY;
+            if (discontinue || !product.isProductStatus()) return StockResult.DISCONTINUED;
+            if (m.getType() == StockMovement.Type.ADD) {
+                if ((long) product.getQuantityAvailable() + added + q > Integer.MAX_VALUE) return StockResult.QUANTITY_OVERFLOW;
+                added += q;
+                return StockResult.OK;
+            }
+            // A deduction uses the batch's own additions first and reserves the rest
+            int fromAdded = Math.min(q, added);
+            if (q > fromAdded) {
+                byte code = product.tryReserve(q - fromAdded);
+                if (code != StockResult.OK) return code;
+                reserved += q - fromAdded;
+            }
+            added -= fromAdded;
+            return StockResult.OK;
+        }
+
+        void release() {
+            if (reserved > 0) product.releaseReserved(reserved);
+        }
+
+        void commit() {
+            active = product.commitBatch(reserved, added);
+            if (discontinue) discontinuedAt = product.changeStatus(false);
+        }
+    }
+
+    /** Appends the applied lines of a batch as one journal group, for the caller to wait on once. */
+    private long appendBatch(List<StockMovement> movements, byte[] codes, int ok) {
+        if (journal == null || ok == 0) return 0;
+        ByteBuffer[] records = new ByteBuffer[ok];
+        int r = 0;
+        for (int i = 0; i < codes.length; i++) {
+            if (codes[i] != StockResult.OK) continue;
+            StockMovement m = movements.get(i);
+            switch (m.getType()) {
+                case ADD:    records[r++] = StockJournal.quantityDeltaRecord(m.getItemNumber(), m.getQuantity());  break;
+                case DEDUCT: records[r++] = StockJournal.quantityDeltaRecord(m.getItemNumber(), -m.getQuantity()); break;
+                default:     records[r++] = StockJournal.statusRecord(m.getItemNumber(), false);                   break;
+            }
+        }
+        return journal.append(records);
+    }
+
+    private static byte applyMovement(Product p, StockMovement m) {
+        switch (m.getType()) {
+            case ADD:
+                return p.tryAddStock(m.getQuantity());
+            default:
+                return p.tryDeductStock(m.getQuantity());
+        }
+    }
 }
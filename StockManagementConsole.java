@@ -1,8 +1,104 @@
-
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 public class StockManagementConsole {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].startsWith("--")) {
+            if (args.length != 2) usage();
+            switch (args[0]) {
+                case "--script": System.exit(runScript(args[1])); break;
+                case "--import": System.exit(importCsv(args[1])); break;
+                case "--export": exportCsv(args[1]); return;
+                case "--serve":  serve(Integer.parseInt(args[1])); return;
+                default:         usage();
+            }
+        }
         // Direct console entrypoint
-        new StockManagement().runConsole();
+        try (StockManagement sm = StockManagement.open()) {
+            sm.runConsole();
+        }
+    }
+
+    /**
+     * Runs a command script (- for standard input) and writes one result line per
+     * command to standard output and a throughput summary to standard error.
+     * Returns the exit status: 0 if every command succeeded, 1 otherwise.
+     */
+    static int runScript(String source) throws IOException {
+        BufferedReader in = source.equals("-")
+            ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16)
+            : Files.newBufferedReader(Paths.get(source), StandardCharsets.UTF_8);
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), false);
+        StockScript script;
+        long start = System.nanoTime();
+        try (StockManagement sm = StockManagement.open(); BufferedReader r = in) {
+            script = new StockScript(sm, out);
+            script.run(r);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("commands=%d ok=%d failed=%d seconds=%.3f commands_per_sec=%.0f%n",
+            script.getCommandCount(), script.getSucceededCount(), script.getFailedCount(),
+            seconds, script.getCommandCount() / Math.max(seconds, 1e-9));
+        return script.getFailedCount() == 0 ? 0 : 1;
+    }
+
+    /** Imports a catalog CSV, printing each rejected row to standard error. */
+    static int importCsv(String file) throws IOException {
+        CatalogCsv.ImportReport report;
+        long start = System.nanoTime();
+        try (StockManagement sm = StockManagement.open();
+             BufferedReader in = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            report = CatalogCsv.importInto(sm, in);
+        }
+        for (String error : report.getErrors()) System.err.println(error);
+        System.err.printf("%s seconds=%.3f%n", report, (System.nanoTime() - start) / 1e9);
+        return report.getRejected() == 0 ? 0 : 1;
+    }
+
+    /** Exports the catalog by item number to a CSV file, - for standard output. */
+    static void exportCsv(String file) throws IOException {
+        try (StockManagement sm = StockManagement.open();
+             Writer out = new BufferedWriter(file.equals("-")
+                 ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+                 : Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8), 1 << 16)) {
+            long rows = CatalogCsv.export(sm.getSortedView(SortedProductView.Order.ITEM_NUMBER), out);
+            System.err.println("exported=" + rows);
+        }
+    }
+
+    /** Serves the HTTP API on port until the process is stopped, then closes the journal. */
+    static void serve(int port) throws IOException {
+        // Nagle's algorithm off for every HttpServer in this process, which serves
+        // only this one; read once, when the first server is created
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        StockManagement sm = StockManagement.open();
+        StockHttpServer server = new StockHttpServer(sm, new InetSocketAddress(port));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            try {
+                sm.close();
+            } catch (IOException e) {
+                System.err.println("Closing the journal failed: " + e.getMessage());
+            }
+        }));
+        server.start();
+        System.err.println("serving port=" + server.getPort()
+            + " threads=" + (server.usesVirtualThreads() ? "virtual" : "pooled"));
+    }
+
+    private static void usage() {
+        System.err.println("Usage: StockManagementConsole [--script FILE|- | --import FILE | --export FILE|- | --serve PORT]");
+        System.exit(2);
     }
 }
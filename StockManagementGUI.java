@@ -1,6 +1,12 @@
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
@@ -15,7 +21,6 @@ import javafx.scene.control.ButtonType;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Dialog;
 import javafx.scene.control.Label;
-import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
 import javafx.scene.control.RadioButton;
 import javafx.scene.control.TextField;
@@ -38,8 +43,18 @@ public class StockManagementGUI extends Application {
     private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     // --- Data ---
-    private final StockManagement stockManager = new StockManagement();
+    private final StockManagement stockManager = StockManagement.open();
     private final ObservableList<Product> productList = FXCollections.observableArrayList();
+    private final ObservableList<Product> searchResults = FXCollections.observableArrayList();
+    private static final int SEARCH_LIMIT = 100;
+    // Searches run here, one at a time, so typing never waits on the index
+    private final ExecutorService searcher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "search");
+        t.setDaemon(true);
+        return t;
+    });
+    // Bumped on every change of the search text; a search whose number is stale is dropped
+    private final AtomicLong searchGeneration = new AtomicLong();
     private UserInfo currentUser;
     private int maxProducts = 10;
 
@@ -49,7 +64,9 @@ public class StockManagementGUI extends Application {
     private VBox rightPanel;
     private Label headerUserLabel, headerDateLabel;
     private Button addProductBtn;
+    private TextField searchField;
     private Label maxProductsLabel;
+    private Label lowStockLabel;
 
     // --- Dynamic Add Form Fields ---
     private ComboBox<String> addTypeBox;
@@ -60,6 +77,13 @@ public class StockManagementGUI extends Application {
         showUserInfoDialog();
     }
 
+    /** Flushes and closes the journal, stopping its background threads, on exit. */
+    @Override
+    public void stop() throws IOException {
+        searcher.shutdownNow();
+        stockManager.close();
+    }
+
     // --- Header ---
     private VBox createHeader() {
         VBox header = new VBox(5);
@@ -86,10 +110,32 @@ public class StockManagementGUI extends Application {
         group.setTextFill(Color.LIGHTGRAY);
         group.setFont(Font.font("Segoe UI", FontWeight.NORMAL, 13));
 
-        header.getChildren().addAll(title, headerUserLabel, headerDateLabel, maxProductsLabel, group);
+        // Low stock badge, updated as products cross their reorder points
+        lowStockLabel = new Label();
+        lowStockLabel.setTextFill(Color.web("#f5b041"));
+        lowStockLabel.setFont(Font.font("Segoe UI", FontWeight.BOLD, 13));
+        lowStockLabel.setOnMouseClicked(e -> showLowStock());
+        stockManager.getReorderMonitor().subscribe((p, low, quantity) -> Platform.runLater(this::updateLowStockLabel));
+        updateLowStockLabel();
+
+        header.getChildren().addAll(title, headerUserLabel, headerDateLabel, maxProductsLabel, group, lowStockLabel);
         return header;
     }
 
+    private void updateLowStockLabel() {
+        int n = stockManager.getReorderMonitor().size();
+        lowStockLabel.setText("Low stock: " + n + (n == 1 ? " product" : " products") + " (click to view)");
+        lowStockLabel.setVisible(n > 0);
+        lowStockLabel.setManaged(n > 0);
+    }
+
+    // Lists the products at or below their reorder point in place of the full list
+    private void showLowStock() {
+        searchField.clear();
+        searchResults.setAll(stockManager.getReorderMonitor().getLowStock());
+        productListView.setItems(searchResults);
+    }
+
     private String getMaxProductsInfo() {
         return "Max Products: " + maxProducts + " | Added: " + stockManager.getProducts().size() + 
                " | Remaining: " + (maxProducts - stockManager.getProducts().size());
@@ -116,13 +162,22 @@ public class StockManagementGUI extends Application {
         addProductBtn.setOnAction(e -> showAddProductForm());
 
         productListView = new ListView<>(productList);
-        productListView.setCellFactory(lv -> new ProductListCell());
+        productListView.setCellFactory(lv -> new ProductListCell(stockManager));
+        ProductListUpdater listUpdater = new ProductListUpdater(productList);
+        stockManager.addStockListener(listUpdater);
+        listUpdater.reset(stockManager.getProducts());
         productListView.setOnMouseClicked(e -> {
             Product selected = productListView.getSelectionModel().getSelectedItem();
             if (selected != null) showProductDetails(selected);
         });
 
-        left.getChildren().addAll(addProductBtn, productListView);
+        searchField = new TextField();
+        searchField.setPromptText("Search name, brand, model, color...");
+        searchField.textProperty().addListener((obs, oldText, text) -> showSearchResults(text));
+        // Build the index now, ahead of any search queued behind it
+        searcher.execute(stockManager::getSearchIndex);
+
+        left.getChildren().addAll(addProductBtn, searchField, productListView);
         VBox.setVgrow(productListView, Priority.ALWAYS);
 
         // Right: Details/Actions Panel
@@ -138,6 +193,25 @@ public class StockManagementGUI extends Application {
         return mainContent;
     }
 
+    // Shows the matches for query in place of the full list, or the full list again when it is empty.
+    // The search runs on the searcher thread and only the newest one reaches the list.
+    private void showSearchResults(String query) {
+        long generation = searchGeneration.incrementAndGet();
+        if (query == null || query.trim().isEmpty()) {
+            productListView.setItems(productList);
+            return;
+        }
+        searcher.execute(() -> {
+            if (generation != searchGeneration.get()) return;
+            List<Product> found = stockManager.search(query, SEARCH_LIMIT);
+            Platform.runLater(() -> {
+                if (generation != searchGeneration.get()) return;
+                searchResults.setAll(found);
+                productListView.setItems(searchResults);
+            });
+        });
+    }
+
     // --- Welcome Panel ---
     private void showWelcomePanel() {
         rightPanel.getChildren().clear();
@@ -167,14 +241,15 @@ public class StockManagementGUI extends Application {
         Label name = new Label("Name: " + p.getProductName());
         name.setFont(Font.font("Segoe UI", 15));
         
-        Label type = new Label("Type: " + getTypeString(p));
+        Label type = new Label("Type: " + p.getCategory().getDisplayName());
         type.setFont(Font.font("Segoe UI", 15));
         
         Label status = new Label("Status: " + (p.isProductStatus() ? "Active" : "Discontinued"));
         status.setTextFill(p.isProductStatus() ? Color.GREEN : Color.RED);
         status.setFont(Font.font("Segoe UI", FontWeight.BOLD, 14));
         
-        Label qty = new Label("Quantity: " + p.getQuantityAvailable());
+        Label qty = new Label("Quantity: " + p.getQuantityAvailable() + (p.isLowStock() ? " (low stock)" : ""));
+        if (p.isLowStock()) qty.setTextFill(Color.web("#d35400"));
         Label price = new Label(String.format("Price: RM %.2f", p.getProductPrice()));
         Label value = new Label(String.format("Inventory Value: RM %.2f", p.getInventoryValue()));
         qty.setFont(Font.font("Segoe UI", 14));
@@ -188,36 +263,11 @@ public class StockManagementGUI extends Application {
         details.getChildren().add(label);
 
 
-        // Convert the product's toString() result into separate lines
-        String[] productInfo = p.toString().split("\n");
-
-        // Go through each line of product information
-        for (String line : productInfo) {
-            // Check if the line contains a colon (separates property name from value)
-            if (line.contains(":")) {
-                // Split the line into property name and value
-                String[] parts = line.split(":");
-                
-                // Get the property name without extra spaces
-                String propertyName = parts[0].trim();
-                String propertyValue = parts.length > 1 ? parts[1].trim() : "";
-                
-                // Skip basic information that's already shown above
-                boolean isBasicInfo = propertyName.equals("Item number") || 
-                                    propertyName.equals("Product name") || 
-                                    propertyName.equals("Status") ||
-                                    propertyName.equals("Quantity available") ||
-                                    propertyName.equals("Price (RM)") ||
-                                    propertyName.equals("Inventory value");
-                
-                // If it's not basic info, add it to the details
-                if (!isBasicInfo) {
-                    // Create a label with the property and its value, without space before colon
-                    Label detailLabel = new Label(propertyName + ": " + propertyValue);
-                    detailLabel.setFont(Font.font("Segoe UI", 14));
-                    details.getChildren().add(detailLabel);
-                }
-            }
+        // Category-specific attributes, read straight from the product
+        for (ProductAttribute attribute : p.getAttributes()) {
+            Label detailLabel = new Label(attribute.getName() + ": " + attribute.format(p));
+            detailLabel.setFont(Font.font("Segoe UI", 14));
+            details.getChildren().add(detailLabel);
         }
 
         details.setPadding(new Insets(10, 0, 0, 0));
@@ -250,8 +300,7 @@ public class StockManagementGUI extends Application {
                     showAlert("Please enter a non-negative quantity.");
                     return;
                 }
-                showAlert(p.addStock(q));
-                refreshList();
+                showAlert(stockManager.addStockByItemNumber(p.getItemNumber(), q));
                 showProductDetails(p);
             } catch (Exception ex) { showAlert("Invalid quantity."); }
         });
@@ -263,26 +312,43 @@ public class StockManagementGUI extends Application {
                     showAlert("Please enter a non-negative quantity.");
                     return;
                 }
-                showAlert(p.deductStock(q));
-                refreshList();
+                showAlert(stockManager.deductStockByItemNumber(p.getItemNumber(), q));
                 showProductDetails(p);
             } catch (Exception ex) { showAlert("Invalid quantity."); }
         });
         
         stockBox.getChildren().addAll(stockField, addStockBtn, deductStockBtn);
 
+        // Reorder point
+        HBox reorderBox = new HBox(10);
+        TextField reorderField = new TextField();
+        reorderField.setPromptText(p.getReorderPoint() == Product.NO_REORDER_POINT
+            ? "No reorder point" : "Reorder point: " + p.getReorderPoint());
+        Button reorderBtn = new Button("Set Reorder Point");
+        reorderBtn.setOnAction(e -> {
+            String text = reorderField.getText().trim();
+            if (text.isEmpty()) {
+                stockManager.setReorderPoint(p.getItemNumber(), Product.NO_REORDER_POINT);
+            } else if (ProductValidator.isDigits(text) && text.length() <= 9) {
+                stockManager.setReorderPoint(p.getItemNumber(), Integer.parseInt(text));
+            } else {
+                showAlert("Enter a non-negative whole number, or leave it empty to clear the reorder point.");
+                return;
+            }
+            showProductDetails(p);
+        });
+        reorderBox.getChildren().addAll(reorderField, reorderBtn);
+
         // Discontinue button
         Button discontinueBtn = new Button("Discontinue Product");
         discontinueBtn.setStyle("-fx-background-color: #e74c3c; -fx-text-fill: white;");
         discontinueBtn.setOnAction(e -> {
-            p.setProductStatus(false);
-            showAlert("Product discontinued.");
-            refreshList();
+            showAlert(stockManager.discontinueByItemNumber(p.getItemNumber()));
             showProductDetails(p);
         });
         discontinueBtn.setDisable(!p.isProductStatus());
 
-        box.getChildren().addAll(id, name, type, status, qty, price, value, details, stockBox, discontinueBtn);
+        box.getChildren().addAll(id, name, type, status, qty, price, value, details, stockBox, reorderBox, discontinueBtn);
         rightPanel.getChildren().add(box);
     }
 
@@ -324,7 +390,7 @@ public class StockManagementGUI extends Application {
         addItemNumber.setPromptText("Enter 4 digits (e.g., 0001)");
         // Add listener to format the number as 4 digits
         addItemNumber.textProperty().addListener((observable, oldValue, newValue) -> {
-            if (!newValue.matches("\\d*")) {
+            if (!newValue.isEmpty() && !ProductValidator.isDigits(newValue)) {
                 addItemNumber.setText(newValue.replaceAll("[^\\d]", ""));
             } else if (!newValue.isEmpty()) {
                 try {
@@ -516,154 +582,22 @@ public class StockManagementGUI extends Application {
             return;
         }
 
-        StringBuilder errors = new StringBuilder("Please fix the following errors:\n\n");
-        boolean hasErrors = false;
-
-        // Validate Item Number (must be 4 digits)
-        int itemNumber = 0;
-        try {
-            String itemNumberText = addItemNumber.getText().trim();
-            if (!itemNumberText.matches("\\d{4}")) {
-                errors.append("• Item number must be exactly 4 digits\n");
-                hasErrors = true;
-            } else {
-                itemNumber = Integer.parseInt(itemNumberText);
-                if (itemNumber <= 0) {
-                    errors.append("• Item number must be a positive number\n");
-                    hasErrors = true;
-                }
-                if (stockManager.isItemNumberUsed(itemNumber)) {
-                    errors.append("• Item number is already in use\n");
-                    hasErrors = true;
-                }
-            }
-        } catch (NumberFormatException e) {
-            errors.append("• Item number must be a positive number\n");
-            hasErrors = true;
-        }
-
-        // Validate Product Name
-        String name = addName.getText();
-        if (!name.matches("[A-Za-z ]+")) {
-            errors.append("• Product name must contain only letters and spaces\n");
-            hasErrors = true;
+        ProductCategory category = null;
+        for (ProductCategory c : ProductCategory.values()) {
+            if (c.getDisplayName().equals(addTypeBox.getValue())) category = c;
         }
+        ProductValidator.Result result = ProductValidator.validate(category,
+            addItemNumber.getText(), addName.getText(), addQty.getText(), addPrice.getText(),
+            addF1.getText(), addF2.getText(), addF3.getText());
 
-        // Validate Price
-        try {
-            double price = Double.parseDouble(addPrice.getText());
-            if (price <= 0) {
-                errors.append("• Price must be positive value\n");
-                hasErrors = true;
-            }
-        } catch (NumberFormatException e) {
-            errors.append("• Price must be a positive number\n");
-            hasErrors = true;
-        }
-
-        // Validate Quantity
-        try {
-            int qty = Integer.parseInt(addQty.getText());
-            if (qty < 0) {
-                errors.append("• Quantity must be a non-negative number\n");
-                hasErrors = true;
-            }
-        } catch (NumberFormatException e) {
-            errors.append("• Quantity must be a non-negative number\n");
-            hasErrors = true;
+        StringBuilder errors = new StringBuilder("Please fix the following errors:\n\n");
+        for (ProductValidator.FieldError e : result.getErrors()) {
+            errors.append("• ").append(e.getMessage()).append('\n');
         }
-
-        // Validate type-specific fields
-        String type = addTypeBox.getValue();
-        if (type == null) {
-            errors.append("• Please select a product type\n");
+        boolean hasErrors = !result.isValid();
+        if (result.getItemNumber() > 0 && stockManager.isItemNumberUsed(result.getItemNumber())) {
+            errors.append("• Item number is already in use\n");
             hasErrors = true;
-        } else {
-            switch (type) {
-                  case "Refrigerator":
-                    if (!addF1.getText().matches("[A-Za-z ]+")) {
-                        errors.append("• Door design must contain only letters and spaces\n");
-                        hasErrors = true;
-                    }
-                    if (!addF2.getText().matches("[A-Za-z ]+")) {
-                        errors.append("• Color must contain only letters and spaces\n");
-                        hasErrors = true;
-                    }
-                    try {
-                        double capacity = Double.parseDouble(addF3.getText());
-                        if (capacity <= 0) {
-                            errors.append("• Capacity must be positive\n");
-                            hasErrors = true;
-                        }
-                    } catch (NumberFormatException e) {
-                        errors.append("• Capacity must be a positive number\n");
-                        hasErrors = true;
-                    }
-                    break;
-
-                  case "TV":
-                    if (!addF1.getText().matches("[A-Za-z ]+")) {
-                        errors.append("• Screen type must contain only letters and spaces\n");
-                        hasErrors = true;
-                    }
-                    if (addF2.getText().trim().isEmpty()) {
-                        errors.append("• Resolution cannot be empty\n");
-                        hasErrors = true;
-                    }
-                    try {
-                        double displaySize = Double.parseDouble(addF3.getText());
-                        if (displaySize <= 0) {
-                            errors.append("• Display size must be a positive number\n");
-                            hasErrors = true;
-                        }
-                    } catch (NumberFormatException e) {
-                        errors.append("• Display size must be a positive number\n");
-                        hasErrors = true;
-                    }
-                    break;
-
-                  case "Washing Machine":
-                    try {
-                        int drumSize = Integer.parseInt(addF1.getText());
-                        if (drumSize <= 0) {
-                            errors.append("• Drum size must be positive\n");
-                            hasErrors = true;
-                        }
-                    } catch (NumberFormatException e) {
-                        errors.append("• Drum size must be a positive number\n");
-                        hasErrors = true;
-                    }
-                    if (!addF2.getText().matches("[A-Za-z ]+")) {
-                        errors.append("• Machine type must contain only letters and spaces\n");
-                        hasErrors = true;
-                    }
-                    if (!addF3.getText().toLowerCase().matches("true|false")) {
-                        errors.append("• Has Dryer must be either 'true' or 'false'\n");
-                        hasErrors = true;
-                    }
-                    break;
-
-                case "SmartPhone":
-                    if (!addF1.getText().matches("[A-Za-z ]+")) {
-                        errors.append("• Brand must contain only letters and spaces\n");
-                        hasErrors = true;
-                    }
-                    if (addF2.getText().trim().isEmpty()) {
-                        errors.append("• Model cannot be empty\n");
-                        hasErrors = true;
-                    }
-                    try {
-                        int batteryCapacity = Integer.parseInt(addF3.getText());
-                        if (batteryCapacity <= 0) {
-                            errors.append("• Battery capacity must be a positive number\n");
-                            hasErrors = true;
-                        }
-                    } catch (NumberFormatException e) {
-                        errors.append("• Battery capacity must be a positive number\n");
-                        hasErrors = true;
-                    }
-                    break;
-            }
         }
 
         // If there are any errors, show them all at once
@@ -673,104 +607,23 @@ public class StockManagementGUI extends Application {
             alert.setHeaderText("Invalid Input");
             alert.setContentText(errors.toString());
             alert.showAndWait();
-                return;
-            }
+            return;
+        }
 
         // If no errors, proceed with adding the product
         try {
-            itemNumber = Integer.parseInt(addItemNumber.getText());
-            String productName = addName.getText();
-            int quantity = Integer.parseInt(addQty.getText());
-            double price = Double.parseDouble(addPrice.getText());
-
-            switch (type) {
-                  case "Refrigerator":
-                    stockManager.addRefrigerator(itemNumber, productName, quantity, price,
-                        addF1.getText(), addF2.getText(), Double.parseDouble(addF3.getText()));
-                    break;
-                  case "TV":
-                    stockManager.addTV(itemNumber, productName, quantity, price,
-                        addF1.getText(), addF2.getText(), Double.parseDouble(addF3.getText()));
-                    break;
-                  case "Washing Machine":
-                    stockManager.addWashingMachine(itemNumber, productName, quantity, price,
-                        Integer.parseInt(addF1.getText()), addF2.getText(), Boolean.parseBoolean(addF3.getText()));
-                    break;
-                case "SmartPhone":
-                    stockManager.addSmartPhone(itemNumber, productName, quantity, price,
-                        addF1.getText(), addF2.getText(), Integer.parseInt(addF3.getText()));
-                    break;
-            }
+            stockManager.addProducts(Collections.singletonList(result.getProduct()));
             
             showAlert("Product added successfully!");
+            showSearchResults(searchField.getText());
             showWelcomePanel();
             updateMaxProductsLabel();
-            refreshList();
             
         } catch (Exception e) {
             showAlert("An unexpected error occurred. Please check your input.");
         }
     }
 
-    // --- Product List Cell ---
-    private static class ProductListCell extends ListCell<Product> {
-        @Override
-        protected void updateItem(Product item, boolean empty) {
-            super.updateItem(item, empty);
-            if (empty || item == null) {
-                setText(null);
-                setGraphic(null);
-            } else {
-                HBox box = new HBox(10);
-                box.setAlignment(Pos.CENTER_LEFT);
-                
-                // Create status indicator as a small circle
-                Label status = new Label("•");
-                status.setFont(Font.font("System", 14));
-                status.setStyle("-fx-cursor: hand;");
-                status.setTextFill(item.isProductStatus() ? Color.web("#2ecc71") : Color.web("#e74c3c"));
-                
-                // Add tooltip to show status
-                Tooltip tooltip = new Tooltip(item.isProductStatus() ? "Active" : "Discontinued");
-                Tooltip.install(status, tooltip);
-                
-                // Allow clicking to toggle status
-                status.setOnMouseClicked(e -> {
-                    item.setProductStatus(!item.isProductStatus());
-                    updateItem(item, false);
-                });
-                
-                // Format ID with 4 digits and show it first
-                Label id = new Label(String.format("%04d", item.getItemNumber()));
-                id.setFont(Font.font("Segoe UI", FontWeight.BOLD, 15));
-                
-                Label name = new Label(item.getProductName());
-                name.setFont(Font.font("Segoe UI", 13));
-                
-                Label type = new Label(getTypeString(item));
-                type.setFont(Font.font("Segoe UI", 13));
-                
-                Label qty = new Label("Qty: " + item.getQuantityAvailable());
-                qty.setFont(Font.font("Segoe UI", 13));
-                
-                box.getChildren().addAll(status, id, name, type, qty);
-                setGraphic(box);
-            }
-        }
-    }
-
-    private static String getTypeString(Product p) {
-        if (p instanceof Refrigerator) return "Refrigerator";
-        if (p instanceof TV) return "TV";
-        if (p instanceof WashingMachine) return "Washing Machine";
-        if (p instanceof SmartPhone) return "SmartPhone";
-        return "Unknown";
-    }
-
-    private void refreshList() {
-        productList.setAll(stockManager.getProducts());
-    }
-
     private void showAlert(String msg) {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle("Info");
@@ -781,13 +634,9 @@ public class StockManagementGUI extends Application {
 
     // Validation utility methods
     private String getValidatedString(String input, Label errorLabel) {
-        if (input == null || input.trim().isEmpty()) {
-            errorLabel.setText("Input cannot be empty.");
-            errorLabel.setVisible(true);
-            return "";
-        }
-        if (!input.matches("[A-Za-z ]+")) {
-            errorLabel.setText("Invalid input. Letters and spaces only.");
+        String error = ProductValidator.nameError(input);
+        if (error != null) {
+            errorLabel.setText(error);
             errorLabel.setVisible(true);
             return "";
         }
@@ -796,13 +645,9 @@ public class StockManagementGUI extends Application {
     }
 
     private String getValidatedSurname(String input, Label errorLabel) {
-        if (input == null || input.trim().isEmpty()) {
-            errorLabel.setText("Input cannot be empty.");
-            errorLabel.setVisible(true);
-            return "";
-        }
-        if (!input.matches("[A-Za-z '/]+")) {
-            errorLabel.setText("Invalid surname. Letters, spaces, / and ' only.");
+        String error = ProductValidator.surnameError(input);
+        if (error != null) {
+            errorLabel.setText(error);
             errorLabel.setVisible(true);
             return "";
         }
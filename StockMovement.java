@@ -0,0 +1,39 @@
+/**
+ * One line of a stock batch, keyed by item number.
+ */
+public final class StockMovement {
+    public enum Type { ADD, DEDUCT, DISCONTINUE }
+
+    private final Type type;
+    private final int itemNumber;
+    private final int quantity;
+
+    private StockMovement(Type type, int itemNumber, int quantity) {
+        this.type = type;
+        this.itemNumber = itemNumber;
+        this.quantity = quantity;
+    }
+
+    public static StockMovement add(int itemNumber, int quantity) {
+        return new StockMovement(Type.ADD, itemNumber, quantity);
+    }
+
+    public static StockMovement deduct(int itemNumber, int quantity) {
+        return new StockMovement(Type.DEDUCT, itemNumber, quantity);
+    }
+
+    public static StockMovement discontinue(int itemNumber) {
+        return new StockMovement(Type.DISCONTINUE, itemNumber, 0);
+    }
+
+    public Type getType()      { return type; }
+    public int getItemNumber() { return itemNumber; }
+    public int getQuantity()   { return quantity; }
+
+    @Override
+    public String toString() {
+        return type == Type.DISCONTINUE
+            ? String.format("%s %04d", type, itemNumber)
+            : String.format("%s %04d x%d", type, itemNumber, quantity);
+    }
+}
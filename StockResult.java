@@ -0,0 +1,30 @@
+/**
+ * Reason codes for stock operations. Batches report one of these per line
+ * instead of building a message String for every movement.
+ */
+public final class StockResult {
+    public static final byte OK = 0;
+    public static final byte NOT_FOUND = 1;
+    public static final byte DISCONTINUED = 2;
+    public static final byte INSUFFICIENT_STOCK = 3;
+    public static final byte QUANTITY_OVERFLOW = 4;
+    public static final byte INVALID_QUANTITY = 5;
+    public static final byte ALREADY_DISCONTINUED = 6;
+    /** The line passed but was not applied because a later line of an all-or-nothing batch failed. */
+    public static final byte ROLLED_BACK = 7;
+    /** The line was never applied because an earlier line of an all-or-nothing batch failed. */
+    public static final byte NOT_ATTEMPTED = 8;
+    /** No such reservation is held: it never existed, or was committed, released or expired. */
+    public static final byte NO_RESERVATION = 9;
+
+    private static final String[] NAMES = {
+        "OK", "NOT_FOUND", "DISCONTINUED", "INSUFFICIENT_STOCK", "QUANTITY_OVERFLOW",
+        "INVALID_QUANTITY", "ALREADY_DISCONTINUED", "ROLLED_BACK", "NOT_ATTEMPTED", "NO_RESERVATION"
+    };
+
+    private StockResult() { }
+
+    public static String name(byte code) {
+        return code >= 0 && code < NAMES.length ? NAMES[code] : "UNKNOWN";
+    }
+}
@@ -0,0 +1,266 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs stock commands from a text stream without prompting, one command per line:
+ *
+ *   add-fridge  ITEM NAME QTY PRICE DOOR_DESIGN COLOR CAPACITY
+ *   add-tv      ITEM NAME QTY PRICE SCREEN_TYPE RESOLUTION DISPLAY_SIZE
+ *   add-washer  ITEM NAME QTY PRICE DRUM_SIZE TYPE HAS_DRYER
+ *   add-phone   ITEM NAME QTY PRICE BRAND MODEL BATTERY
+ *   add-stock   ITEM QTY
+ *   deduct      ITEM QTY
+ *   discontinue ITEM
+ *   reorder-point ITEM QTY   (-1 clears it)
+ *   report
+ *
+ * Fields are separated by spaces; a field containing spaces is written in double
+ * quotes. Blank lines and lines starting with # are skipped.
+ *
+ * Each command produces one tab-separated result line: input line number, command,
+ * item number, result code (OK, a {@link StockResult} name, DUPLICATE_ITEM_NUMBER or
+ * INVALID_COMMAND) and detail. Runs of adds and runs of stock commands are applied
+ * as one addProducts or applyBatch call each, so a journal syncs once per run
+ * rather than once per line.
+ */
+public class StockScript {
+    private static final int MAX_GROUP = 1024;
+
+    private final StockManagement sm;
+    private final PrintWriter out;
+
+    // The current run of like commands, not yet applied
+    private final List<Product> pendingAdds = new ArrayList<>();
+    private final List<StockMovement> pendingMoves = new ArrayList<>();
+    private final int[] pendingLines = new int[MAX_GROUP];
+    private final String[] pendingCommands = new String[MAX_GROUP];
+    private int pendingCount;
+    private final IntHashMap<Product> pendingItems = new IntHashMap<>();
+
+    private int commands;
+    private int succeeded;
+
+    public StockScript(StockManagement sm, PrintWriter out) {
+        this.sm = sm;
+        this.out = out;
+    }
+
+    public int getCommandCount()   { return commands; }
+    public int getSucceededCount() { return succeeded; }
+    public int getFailedCount()    { return commands - succeeded; }
+
+    /** Executes every command in in and writes one result line for each. */
+    public void run(BufferedReader in) throws IOException {
+        String text;
+        int lineNumber = 0;
+        while ((text = in.readLine()) != null) {
+            lineNumber++;
+            String trimmed = text.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+            execute(lineNumber, trimmed);
+        }
+        flush();
+        out.flush();
+    }
+
+    private void execute(int line, String text) {
+        List<String> f;
+        try {
+            f = split(text);
+        } catch (IllegalArgumentException e) {
+            fail(line, "?", "", "INVALID_COMMAND", e.getMessage());
+            return;
+        }
+        String command = f.get(0).toLowerCase(Locale.ROOT);
+        try {
+            switch (command) {
+                case "add-fridge":
+                case "add-tv":
+                case "add-washer":
+                case "add-phone":
+                    queueAdd(line, command, f);
+                    break;
+                case "add-stock":
+                    expect(f, 3);
+                    queueMove(line, command, StockMovement.add(integer(f, 1), integer(f, 2)));
+                    break;
+                case "deduct":
+                    expect(f, 3);
+                    queueMove(line, command, StockMovement.deduct(integer(f, 1), integer(f, 2)));
+                    break;
+                case "discontinue":
+                    expect(f, 2);
+                    queueMove(line, command, StockMovement.discontinue(integer(f, 1)));
+                    break;
+                case "reorder-point":
+                    expect(f, 3);
+                    reorderPoint(line, integer(f, 1), integer(f, 2));
+                    break;
+                case "report":
+                    expect(f, 1);
+                    flush();
+                    report(line);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown command " + f.get(0));
+            }
+        } catch (IllegalArgumentException e) {
+            fail(line, command, f.size() > 1 ? f.get(1) : "", "INVALID_COMMAND", e.getMessage());
+        }
+    }
+
+    // --- Grouping ---
+
+    private void queueAdd(int line, String command, List<String> f) {
+        expect(f, 8);
+        int item = integer(f, 1);
+        String name = f.get(2);
+        int qty = integer(f, 3);
+        double price = decimal(f, 4);
+        if (item <= 0) throw new IllegalArgumentException("Item number must be positive");
+        if (qty < 0 || price < 0) throw new IllegalArgumentException("Quantity and price must not be negative");
+        Product p;
+        switch (command) {
+            case "add-fridge": p = new Refrigerator(item, name, qty, price, f.get(5), f.get(6), decimal(f, 7)); break;
+            case "add-tv":     p = new TV(item, name, qty, price, f.get(5), f.get(6), decimal(f, 7)); break;
+            case "add-washer": p = new WashingMachine(item, name, qty, price, integer(f, 5), f.get(6), yesNo(f, 7)); break;
+            default:           p = new SmartPhone(item, name, qty, price, f.get(5), f.get(6), integer(f, 7)); break;
+        }
+        if (!pendingMoves.isEmpty()) flush();
+        if (sm.isItemNumberUsed(item) || pendingItems.containsKey(item)) {
+            fail(line, command, Integer.toString(item), "DUPLICATE_ITEM_NUMBER", "Item number is already used.");
+            return;
+        }
+        pendingItems.put(item, p);
+        pendingAdds.add(p);
+        pending(line, command);
+    }
+
+    private void queueMove(int line, String command, StockMovement m) {
+        if (!pendingAdds.isEmpty()) flush();
+        pendingMoves.add(m);
+        pending(line, command);
+    }
+
+    private void pending(int line, String command) {
+        pendingLines[pendingCount] = line;
+        pendingCommands[pendingCount++] = command;
+        if (pendingCount == MAX_GROUP) flush();
+    }
+
+    /** Applies the pending run and writes its results in input order. */
+    private void flush() {
+        if (!pendingAdds.isEmpty()) {
+            String code = "OK", detail = "Product added.";
+            try {
+                sm.addProducts(pendingAdds);
+            } catch (IllegalArgumentException e) { // an item number was taken since it was checked
+                code = "DUPLICATE_ITEM_NUMBER";
+                detail = e.getMessage();
+            }
+            for (int i = 0; i < pendingAdds.size(); i++) {
+                result(pendingLines[i], pendingCommands[i],
+                    Integer.toString(pendingAdds.get(i).getItemNumber()), code, detail);
+            }
+        } else if (!pendingMoves.isEmpty()) {
+            BatchResult r = sm.applyBatch(pendingMoves, false);
+            for (int i = 0; i < r.size(); i++) {
+                result(pendingLines[i], pendingCommands[i],
+                    Integer.toString(pendingMoves.get(i).getItemNumber()), StockResult.name(r.code(i)), "");
+            }
+        }
+        pendingAdds.clear();
+        pendingMoves.clear();
+        pendingCount = 0;
+        pendingItems.clear();
+    }
+
+    private void reorderPoint(int line, int item, int point) {
+        if (point < Product.NO_REORDER_POINT) throw new IllegalArgumentException("Reorder point must be -1 or more");
+        flush();
+        boolean found = sm.setReorderPoint(item, point);
+        result(line, "reorder-point", Integer.toString(item), found ? "OK" : StockResult.name(StockResult.NOT_FOUND), "");
+    }
+
+    private void report(int line) {
+        InventoryTotals t = sm.getTotals();
+        result(line, "report", "", "OK", String.format(Locale.ROOT,
+            "products=%d;active=%d;units=%d;value=%.2f;low=%d",
+            t.getProductCount(), t.getProductCount(true), t.getTotalUnits(), t.getTotalValue(),
+            sm.getReorderMonitor().size()));
+    }
+
+    /** Reports a command that never reaches StockManagement, after the pending run, to keep input order. */
+    private void fail(int line, String command, String item, String code, String detail) {
+        flush();
+        result(line, command, item, code, detail);
+    }
+
+    private void result(int line, String command, String item, String code, String detail) {
+        commands++;
+        if (code.equals("OK")) succeeded++;
+        out.append(Integer.toString(line)).append('\t').append(command).append('\t')
+           .append(item).append('\t').append(code).append('\t').append(detail).append('\n');
+    }
+
+    // --- Parsing ---
+
+    /** Splits on spaces, keeping double-quoted fields whole. */
+    static List<String> split(String text) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        int i = 0, n = text.length();
+        while (i < n) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"') {
+                int end = text.indexOf('"', i + 1);
+                if (end < 0) throw new IllegalArgumentException("Unclosed quote");
+                fields.add(text.substring(i + 1, end));
+                i = end + 1;
+            } else {
+                field.setLength(0);
+                while (i < n && !Character.isWhitespace(text.charAt(i))) field.append(text.charAt(i++));
+                fields.add(field.toString());
+            }
+        }
+        return fields;
+    }
+
+    private static void expect(List<String> f, int count) {
+        if (f.size() != count) {
+            throw new IllegalArgumentException(f.get(0) + " takes " + (count - 1) + " fields, got " + (f.size() - 1));
+        }
+    }
+
+    private static int integer(List<String> f, int i) {
+        try {
+            return Integer.parseInt(f.get(i));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a whole number: " + f.get(i));
+        }
+    }
+
+    private static double decimal(List<String> f, int i) {
+        try {
+            double v = Double.parseDouble(f.get(i));
+            if (Double.isNaN(v) || Double.isInfinite(v)) throw new NumberFormatException();
+            return v;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + f.get(i));
+        }
+    }
+
+    private static boolean yesNo(List<String> f, int i) {
+        switch (f.get(i).toLowerCase(Locale.ROOT)) {
+            case "yes": case "true":  return true;
+            case "no":  case "false": return false;
+            default: throw new IllegalArgumentException("Not yes or no: " + f.get(i));
+        }
+    }
+}
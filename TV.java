@@ -1,3 +1,7 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
 
 public class TV extends Product {
     private String screenType;
@@ -12,8 +16,41 @@ public class TV extends Product {
         this.displaySize = displaySize;
     }
 
+    /** Creates the product with its attributes still to be read or decoded. */
+    TV(int itemNumber, String productName, int quantityAvailable, double productPrice) {
+        super(itemNumber, productName, quantityAvailable, productPrice);
+    }
+
+    public String getScreenType()  { loadAttributes(); return screenType; }
+    public String getResolution()  { loadAttributes(); return resolution; }
+    public double getDisplaySize() { loadAttributes(); return displaySize; }
+
+    static final List<ProductAttribute> ATTRIBUTES = List.of(
+        ProductAttribute.text(TV.class, "screenType", "Screen type", TV::getScreenType),
+        ProductAttribute.text(TV.class, "resolution", "Resolution", TV::getResolution),
+        ProductAttribute.decimal(TV.class, "displaySize", "Display size", TV::getDisplaySize));
+
+    @Override
+    public ProductCategory getCategory() { return ProductCategory.TV; }
+
+    @Override
+    void writeAttributes(DataOutput out) throws IOException {
+        loadAttributes();
+        out.writeUTF(screenType);
+        out.writeUTF(resolution);
+        out.writeDouble(displaySize);
+    }
+
+    @Override
+    void readAttributes(DataInput in) throws IOException {
+        screenType = in.readUTF();
+        resolution = in.readUTF();
+        displaySize = in.readDouble();
+    }
+
     @Override
     public String toString() {
+        loadAttributes();
         return String.format(
             "Item number     : %04d%n" +
             "Product name        : %s%n" +
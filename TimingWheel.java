@@ -0,0 +1,172 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * A hashed timing wheel: a ring of buckets, one per tick, each holding the timeouts
+ * that fall due on that tick of some turn of the ring. Scheduling and cancelling
+ * are O(1) from any thread; each tick visits one bucket, so the cost of expiry
+ * follows the timeouts falling due, not the number outstanding. Deadlines are
+ * rounded up to a whole tick.
+ *
+ * New timeouts wait in a lock-free queue and only the thread advancing the wheel
+ * touches the buckets. That is the daemon thread {@link #start} runs, or the
+ * caller of {@link #advance(long)}.
+ */
+public class TimingWheel<T> implements AutoCloseable {
+
+    /** One scheduled timeout. */
+    public static final class Timeout<T> {
+        private volatile T item; // null once cancelled or expired
+        private final long deadlineTick;
+        private long rounds;      // turns of the ring left, wheel thread only
+        private Timeout<T> next;  // in its bucket, wheel thread only
+
+        Timeout(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * Stops the timeout from firing, unless it already has. The bucket entry is
+         * dropped when the wheel next reaches it.
+         */
+        public void cancel() { item = null; }
+
+        public boolean isPending() { return item != null; }
+    }
+
+    private final long tickNanos;
+    private final LongSupplier clock;
+    private final long startNanos;
+    private final Consumer<T> onExpiry;
+    private final Timeout<T>[] buckets;
+    private final int mask;
+    private final ConcurrentLinkedQueue<Timeout<T>> incoming = new ConcurrentLinkedQueue<>();
+    private long currentTick; // the last tick processed, wheel thread only
+    private Thread ticker;    // guarded by this
+    private volatile boolean closed; // set under this
+
+    /**
+     * A wheel of at least bucketCount buckets (rounded up to a power of two), each
+     * tickMillis wide. onExpiry runs on the advancing thread and must be quick; an
+     * exception it throws is reported on System.err and the wheel carries on.
+     */
+    public TimingWheel(long tickMillis, int bucketCount, Consumer<T> onExpiry) {
+        this(tickMillis, bucketCount, onExpiry, System::nanoTime);
+    }
+
+    /** Reads the time from clock, in nanoseconds, instead of System.nanoTime. */
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMillis, int bucketCount, Consumer<T> onExpiry, LongSupplier clock) {
+        if (tickMillis <= 0 || bucketCount <= 0) throw new IllegalArgumentException("Tick and bucket count must be positive");
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int size = Integer.highestOneBit(Math.max(1, bucketCount - 1)) << 1;
+        this.buckets = (Timeout<T>[]) new Timeout<?>[size];
+        this.mask = size - 1;
+        this.onExpiry = onExpiry;
+        this.clock = clock;
+        this.startNanos = clock.getAsLong();
+    }
+
+    /**
+     * Fires item to onExpiry once delayMillis have passed, unless cancelled first.
+     * On a closed wheel it never fires; see {@link #isClosed()}.
+     */
+    public Timeout<T> schedule(T item, long delayMillis) {
+        long due = clock.getAsLong() - startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        Timeout<T> t = new Timeout<>(item, (due + tickNanos - 1) / tickNanos);
+        incoming.add(t);
+        return t;
+    }
+
+    /**
+     * Fires every timeout due by nowNanos (a reading of the clock) and returns
+     * how many fired. Only one thread may advance the wheel.
+     */
+    public int advance(long nowNanos) {
+        long target = (nowNanos - startNanos) / tickNanos;
+        int fired = 0;
+        while (currentTick < target) {
+            currentTick++;
+            transferIncoming();
+            fired += expire(currentTick);
+        }
+        transferIncoming();
+        return fired;
+    }
+
+    private void transferIncoming() {
+        for (Timeout<T> t; (t = incoming.poll()) != null; ) {
+            if (t.item == null) continue;
+            // Anything already due goes in the next bucket to be visited
+            long tick = Math.max(t.deadlineTick, currentTick + 1);
+            t.rounds = (tick - currentTick - 1) / buckets.length;
+            int b = (int) (tick & mask);
+            t.next = buckets[b];
+            buckets[b] = t;
+        }
+    }
+
+    private int expire(long tick) {
+        int b = (int) (tick & mask);
+        int fired = 0;
+        Timeout<T> prev = null;
+        for (Timeout<T> t = buckets[b]; t != null; t = t.next) {
+            T item = t.item;
+            if (item != null && t.rounds > 0) {
+                t.rounds--;
+                prev = t;
+                continue;
+            }
+            // Due, or cancelled: unlink it
+            if (prev == null) buckets[b] = t.next;
+            else prev.next = t.next;
+            if (item != null) {
+                t.item = null;
+                fired++;
+                try {
+                    onExpiry.accept(item);
+                } catch (RuntimeException e) {
+                    // One failing callback must not stop the rest, or the ticker
+                    System.err.println("Timeout callback failed for " + item + ": " + e);
+                }
+            }
+        }
+        return fired;
+    }
+
+    /** Starts a daemon thread that advances the wheel every tick. */
+    public synchronized void start(String threadName) {
+        if (ticker != null || closed) return;
+        ticker = new Thread(() -> {
+            long pauseMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(tickNanos));
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(pauseMillis);
+                    advance(clock.getAsLong());
+                }
+            } catch (InterruptedException e) {
+                // close() stops the ticker
+            }
+        }, threadName);
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    /** Whether {@link #close()} has been called. */
+    public boolean isClosed() { return closed; }
+
+    /** Stops the ticker thread. Pending timeouts no longer fire. */
+    @Override
+    public void close() {
+        Thread t;
+        synchronized (this) {
+            closed = true;
+            t = ticker;
+            ticker = null;
+        }
+        if (t != null) t.interrupt();
+    }
+}
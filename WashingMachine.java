@@ -1,4 +1,7 @@
-
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
 
 public class WashingMachine extends Product {
     private int drumSize;
@@ -13,8 +16,41 @@ public class WashingMachine extends Product {
         this.hasDryer = hasDryer;
     }
 
+    /** Creates the product with its attributes still to be read or decoded. */
+    WashingMachine(int itemNumber, String productName, int quantityAvailable, double productPrice) {
+        super(itemNumber, productName, quantityAvailable, productPrice);
+    }
+
+    public int getDrumSize()     { loadAttributes(); return drumSize; }
+    public String getType()      { loadAttributes(); return type; }
+    public boolean hasDryer()    { loadAttributes(); return hasDryer; }
+
+    static final List<ProductAttribute> ATTRIBUTES = List.of(
+        ProductAttribute.integer(WashingMachine.class, "drumSize", "Drum size", "L", WashingMachine::getDrumSize),
+        ProductAttribute.text(WashingMachine.class, "type", "Type", WashingMachine::getType),
+        ProductAttribute.yesNo(WashingMachine.class, "hasDryer", "Has Dryer", WashingMachine::hasDryer));
+
+    @Override
+    public ProductCategory getCategory() { return ProductCategory.WASHING_MACHINE; }
+
+    @Override
+    void writeAttributes(DataOutput out) throws IOException {
+        loadAttributes();
+        out.writeInt(drumSize);
+        out.writeUTF(type);
+        out.writeBoolean(hasDryer);
+    }
+
+    @Override
+    void readAttributes(DataInput in) throws IOException {
+        drumSize = in.readInt();
+        type = in.readUTF();
+        hasDryer = in.readBoolean();
+    }
+
     @Override
     public String toString() {
+        loadAttributes();
         return String.format(
             "Item number     : %04d%n" +
             "Product name        : %s%n" +
@@ -0,0 +1,142 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CyclicBarrier;
+import java.util.regex.Pattern;
+
+/**
+ * Small throughput harness for the benchmarks in this directory: timed warmup and
+ * measurement iterations, optional contending threads, and a result sink that
+ * keeps the JIT from discarding the measured work.
+ *
+ * Settings are system properties:
+ *   bench.warmup      warmup iterations (default 5)
+ *   bench.iterations  measured iterations (default 10)
+ *   bench.millis      length of each iteration (default 500)
+ *   bench.filter      regular expression a benchmark name must contain
+ *   bench.format      csv (default) or json, one object per line
+ *   bench.out         file to write results to instead of standard output
+ */
+public class Bench implements AutoCloseable {
+
+    /** One invocation of the measured code. i counts invocations on the calling thread. */
+    public interface Op {
+        long run(int i) throws Exception;
+    }
+
+    private final String suite;
+    private final int warmup = Integer.getInteger("bench.warmup", 5);
+    private final int iterations = Integer.getInteger("bench.iterations", 10);
+    private final long millis = Long.getLong("bench.millis", 500);
+    private final Pattern filter = Pattern.compile(System.getProperty("bench.filter", ""));
+    private final boolean json = "json".equalsIgnoreCase(System.getProperty("bench.format", "csv"));
+    private final PrintStream out;
+    private final List<String> failures = new ArrayList<>();
+
+    private volatile boolean running;
+    private volatile long sink;
+
+    public Bench(String suite) throws IOException {
+        this.suite = suite;
+        String file = System.getProperty("bench.out");
+        this.out = file == null ? System.out : new PrintStream(new FileOutputStream(file, true), true, "UTF-8");
+        if (!json) out.println("suite,benchmark,param,threads,iterations,ns_per_op,error_ns,ops_per_sec");
+    }
+
+    /** True if the benchmark is selected by bench.filter, so expensive setup can be skipped. */
+    public boolean enabled(String name) {
+        return filter.matcher(name).find();
+    }
+
+    public void run(String name, String param, Op op) {
+        run(name, param, 1, null, op);
+    }
+
+    /**
+     * Measures op on the given number of threads. setup, if not null, runs before
+     * every iteration outside the timed region.
+     */
+    public void run(String name, String param, int threads, Runnable setup, Op op) {
+        if (!enabled(name)) return;
+        double[] nsPerOp = new double[iterations];
+        try {
+            for (int it = 0; it < warmup + iterations; it++) {
+                if (setup != null) setup.run();
+                long[] opsAndNanos = iteration(threads, op);
+                if (it >= warmup) nsPerOp[it - warmup] = (double) opsAndNanos[1] * threads / Math.max(opsAndNanos[0], 1);
+            }
+        } catch (Exception e) {
+            failures.add(name + " [" + param + "]: " + e);
+            return;
+        }
+        report(name, param, threads, nsPerOp);
+    }
+
+    private long[] iteration(int threads, Op op) throws Exception {
+        long[] counts = new long[threads];
+        Exception[] errors = new Exception[threads];
+        CyclicBarrier start = new CyclicBarrier(threads + 1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int slot = t;
+            workers[t] = new Thread(() -> {
+                long local = 0;
+                int i = 0;
+                try {
+                    start.await();
+                    while (running) {
+                        local += op.run(i++);
+                    }
+                } catch (Exception e) {
+                    errors[slot] = e;
+                }
+                counts[slot] = i;
+                sink += local;
+            }, suite + "-worker-" + t);
+            workers[t].start();
+        }
+        running = true;
+        start.await();
+        long t0 = System.nanoTime();
+        Thread.sleep(millis);
+        running = false;
+        for (Thread w : workers) w.join();
+        long elapsed = System.nanoTime() - t0; // includes the invocations still running at the stop
+        long ops = 0;
+        for (int t = 0; t < threads; t++) {
+            if (errors[t] != null) throw errors[t];
+            ops += counts[t];
+        }
+        return new long[] {ops, elapsed};
+    }
+
+    private void report(String name, String param, int threads, double[] nsPerOp) {
+        double mean = 0;
+        for (double v : nsPerOp) mean += v;
+        mean /= nsPerOp.length;
+        double var = 0;
+        for (double v : nsPerOp) var += (v - mean) * (v - mean);
+        double error = nsPerOp.length > 1 ? Math.sqrt(var / (nsPerOp.length - 1)) : 0;
+        double opsPerSec = 1e9 * threads / mean;
+        if (json) {
+            out.printf(Locale.ROOT, "{\"suite\":\"%s\",\"benchmark\":\"%s\",\"param\":\"%s\",\"threads\":%d,"
+                + "\"iterations\":%d,\"nsPerOp\":%.3f,\"errorNs\":%.3f,\"opsPerSec\":%.1f}%n",
+                suite, name, param, threads, nsPerOp.length, mean, error, opsPerSec);
+        } else {
+            out.printf(Locale.ROOT, "%s,%s,%s,%d,%d,%.3f,%.3f,%.1f%n",
+                suite, name, param, threads, nsPerOp.length, mean, error, opsPerSec);
+        }
+    }
+
+    /** Prints any benchmark that threw and exits non-zero if there was one. */
+    @Override
+    public void close() {
+        if (out != System.out) out.close();
+        if (failures.isEmpty()) return;
+        for (String f : failures) System.err.println("FAILED " + f);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,168 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Kills a journaled process with SIGKILL while it writes and checkpoints, then
+ * recovers the journal and checks the result, round after round on the same files.
+ *
+ * The child runs writers that each add one unit at a time, round robin over their
+ * own products, and checkpoints whenever crash.checkpointBytes have been journaled,
+ * which with a large catalog keeps a checkpoint under way most of the time. Each
+ * writer prints how many of its additions have returned. After the kill every
+ * writer's products must hold exactly some prefix of its additions, no shorter
+ * than what it printed, whatever the checkpoint was doing.
+ *
+ * Properties: crash.products (100000), crash.writers (4), crash.rounds (20),
+ * crash.checkpointBytes (262144).
+ */
+public class CheckpointCrashBenchmark {
+    private static final int PRODUCTS = Integer.getInteger("crash.products", 100_000);
+    private static final int WRITERS = Integer.getInteger("crash.writers", 4);
+    private static final int ROUNDS = Integer.getInteger("crash.rounds", 20);
+    private static final long CHECKPOINT_BYTES = Long.getLong("crash.checkpointBytes", 256 << 10);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 2 && args[0].equals("child")) {
+            child(Paths.get(args[1]));
+            return;
+        }
+        Path dir = Files.createTempDirectory("sms-crash");
+        Path journal = dir.resolve("stock.journal");
+        try (StockManagement sm = new StockManagement(StockJournal.open(journal, StockJournal.SyncMode.PER_BATCH))) {
+            List<Product> catalog = new ArrayList<>(PRODUCTS);
+            for (int i = 0; i < PRODUCTS; i++) catalog.add(new TV(i, "Television", 0, 999.0, "OLED", "3840x2160", 55));
+            sm.addProducts(catalog);
+        }
+
+        Random random = new Random(42);
+        int failures = 0;
+        System.out.println("round,killed_after_ms,mid_checkpoint,checkpoint_bytes,journal_bytes,recover_ms,acked_ops,recovered_ops,consistent");
+        for (int round = 1; round <= ROUNDS; round++) {
+            long[] acked = new long[WRITERS];
+            long killAfter = 500 + random.nextInt(2500);
+            runAndKill(journal, acked, killAfter);
+
+            boolean midCheckpoint = false;
+            long journalBytes = 0;
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path f : (Iterable<Path>) files::iterator) {
+                    String name = f.getFileName().toString();
+                    if (name.contains("checkpoint")) midCheckpoint |= name.endsWith(".tmp");
+                    else if (!name.contains("history")) journalBytes += Files.size(f);
+                }
+            }
+            Path checkpoint = StockJournal.latestCheckpoint(journal);
+            long checkpointBytes = checkpoint == null ? 0 : Files.size(checkpoint);
+
+            long start = System.nanoTime();
+            try (StockManagement sm = new StockManagement(StockJournal.open(journal, StockJournal.SyncMode.PER_BATCH))) {
+                double recoverMillis = (System.nanoTime() - start) / 1e6;
+                long ackedOps = 0, recoveredOps = 0;
+                String problem = null;
+                for (int w = 0; w < WRITERS; w++) {
+                    long done = additions(sm, w);
+                    ackedOps += acked[w];
+                    recoveredOps += done;
+                    if (done < acked[w]) problem = "writer " + w + " lost " + (acked[w] - done) + " acknowledged additions";
+                    else if (!isPrefix(sm, w, done)) problem = "writer " + w + " products are not a prefix of its additions";
+                }
+                if (sm.getProducts().size() != PRODUCTS) problem = sm.getProducts().size() + " products recovered";
+                System.out.printf("%d,%d,%b,%d,%d,%.1f,%d,%d,%s%n", round, killAfter, midCheckpoint,
+                    checkpointBytes, journalBytes, recoverMillis, ackedOps, recoveredOps, problem == null ? "yes" : problem);
+                if (problem != null) failures++;
+            }
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path f : (Iterable<Path>) files::iterator) Files.delete(f);
+        }
+        Files.delete(dir);
+        if (failures > 0) {
+            System.out.println(failures + " of " + ROUNDS + " recoveries were inconsistent");
+            System.exit(1);
+        }
+    }
+
+    /** Starts the child, kills it killAfter ms after it is ready and collects the counts it printed. */
+    static void runAndKill(Path journal, long[] acked, long killAfter) throws Exception {
+        Process child = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+            "-cp", System.getProperty("java.class.path"),
+            "-Dcrash.products=" + PRODUCTS, "-Dcrash.writers=" + WRITERS, "-Dcrash.checkpointBytes=" + CHECKPOINT_BYTES,
+            CheckpointCrashBenchmark.class.getName(), "child", journal.toString())
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+        CountDownLatch ready = new CountDownLatch(1);
+        Thread reader = new Thread(() -> {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(child.getInputStream(), StandardCharsets.UTF_8))) {
+                for (String line; (line = in.readLine()) != null; ) {
+                    if (line.equals("ready")) {
+                        ready.countDown();
+                        continue;
+                    }
+                    String[] parts = line.split(" ");
+                    int w = Integer.parseInt(parts[0]);
+                    long n = Long.parseLong(parts[1]);
+                    synchronized (acked) { acked[w] = Math.max(acked[w], n); }
+                }
+            } catch (IOException e) {
+                // The pipe breaks when the child is killed
+            }
+        });
+        reader.start();
+        ready.await(60, TimeUnit.SECONDS);
+        Thread.sleep(killAfter);
+        child.destroyForcibly().waitFor();
+        reader.join();
+    }
+
+    /** The child: writers adding units and background checkpoints, until killed. */
+    static void child(Path journal) throws IOException {
+        StockManagement sm = new StockManagement(StockJournal.open(journal, StockJournal.SyncMode.PER_BATCH));
+        sm.startCheckpointing(CHECKPOINT_BYTES);
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            Thread t = new Thread(() -> {
+                int share = share(writer);
+                for (long k = additions(sm, writer); ; ) {
+                    sm.addStockByItemNumber(writer + WRITERS * (int) (k % share), 1);
+                    k++;
+                    if ((k & 255) == 0) System.out.println(writer + " " + k);
+                }
+            }, "crash-writer-" + w);
+            t.start();
+        }
+        System.out.println("ready");
+    }
+
+    /** How many additions writer made: the units across its products, which start at zero. */
+    static long additions(StockManagement sm, int writer) {
+        long n = 0;
+        for (int i = writer; i < PRODUCTS; i += WRITERS) n += sm.getProduct(i).getQuantityAvailable();
+        return n;
+    }
+
+    /** Whether writer's products hold exactly its first done additions, round robin. */
+    static boolean isPrefix(StockManagement sm, int writer, long done) {
+        int share = share(writer);
+        for (int j = 0; j < share; j++) {
+            long expected = done / share + (j < done % share ? 1 : 0);
+            if (sm.getProduct(writer + WRITERS * j).getQuantityAvailable() != expected) return false;
+        }
+        return true;
+    }
+
+    /** How many products writer owns: those whose item number is writer modulo WRITERS. */
+    static int share(int writer) {
+        return (PRODUCTS - writer + WRITERS - 1) / WRITERS;
+    }
+}
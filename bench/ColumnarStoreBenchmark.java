@@ -0,0 +1,99 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Heap footprint and full-scan speed of ColumnarProductStore against the
+ * ArrayList<Product> layout StockManagement uses. Prints CSV.
+ *
+ * Usage: java -Xmx4g ColumnarStoreBenchmark [size ...]   (default 100000 1000000)
+ */
+public class ColumnarStoreBenchmark {
+    private static final String[] COLORS = {"Silver", "Black", "White", "Red"};
+    private static final String[] BRANDS = {"Samsung", "Apple", "Xiaomi", "Oppo", "Vivo"};
+
+    public static void main(String[] args) {
+        int[] sizes = args.length == 0 ? new int[] {100_000, 1_000_000} : new int[args.length];
+        for (int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i]);
+
+        System.out.println("products,layout,heap_bytes,bytes_per_product,scan_value_ms,scan_active_units_ms");
+        for (int n : sizes) {
+            long before = usedHeap();
+            List<Product> list = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) list.add(heapProduct(i));
+            long listBytes = usedHeap() - before;
+            double listValue = bestOf(() -> {
+                double total = 0;
+                for (Product p : list) total += p.getInventoryValue();
+                return (long) total;
+            });
+            double listUnits = bestOf(() -> {
+                long units = 0;
+                for (Product p : list) if (p.isProductStatus()) units += p.getQuantityAvailable();
+                return units;
+            });
+            print(n, "ArrayList<Product>", listBytes, listValue, listUnits);
+            list.clear();
+
+            before = usedHeap();
+            ColumnarProductStore store = new ColumnarProductStore(n);
+            for (int i = 0; i < n; i++) addColumnar(store, i);
+            long storeBytes = usedHeap() - before;
+            double storeValue = bestOf(store::inventoryValueCents);
+            ColumnarProductStore.View view = store.view();
+            double storeUnits = bestOf(() -> {
+                long units = 0;
+                for (int r = 0; r < store.size(); r++) {
+                    if (view.moveTo(r).isProductStatus()) units += view.getQuantityAvailable();
+                }
+                return units;
+            });
+            print(n, "ColumnarProductStore", storeBytes, storeValue, storeUnits);
+        }
+    }
+
+    static Product heapProduct(int i) {
+        String name = "Product " + i;
+        switch (i & 3) {
+            case 0:  return new Refrigerator(i, name, i % 50, 1299.90, "French Door", COLORS[i % 4], 450);
+            case 1:  return new TV(i, name, i % 40, 2499.00, "OLED", "3840x2160", 55);
+            case 2:  return new WashingMachine(i, name, i % 30, 1599.00, 9, "Front Load", (i & 4) != 0);
+            default: return new SmartPhone(i, name, i % 80, 3999.00, BRANDS[i % 5], "Model " + (i % 100), 4000);
+        }
+    }
+
+    static void addColumnar(ColumnarProductStore store, int i) {
+        String name = "Product " + i;
+        switch (i & 3) {
+            case 0:  store.addRefrigerator(i, name, i % 50, 1299.90, "French Door", COLORS[i % 4], 450); break;
+            case 1:  store.addTV(i, name, i % 40, 2499.00, "OLED", "3840x2160", 55); break;
+            case 2:  store.addWashingMachine(i, name, i % 30, 1599.00, 9, "Front Load", (i & 4) != 0); break;
+            default: store.addSmartPhone(i, name, i % 80, 3999.00, BRANDS[i % 5], "Model " + (i % 100), 4000); break;
+        }
+    }
+
+    static void print(int n, String layout, long bytes, double valueMs, double unitsMs) {
+        System.out.printf("%d,%s,%d,%.1f,%.3f,%.3f%n", n, layout, bytes, (double) bytes / n, valueMs, unitsMs);
+    }
+
+    interface Scan {
+        long run();
+    }
+
+    static long sink;
+
+    static double bestOf(Scan scan) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 20; i++) {
+            long t0 = System.nanoTime();
+            sink += scan.run();
+            best = Math.min(best, System.nanoTime() - t0);
+        }
+        return best / 1e6;
+    }
+
+    static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,169 @@
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Load test for {@link StockHttpServer}: keeps 1, 100 and 10,000 requests in
+ * flight at once and reports throughput and latency percentiles for each level.
+ * Each in-flight slot sends its next request as soon as the last one answers; the
+ * mix is 80% product lookups, 10% add-stock and 10% deduct-stock on random items.
+ *
+ * Without load.url it starts a server in this process on a catalog of 10,000
+ * products, so client and server share the machine.
+ *
+ * Settings are system properties:
+ *   load.url          base URL of a running server, e.g. http://localhost:8080
+ *   load.items        item numbers 1..N to address (default 10000)
+ *   load.seconds      measured seconds per level, after 2 seconds of warmup (default 10)
+ *   load.concurrency  comma-separated levels (default 1,100,10000)
+ */
+public class HttpLoadTest {
+    private static final int ITEMS = Integer.getInteger("load.items", 10_000);
+
+    public static void main(String[] args) throws Exception {
+        String url = System.getProperty("load.url");
+        long seconds = Long.getLong("load.seconds", 10);
+        String[] levels = System.getProperty("load.concurrency", "1,100,10000").split(",");
+
+        StockHttpServer server = null;
+        if (url == null) {
+            // As StockManagementConsole --serve does; see StockHttpServer
+            if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+                System.setProperty("sun.net.httpserver.nodelay", "true");
+            }
+            server = new StockHttpServer(catalog(ITEMS), new InetSocketAddress("127.0.0.1", 0));
+            server.start();
+            url = "http://127.0.0.1:" + server.getPort();
+            System.err.println("embedded server threads=" + (server.usesVirtualThreads() ? "virtual" : "pooled"));
+        }
+        System.out.println("concurrency,requests,errors,seconds,requests_per_sec,p50_ms,p99_ms,max_ms");
+        try {
+            for (String level : levels) {
+                int concurrency = Integer.parseInt(level.trim());
+                // A fresh client per level, so connections opened for one level are not reused by the next
+                HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .build();
+                run(client, url, concurrency, 2);
+                Result r = run(client, url, concurrency, seconds);
+                System.out.printf(Locale.ROOT, "%d,%d,%d,%.1f,%.0f,%.3f,%.3f,%.3f%n", concurrency, r.requests,
+                    r.errors.get(), r.seconds, r.requests / r.seconds, r.latency.percentile(0.50) / 1e6,
+                    r.latency.percentile(0.99) / 1e6, r.latency.max() / 1e6);
+            }
+        } finally {
+            if (server != null) server.close();
+        }
+    }
+
+    private static final class Result {
+        final Latency latency = new Latency();
+        final AtomicLong errors = new AtomicLong();
+        long requests;
+        double seconds;
+    }
+
+    /** Keeps concurrency request chains going for the given time, then waits for them to finish. */
+    private static Result run(HttpClient client, String url, int concurrency, long seconds) throws InterruptedException {
+        Result r = new Result();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch done = new CountDownLatch(concurrency);
+        for (int i = 0; i < concurrency; i++) next(client, url, r, deadline, done);
+        done.await();
+        r.seconds = (System.nanoTime() - start) / 1e9;
+        r.requests = r.latency.count();
+        return r;
+    }
+
+    private static void next(HttpClient client, String url, Result r, long deadline, CountDownLatch done) {
+        if (System.nanoTime() >= deadline) {
+            done.countDown();
+            return;
+        }
+        long sent = System.nanoTime();
+        client.sendAsync(request(url), HttpResponse.BodyHandlers.ofByteArray()).whenComplete((response, failure) -> {
+            r.latency.record(System.nanoTime() - sent);
+            // 409 is an expected answer here: a deduction larger than the stock left
+            if (failure != null || response.statusCode() >= 500 || response.statusCode() == 404) r.errors.incrementAndGet();
+            next(client, url, r, deadline, done);
+        });
+    }
+
+    private static HttpRequest request(String url) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int item = 1 + random.nextInt(ITEMS);
+        int pick = random.nextInt(10);
+        HttpRequest.Builder b = HttpRequest.newBuilder().timeout(Duration.ofSeconds(60));
+        if (pick < 8) return b.uri(URI.create(url + "/products/" + item)).GET().build();
+        String action = pick == 8 ? "/add-stock" : "/deduct-stock";
+        return b.uri(URI.create(url + "/products/" + item + action))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString("{\"quantity\":1}"))
+            .build();
+    }
+
+    static StockManagement catalog(int n) {
+        List<Product> list = new ArrayList<>(n);
+        for (int i = 1; i <= n; i++) list.add(new TV(i, "Television", 1_000, 999.0, "OLED", "3840x2160", 55));
+        StockManagement sm = new StockManagement();
+        sm.addProducts(list);
+        return sm;
+    }
+
+    /**
+     * Counts of latencies in buckets an eighth of a power of two wide, so a
+     * percentile is within about 9% of the true value.
+     */
+    private static final class Latency {
+        private static final int BUCKETS = 8 * 64;
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            counts.incrementAndGet(bucket(Math.max(1, nanos)));
+            max.accumulateAndGet(nanos, Math::max);
+        }
+
+        long count() {
+            long n = 0;
+            for (int b = 0; b < BUCKETS; b++) n += counts.get(b);
+            return n;
+        }
+
+        long max() { return max.get(); }
+
+        /** The upper edge of the bucket holding the given fraction of requests. */
+        double percentile(double fraction) {
+            long rank = (long) Math.ceil(fraction * count());
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += counts.get(b);
+                if (seen >= rank && seen > 0) return Math.min(upper(b), max.get());
+            }
+            return 0;
+        }
+
+        private static int bucket(long v) {
+            int exponent = 63 - Long.numberOfLeadingZeros(v);
+            int eighth = exponent >= 3 ? (int) ((v >>> (exponent - 3)) & 7) : 0;
+            return 8 * exponent + eighth;
+        }
+
+        private static double upper(int b) {
+            int exponent = b >> 3, eighth = b & 7;
+            return Math.scalb(1 + (eighth + 1) / 8.0, exponent);
+        }
+    }
+}
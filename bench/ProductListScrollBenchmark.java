@@ -0,0 +1,102 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.scene.Scene;
+import javafx.scene.control.ListView;
+import javafx.scene.control.skin.VirtualFlow;
+import javafx.scene.layout.StackPane;
+
+/**
+ * Frame time and allocation rate of scrolling the product list with ProductListCell.
+ * Each frame scrolls the list and runs the CSS and layout pass that updates the
+ * cells. Rendering is not included. The stage is never shown, so this runs headless
+ * with Monocle:
+ *
+ *   java --module-path $JAVAFX --add-modules javafx.controls \
+ *        -Dglass.platform=Monocle -Dmonocle.platform=Headless -Dprism.order=sw \
+ *        ProductListScrollBenchmark [products] [frames]   (default 100000 4000)
+ *
+ * Without Monocle, run it under a virtual display such as xvfb-run. Prints CSV.
+ */
+public class ProductListScrollBenchmark {
+    private static final int SCROLL_PIXELS = Integer.getInteger("scroll.pixels", 120);
+
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) : 4_000;
+        CountDownLatch done = new CountDownLatch(1);
+        Throwable[] failure = new Throwable[1];
+        Platform.startup(() -> {
+            try {
+                run(n, frames);
+            } catch (Throwable t) {
+                failure[0] = t;
+            } finally {
+                done.countDown();
+            }
+        });
+        done.await();
+        Platform.exit();
+        if (failure[0] != null) {
+            failure[0].printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /** Runs on the FX application thread. */
+    private static void run(int n, int frames) {
+        StockManagement sm = new StockManagement();
+        List<Product> products = new ArrayList<>(n);
+        for (int i = 1; i <= n; i++) products.add(StockEngineBenchmark.sample(i));
+        sm.addProducts(products);
+
+        ListView<Product> view = new ListView<>(FXCollections.observableArrayList(sm.getProducts()));
+        int[] cellsCreated = new int[1];
+        view.setCellFactory(lv -> {
+            cellsCreated[0]++;
+            return new ProductListCell(sm);
+        });
+        StackPane root = new StackPane(view);
+        new Scene(root, 350, 800);
+        pulse(root);
+        VirtualFlow<?> flow = (VirtualFlow<?>) view.lookup(".virtual-flow");
+
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long fxThread = Thread.currentThread().getId();
+        int warmup = frames / 2;
+        long[] frameNanos = new long[frames];
+        double direction = SCROLL_PIXELS;
+        long allocStart = 0, timeStart = 0;
+        for (int f = 0; f < warmup + frames; f++) {
+            if (f == warmup) {
+                allocStart = threads.getThreadAllocatedBytes(fxThread);
+                timeStart = System.nanoTime();
+            }
+            long t0 = System.nanoTime();
+            if (flow.scrollPixels(direction) == 0) direction = -direction; // bounce off either end
+            pulse(root);
+            if (f >= warmup) frameNanos[f - warmup] = System.nanoTime() - t0;
+        }
+        long allocated = threads.getThreadAllocatedBytes(fxThread) - allocStart;
+        long elapsed = System.nanoTime() - timeStart;
+
+        Arrays.sort(frameNanos);
+        double mean = Arrays.stream(frameNanos).average().orElse(0);
+        System.out.println("products,frames,scroll_px,mean_ms,p50_ms,p99_ms,max_ms,alloc_bytes_per_frame,alloc_mb_per_sec,cells_created");
+        System.out.printf("%d,%d,%d,%.4f,%.4f,%.4f,%.4f,%d,%.1f,%d%n", n, frames, SCROLL_PIXELS,
+            mean / 1e6, frameNanos[frames / 2] / 1e6, frameNanos[(int) (frames * 0.99)] / 1e6,
+            frameNanos[frames - 1] / 1e6, allocated / frames, allocated / (elapsed / 1e9) / (1 << 20),
+            cellsCreated[0]);
+    }
+
+    /** The part of a pulse that updates cells: CSS, then layout. */
+    private static void pulse(StackPane root) {
+        root.applyCss();
+        root.layout();
+    }
+}
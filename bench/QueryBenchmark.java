@@ -0,0 +1,60 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * StockManagement.query against a plain scan of the catalog testing every
+ * product, on 1k, 100k and 1M products with varied prices and stock. Each query
+ * favours a different index: a category and status with narrow ranges, a price
+ * band, low stock, and attribute tests the category bitmaps narrow down.
+ */
+public class QueryBenchmark {
+    private static final int[] CATALOG_SIZES = {1_000, 100_000, 1_000_000};
+
+    public static void main(String[] args) throws Exception {
+        String[] names = {"tv-active-cheap-low", "price-band", "low-stock", "washer-dryer", "phone-battery"};
+        ProductQuery[] queries = {
+            new ProductQuery().category(ProductCategory.TV).active(true).priceBelow(2000).quantityBelow(5),
+            new ProductQuery().price(1000, 1010),
+            new ProductQuery().quantityBelow(2),
+            new ProductQuery().attribute("hasDryer", true).active(true),
+            new ProductQuery().attributeBetween("batteryCapacity", 5500, Integer.MAX_VALUE),
+        };
+        try (Bench bench = new Bench("query")) {
+            for (int n : CATALOG_SIZES) {
+                StockManagement sm = catalog(n);
+                sm.getQueryIndex();
+                List<Product> all = new ArrayList<>(sm.getProducts());
+                for (int k = 0; k < queries.length; k++) {
+                    ProductQuery q = queries[k];
+                    String param = "products=" + n + ";query=" + names[k];
+                    bench.run("StockManagement.query", param, i -> sm.query(q).size());
+                    bench.run("scan", param, i -> {
+                        int hits = 0;
+                        for (Product p : all) if (q.matches(p)) hits++;
+                        return hits;
+                    });
+                }
+            }
+        }
+    }
+
+    static StockManagement catalog(int n) {
+        Random r = new Random(n);
+        List<Product> list = new ArrayList<>(n);
+        for (int i = 1; i <= n; i++) {
+            double price = 99 + r.nextInt(6000);
+            int qty = r.nextInt(100);
+            switch (i & 3) {
+                case 0:  list.add(new Refrigerator(i, "Fridge", qty, price, "French Door", "Silver", 450)); break;
+                case 1:  list.add(new TV(i, "Television", qty, price, "OLED", "3840x2160", 32 + r.nextInt(50))); break;
+                case 2:  list.add(new WashingMachine(i, "Washer", qty, price, 9, "Front Load", r.nextBoolean())); break;
+                default: list.add(new SmartPhone(i, "Phone", qty, price, "Samsung", "Model", 3000 + r.nextInt(3000))); break;
+            }
+        }
+        StockManagement sm = new StockManagement();
+        sm.addProducts(list);
+        for (int i = 1; i <= n; i += 10) sm.setProductStatus(i, false);
+        return sm;
+    }
+}
@@ -0,0 +1,69 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reservations with 1k, 100k and 1M holds outstanding: reserve followed by commit
+ * or release on one product, and the cost of one expiry tick of the timing wheel
+ * against the periodic scan of every hold it replaces.
+ */
+public class ReservationBenchmark {
+    private static final int[] OUTSTANDING = {1_000, 100_000, 1_000_000};
+    private static final long HOUR_MILLIS = 3_600_000;
+
+    public static void main(String[] args) throws Exception {
+        try (Bench bench = new Bench("reservation")) {
+            for (int n : OUTSTANDING) {
+                String param = "outstanding=" + n;
+                try (StockManagement sm = new StockManagement()) {
+                    sm.addProducts(Collections.singletonList(
+                        new TV(1, "Television", Integer.MAX_VALUE, 2499.00, "OLED", "3840x2160", 55)));
+                    for (int i = 0; i < n; i++) sm.reserve(1, 1, HOUR_MILLIS);
+                    bench.run("StockManagement.reserve+commit", param,
+                        i -> sm.commitReservation(sm.reserve(1, 1, HOUR_MILLIS)));
+                    bench.run("StockManagement.reserve+release", param,
+                        i -> sm.releaseReservation(sm.reserve(1, 1, HOUR_MILLIS)));
+                }
+                expiryTick(bench, n);
+            }
+        }
+    }
+
+    /**
+     * One tick's worth of expiry with n holds outstanding and due over the next
+     * hour: the wheel visits one bucket, the scan tests every hold's deadline.
+     */
+    static void expiryTick(Bench bench, int n) {
+        String param = "outstanding=" + n;
+        long tickNanos = 100_000_000L;
+        long start = System.nanoTime();
+        long[] now = {start};
+        // Time moves one tick per call, whatever the real clock says
+        TimingWheel<Object> wheel = new TimingWheel<>(100, 4096, item -> { }, () -> now[0]);
+        Object item = new Object();
+        for (int i = 0; i < n; i++) wheel.schedule(item, (long) i * HOUR_MILLIS / n);
+        wheel.advance(start);
+        bench.run("TimingWheel.advance", param, i -> {
+            // Replace what fell due so the wheel stays at n outstanding
+            now[0] += tickNanos;
+            int fired = wheel.advance(now[0]);
+            for (int k = 0; k < fired; k++) wheel.schedule(item, HOUR_MILLIS);
+            return fired;
+        });
+
+        List<long[]> holds = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) holds.add(new long[] {start + (long) i * HOUR_MILLIS * 1_000_000L / n});
+        long[] scanNow = {start};
+        bench.run("scan", param, i -> {
+            scanNow[0] += tickNanos;
+            int due = 0;
+            for (long[] h : holds) {
+                if (h[0] <= scanNow[0]) {
+                    h[0] += HOUR_MILLIS * 1_000_000L;
+                    due++;
+                }
+            }
+            return due;
+        });
+    }
+}
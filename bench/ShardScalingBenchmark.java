@@ -0,0 +1,93 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write throughput of one StockManagement against a ShardedStockEngine with one
+ * shard per calling thread, from 1 thread up to all cores (bench.threads caps it):
+ * batches of 64 stock movements over 100k products, and batches of 100 new
+ * products, which one StockManagement serializes on its lock.
+ */
+public class ShardScalingBenchmark {
+    private static final int PRODUCTS = 100_000;
+    private static final int BATCH = 64;
+    private static final int ADD_BATCH = 100;
+
+    public static void main(String[] args) throws Exception {
+        int cores = Integer.getInteger("bench.threads", Runtime.getRuntime().availableProcessors());
+        TreeSet<Integer> levels = new TreeSet<>();
+        for (int t = 1; t < cores; t *= 2) levels.add(t);
+        levels.add(cores);
+
+        List<List<StockMovement>> batches = movementBatches(1 << 12);
+        int mask = batches.size() - 1;
+        try (Bench bench = new Bench("shards")) {
+            for (int threads : levels) {
+                String param = "products=" + PRODUCTS + ";batch=" + BATCH;
+                StockManagement single = new StockManagement();
+                single.addProducts(catalog(1, PRODUCTS));
+                bench.run("StockManagement.applyBatch", param, threads, null,
+                    i -> single.applyBatch(batches.get((i * 31 + (int) Thread.currentThread().getId()) & mask), false)
+                        .getSuccessCount());
+                try (ShardedStockEngine engine = new ShardedStockEngine(threads)) {
+                    engine.addProducts(catalog(1, PRODUCTS));
+                    bench.run("ShardedStockEngine.applyBatch", param + ";shards=" + threads, threads, null,
+                        i -> engine.applyBatch(batches.get((i * 31 + (int) Thread.currentThread().getId()) & mask))
+                            .getSuccessCount());
+                }
+
+                String addParam = "batch=" + ADD_BATCH;
+                AtomicInteger next = new AtomicInteger();
+                StockManagement[] fresh = new StockManagement[1];
+                bench.run("StockManagement.addProducts", addParam, threads, () -> {
+                    fresh[0] = new StockManagement();
+                    next.set(1);
+                }, i -> {
+                    fresh[0].addProducts(catalog(next.getAndAdd(ADD_BATCH), ADD_BATCH));
+                    return ADD_BATCH;
+                });
+                ShardedStockEngine[] engine = new ShardedStockEngine[1];
+                bench.run("ShardedStockEngine.addProducts", addParam + ";shards=" + threads, threads, () -> {
+                    closeQuietly(engine[0]);
+                    engine[0] = new ShardedStockEngine(threads);
+                    next.set(1);
+                }, i -> {
+                    engine[0].addProducts(catalog(next.getAndAdd(ADD_BATCH), ADD_BATCH));
+                    return ADD_BATCH;
+                });
+                closeQuietly(engine[0]);
+            }
+        }
+    }
+
+    static List<List<StockMovement>> movementBatches(int count) {
+        Random r = new Random(42);
+        List<List<StockMovement>> batches = new ArrayList<>(count);
+        for (int b = 0; b < count; b++) {
+            List<StockMovement> batch = new ArrayList<>(BATCH);
+            for (int k = 0; k < BATCH; k++) {
+                int item = 1 + r.nextInt(PRODUCTS);
+                batch.add(r.nextBoolean() ? StockMovement.add(item, 1) : StockMovement.deduct(item, 1));
+            }
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    static List<Product> catalog(int first, int n) {
+        List<Product> list = new ArrayList<>(n);
+        for (int i = first; i < first + n; i++) list.add(new TV(i, "Television", 1_000, 999.0, "OLED", "3840x2160", 55));
+        return list;
+    }
+
+    private static void closeQuietly(ShardedStockEngine engine) {
+        if (engine == null) return;
+        try {
+            engine.close();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
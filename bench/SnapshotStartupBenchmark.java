@@ -0,0 +1,74 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Startup time against catalog size: mapping a snapshot and reading the hot
+ * fields, loading a StockManagement from the snapshot, and replaying the same
+ * catalog from a journal. Prints CSV.
+ *
+ * Usage: java SnapshotStartupBenchmark [size ...]   (default 10000 100000 1000000)
+ */
+public class SnapshotStartupBenchmark {
+    public static void main(String[] args) throws IOException {
+        int[] sizes = args.length == 0 ? new int[] {10_000, 100_000, 1_000_000} : new int[args.length];
+        for (int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i]);
+
+        Path dir = Files.createTempDirectory("sms-startup");
+        System.out.println("products,snapshot_bytes,journal_bytes,map_and_scan_ms,snapshot_load_ms,journal_replay_ms");
+        for (int n : sizes) {
+            Path snapshot = dir.resolve("catalog-" + n + ".snap");
+            Path journalFile = dir.resolve("catalog-" + n + ".journal");
+            try (StockManagement sm = new StockManagement(StockJournal.open(journalFile, StockJournal.SyncMode.PER_BATCH, 0))) {
+                List<Product> batch = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) batch.add(sample(i));
+                sm.addProducts(batch);
+                sm.saveSnapshot(snapshot);
+            }
+
+            double scan = bestOf(5, () -> {
+                CatalogSnapshot s = CatalogSnapshot.open(snapshot);
+                long units = 0;
+                for (int i = 0; i < s.size(); i++) units += s.quantity(i);
+                return units;
+            });
+            double load = bestOf(5, () -> new StockManagement(CatalogSnapshot.open(snapshot)).getProducts().size());
+            double replay = bestOf(3, () -> {
+                try (StockManagement sm = new StockManagement(StockJournal.open(journalFile, StockJournal.SyncMode.PER_BATCH))) {
+                    return sm.getProducts().size();
+                }
+            });
+            System.out.printf("%d,%d,%d,%.2f,%.2f,%.2f%n", n, Files.size(snapshot), Files.size(journalFile), scan, load, replay);
+            Files.delete(snapshot);
+            Files.delete(journalFile);
+        }
+        Files.delete(dir);
+    }
+
+    static Product sample(int i) {
+        switch (i & 3) {
+            case 0:  return new Refrigerator(i, "Fridge", i % 50, 1299.90, "French Door", "Silver", 450);
+            case 1:  return new TV(i, "Television", i % 40, 2499.00, "OLED", "3840x2160", 55);
+            case 2:  return new WashingMachine(i, "Washer", i % 30, 1599.00, 9, "Front Load", (i & 4) != 0);
+            default: return new SmartPhone(i, "Phone", i % 80, 3999.00, "Samsung", "Galaxy S24", 4000);
+        }
+    }
+
+    interface Run {
+        Object run() throws IOException;
+    }
+
+    static double bestOf(int runs, Run r) throws IOException {
+        long best = Long.MAX_VALUE;
+        Object sink = null;
+        for (int i = 0; i < runs; i++) {
+            long t0 = System.nanoTime();
+            sink = r.run();
+            best = Math.min(best, System.nanoTime() - t0);
+        }
+        if (sink == null) throw new AssertionError();
+        return best / 1e6;
+    }
+}
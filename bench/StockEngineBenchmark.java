@@ -0,0 +1,173 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Throughput of the StockManagement operations that run hot: stock changes on one
+ * product, item number lookups, the displayProducts sort, word search, toString of
+ * each product type, adding products and session lookups. Run with Bench's system properties, for example
+ *
+ *   java -Dbench.format=json -Dbench.out=results.jsonl StockEngineBenchmark
+ *
+ * and diff the output of two runs.
+ */
+public class StockEngineBenchmark {
+    private static final int[] CATALOG_SIZES = {1_000, 100_000, 1_000_000};
+
+    public static void main(String[] args) throws Exception {
+        int contended = Integer.getInteger("bench.threads", Runtime.getRuntime().availableProcessors());
+        try (Bench bench = new Bench("engine")) {
+            stockChanges(bench, 1);
+            if (contended > 1) stockChanges(bench, contended);
+            lookups(bench);
+            displaySort(bench);
+            sortedViewUpdates(bench);
+            searches(bench);
+            toStrings(bench);
+            adds(bench);
+            sessions(bench, 1);
+            if (contended > 1) sessions(bench, contended);
+        }
+    }
+
+    /** addStock and deductStock on a single product; with threads > 1 they all hit it. */
+    static void stockChanges(Bench bench, int threads) {
+        Product[] p = new Product[1];
+        bench.run("Product.addStock", "", threads,
+            () -> p[0] = new TV(1, "Television", 0, 2499.00, "OLED", "3840x2160", 55),
+            i -> p[0].addStock(1).length());
+        bench.run("Product.deductStock", "", threads,
+            () -> p[0] = new TV(1, "Television", Integer.MAX_VALUE, 2499.00, "OLED", "3840x2160", 55),
+            i -> p[0].deductStock(1).length());
+    }
+
+    /** isItemNumberUsed with half the probes hitting. */
+    static void lookups(Bench bench) {
+        if (!bench.enabled("StockManagement.isItemNumberUsed")) return;
+        for (int n : CATALOG_SIZES) {
+            StockManagement sm = catalog(n);
+            int[] probes = new int[1 << 16];
+            Random r = new Random(n);
+            for (int i = 0; i < probes.length; i++) probes[i] = 1 + r.nextInt(2 * n);
+            bench.run("StockManagement.isItemNumberUsed", "products=" + n,
+                i -> sm.isItemNumberUsed(probes[i & (probes.length - 1)]) ? 1 : 0);
+        }
+    }
+
+    /**
+     * The sort displayProducts used to run before every listing, on a list in
+     * insertion order and on one already sorted, against reading the maintained
+     * item number view it lists from now.
+     */
+    static void displaySort(Bench bench) {
+        if (!bench.enabled("displayProducts.sort")) return;
+        Comparator<Product> byItemNumber = Comparator.comparingInt(Product::getItemNumber);
+        for (int n : CATALOG_SIZES) {
+            List<Product> shuffled = new ArrayList<>(catalog(n).getProducts());
+            Collections.shuffle(shuffled, new Random(n));
+            List<Product> sorted = new ArrayList<>(shuffled);
+            sorted.sort(byItemNumber);
+            List<Product> work = new ArrayList<>(n);
+            bench.run("displayProducts.sort", "products=" + n + ";order=insertion", i -> {
+                work.clear();
+                work.addAll(shuffled);
+                work.sort(byItemNumber);
+                return work.get(0).getItemNumber();
+            });
+            bench.run("displayProducts.sort", "products=" + n + ";order=sorted", i -> {
+                sorted.sort(byItemNumber);
+                return sorted.get(0).getItemNumber();
+            });
+            SortedProductView view = catalog(n).getSortedView(SortedProductView.Order.ITEM_NUMBER);
+            bench.run("displayProducts.sortedView", "products=" + n, i -> view.toList().size());
+        }
+    }
+
+    /** Stock changes on a catalog keeping a quantity-ordered view, which re-files one product each. */
+    static void sortedViewUpdates(Bench bench) {
+        if (!bench.enabled("SortedProductView.quantityChanged")) return;
+        for (int n : CATALOG_SIZES) {
+            StockManagement sm = catalog(n);
+            sm.getSortedView(SortedProductView.Order.QUANTITY);
+            bench.run("SortedProductView.quantityChanged", "products=" + n, i -> {
+                int item = 1 + (i * 7919 & 0x7fffffff) % n;
+                return (i & 1) == 0 ? sm.addStockByItemNumber(item, 1).length() : sm.deductStockByItemNumber(item, 1).length();
+            });
+        }
+    }
+
+    /**
+     * Top-50 searches, as typed into the GUI search box: a name prefix, an attribute
+     * word, two words across name and attributes, and a word no product has.
+     */
+    static void searches(Bench bench) {
+        if (!bench.enabled("ProductSearchIndex.search")) return;
+        String[] queries = {"tele", "silver", "samsung mod", "front wash", "dishwasher"};
+        for (int n : CATALOG_SIZES) {
+            ProductSearchIndex index = catalog(n).getSearchIndex();
+            for (String q : queries) {
+                bench.run("ProductSearchIndex.search", "products=" + n + ";query=" + q,
+                    i -> index.search(q, 50).size());
+            }
+        }
+    }
+
+    /** A session lookup and counted operation, as each HTTP request makes, among 10,000 open sessions. */
+    static void sessions(Bench bench, int threads) {
+        if (!bench.enabled("SessionRegistry.get")) return;
+        SessionRegistry registry = new SessionRegistry(60_000);
+        String[] ids = new String[1 << 14];
+        for (int i = 0; i < 10_000; i++) ids[i] = registry.open(new UserInfo("Mary Ann", "Smith")).getToken();
+        for (int i = 10_000; i < ids.length; i++) ids[i] = ids[i - 10_000];
+        bench.run("SessionRegistry.get", "sessions=10000", threads, null,
+            i -> registry.get(ids[i & (ids.length - 1)]).record(SessionRegistry.Operation.READ) ? 1 : 0);
+    }
+
+    static void toStrings(Bench bench) {
+        for (int type = 0; type < 4; type++) {
+            Product p = sample(type);
+            bench.run(p.getClass().getSimpleName() + ".toString", "", i -> p.toString().length());
+        }
+    }
+
+    /** Adding products one at a time and in bulk to an in-memory StockManagement. */
+    static void adds(Bench bench) {
+        int[] next = new int[1];
+        StockManagement[] sm = new StockManagement[1];
+        Runnable fresh = () -> {
+            sm[0] = new StockManagement();
+            next[0] = 1;
+        };
+        bench.run("StockManagement.addProducts", "batch=1", 1, fresh,
+            i -> {
+                sm[0].addProducts(Collections.singletonList(sample(next[0]++)));
+                return 1;
+            });
+        bench.run("StockManagement.addProducts", "batch=1000", 1, fresh,
+            i -> {
+                List<Product> batch = new ArrayList<>(1000);
+                for (int k = 0; k < 1000; k++) batch.add(sample(next[0]++));
+                sm[0].addProducts(batch);
+                return batch.size();
+            });
+    }
+
+    static StockManagement catalog(int n) {
+        List<Product> list = new ArrayList<>(n);
+        for (int i = 1; i <= n; i++) list.add(sample(i));
+        StockManagement sm = new StockManagement();
+        sm.addProducts(list);
+        return sm;
+    }
+
+    static Product sample(int i) {
+        switch (i & 3) {
+            case 0:  return new Refrigerator(i, "Fridge " + i, i % 50, 1299.90, "French Door", "Silver", 450);
+            case 1:  return new TV(i, "Television " + i, i % 40, 2499.00, "OLED", "3840x2160", 55);
+            case 2:  return new WashingMachine(i, "Washer " + i, i % 30, 1599.00, 9, "Front Load", (i & 4) != 0);
+            default: return new SmartPhone(i, "Phone " + i, i % 80, 3999.00, "Samsung", "Model " + (i % 100), 4000);
+        }
+    }
+}
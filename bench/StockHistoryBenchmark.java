@@ -0,0 +1,58 @@
+import java.util.Random;
+
+/**
+ * One product's stock history with 1M and 10M points, about a minute apart with
+ * bursts of changes in the same second: recording a change, an as-of lookup at a
+ * random time, and summaries over a random day and over the whole history. The
+ * encoded size per point goes in the param column.
+ */
+public class StockHistoryBenchmark {
+    private static final int[] POINTS = {1_000_000, 10_000_000};
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    public static void main(String[] args) throws Exception {
+        try (Bench bench = new Bench("history")) {
+            long[] clock = {0};
+            StockHistory growing = new StockHistory(() -> clock[0]);
+            Product recorded = new TV(1, "Television", 1_000, 2499.00, "OLED", "3840x2160", 55);
+            growing.productAdded(recorded);
+            Random steps = new Random(7);
+            bench.run("StockHistory.quantityChanged", "", i -> {
+                clock[0] += step(steps);
+                growing.quantityChanged(recorded, (i & 1) == 0 ? 3 : -2, true);
+                return 1;
+            });
+
+            for (int n : POINTS) {
+                long[] now = {1_700_000_000_000L};
+                long first = now[0];
+                StockHistory history = new StockHistory(() -> now[0]);
+                Product p = new TV(1, "Television", 1_000, 2499.00, "OLED", "3840x2160", 55);
+                history.productAdded(p);
+                Random r = new Random(42);
+                for (int i = 1; i < n; i++) {
+                    now[0] += step(r);
+                    history.quantityChanged(p, r.nextInt(21) - 10, true);
+                }
+                long last = now[0];
+                String param = String.format("points=%d;bytesPerPoint=%.2f", n,
+                    (double) history.getEncodedBytes(1) / history.getPointCount(1));
+
+                Random q = new Random(1);
+                bench.run("StockHistory.quantityAt", param,
+                    i -> history.quantityAt(1, first + (long) (q.nextDouble() * (last - first))));
+                bench.run("StockHistory.summarize", param + ";period=day", i -> {
+                    long from = first + (long) (q.nextDouble() * (last - first - DAY_MILLIS));
+                    return history.summarize(1, from, from + DAY_MILLIS).getChanges();
+                });
+                bench.run("StockHistory.summarize", param + ";period=all",
+                    i -> history.summarize(1, first, last).getChanges());
+            }
+        }
+    }
+
+    /** Mostly about a minute, one time in four a burst within the same second. */
+    static long step(Random r) {
+        return (r.nextInt() & 3) == 0 ? r.nextInt(1_000) : 30_000 + r.nextInt(60_000);
+    }
+}
@@ -0,0 +1,130 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hammers the lock-free stock path of Product from many threads and checks that
+ * no update is lost: each product must end at its starting quantity plus every
+ * successful addition minus every successful deduction, and never go below zero.
+ * A second round discontinues the products mid-run and checks that no change
+ * lands after the discontinue took effect.
+ *
+ * Properties: stress.threads (8), stress.ops (200000 per thread), stress.products (4).
+ * Exits with status 1 if a check fails.
+ */
+public class StockStressTest {
+    private static final int THREADS = Integer.getInteger("stress.threads", 8);
+    private static final int OPS = Integer.getInteger("stress.ops", 200_000);
+    private static final int PRODUCTS = Integer.getInteger("stress.products", 4);
+    private static final int START = 1_000;
+
+    public static void main(String[] args) throws Exception {
+        int failures = lostUpdates() + changesAfterDiscontinue();
+        if (failures > 0) {
+            System.out.println(failures + " check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("all checks passed");
+    }
+
+    /** Mixed additions and deductions of 1 to 5 units on a few shared products. */
+    static int lostUpdates() throws Exception {
+        List<Product> products = catalog();
+        AtomicLong[] net = new AtomicLong[PRODUCTS];
+        for (int i = 0; i < PRODUCTS; i++) net[i] = new AtomicLong();
+        AtomicLong negative = new AtomicLong();
+        run(t -> {
+            Random r = new Random(t);
+            long[] local = new long[PRODUCTS];
+            for (int k = 0; k < OPS; k++) {
+                int i = r.nextInt(PRODUCTS);
+                Product p = products.get(i);
+                int q = 1 + r.nextInt(5);
+                if (r.nextBoolean()) {
+                    if (p.tryAddStock(q) == StockResult.OK) local[i] += q;
+                } else if (p.tryDeductStock(q) == StockResult.OK) {
+                    local[i] -= q;
+                }
+                if (p.getQuantityAvailable() < 0) negative.incrementAndGet();
+            }
+            for (int i = 0; i < PRODUCTS; i++) net[i].addAndGet(local[i]);
+        });
+        int failures = 0;
+        for (int i = 0; i < PRODUCTS; i++) {
+            long expected = START + net[i].get();
+            int actual = products.get(i).getQuantityAvailable();
+            if (actual != expected) {
+                System.out.printf("lost updates: product %d expected %d actual %d%n", i, expected, actual);
+                failures++;
+            }
+        }
+        if (negative.get() > 0) {
+            System.out.println("lost updates: quantity seen below zero " + negative.get() + " times");
+            failures++;
+        }
+        if (failures == 0) System.out.println("lost updates: 0 (ok)");
+        return failures;
+    }
+
+    /**
+     * One thread discontinues each product halfway through while the others keep
+     * changing it; the quantity the discontinue reports must be the final one.
+     */
+    static int changesAfterDiscontinue() throws Exception {
+        List<Product> products = catalog();
+        long[] atDiscontinue = new long[PRODUCTS];
+        run(t -> {
+            Random r = new Random(100 + t);
+            for (int k = 0; k < OPS; k++) {
+                int i = r.nextInt(PRODUCTS);
+                Product p = products.get(i);
+                if (t == 0 && k == OPS / 2) {
+                    for (int j = 0; j < PRODUCTS; j++) atDiscontinue[j] = products.get(j).changeStatus(false);
+                }
+                if (r.nextBoolean()) p.tryAddStock(1);
+                else p.tryDeductStock(1);
+            }
+        });
+        int failures = 0;
+        for (int i = 0; i < PRODUCTS; i++) {
+            int actual = products.get(i).getQuantityAvailable();
+            System.out.printf("after discontinue: product %d quantity at discontinue %d final %d%n", i, atDiscontinue[i], actual);
+            if (atDiscontinue[i] != actual) failures++;
+        }
+        return failures;
+    }
+
+    interface Worker {
+        void run(int thread) throws Exception;
+    }
+
+    /** Runs worker on every thread at once and rethrows the first failure. */
+    static void run(Worker worker) throws Exception {
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        List<Thread> threads = new ArrayList<>(THREADS);
+        Exception[] failure = new Exception[1];
+        for (int t = 0; t < THREADS; t++) {
+            int id = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    worker.run(id);
+                } catch (Exception e) {
+                    synchronized (failure) { if (failure[0] == null) failure[0] = e; }
+                }
+            }, "stress-" + t);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread t : threads) t.join();
+        if (failure[0] != null) throw failure[0];
+    }
+
+    static List<Product> catalog() {
+        List<Product> products = new ArrayList<>(PRODUCTS);
+        for (int i = 0; i < PRODUCTS; i++) products.add(new TV(i, "Television", START, 999.0, "OLED", "3840x2160", 55));
+        return products;
+    }
+}
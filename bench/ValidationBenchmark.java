@@ -0,0 +1,117 @@
+import java.util.regex.Pattern;
+
+/**
+ * ProductValidator against the String.matches checks it replaced, on single
+ * fields and on whole add-form records. Half the inputs are invalid, as in a
+ * noisy import. Run with Bench's system properties, for example
+ *
+ *   java -Dbench.filter=record ValidationBenchmark
+ */
+public class ValidationBenchmark {
+    private static final String[] NAMES = {
+        "Television", "Smart Fridge", "Front Loader", "Phone", "Deluxe Washer Dryer",
+        "Fridge2", "TV-55", "Grand_Phone", "", "Café Fridge",
+    };
+    private static final String[][] RECORDS = {
+        {"0001", "Television", "12", "2499.00", "OLED", "3840x2160", "55"},
+        {"0002", "Smart Fridge", "4", "3199.90", "French door", "Silver", "520.5"},
+        {"0003", "Front Loader", "7", "1899", "8", "Front load", "true"},
+        {"0004", "Phone", "120", "999.99", "Acme", "X1", "5000"},
+        {"0005", "Deluxe Washer", "2", "2999", "10", "Top load", "false"},
+        {"12", "Television", "1", "100", "OLED", "1080p", "42"},
+        {"0007", "TV-55", "-1", "free", "OLED", "", "0"},
+        {"0008", "Fridge", "3", "0", "Door 2", "Red", "big"},
+        {"abcd", "Washer", "x", "10", "-8", "Top", "maybe"},
+        {"0010", "Phone", "5", "499", "Acme", "X2", "4000mAh"},
+    };
+    private static final ProductCategory[] CATEGORIES = {
+        ProductCategory.TV, ProductCategory.REFRIGERATOR, ProductCategory.WASHING_MACHINE,
+        ProductCategory.SMARTPHONE, ProductCategory.WASHING_MACHINE, ProductCategory.TV,
+        ProductCategory.TV, ProductCategory.REFRIGERATOR, ProductCategory.WASHING_MACHINE,
+        ProductCategory.SMARTPHONE,
+    };
+    private static final Pattern LETTERS = Pattern.compile("[A-Za-z ]+");
+
+    public static void main(String[] args) throws Exception {
+        try (Bench bench = new Bench("validation")) {
+            bench.run("letters", "impl=String.matches",
+                i -> NAMES[i % NAMES.length].matches("[A-Za-z ]+") ? 1 : 0);
+            bench.run("letters", "impl=Pattern",
+                i -> LETTERS.matcher(NAMES[i % NAMES.length]).matches() ? 1 : 0);
+            bench.run("letters", "impl=ProductValidator",
+                i -> ProductValidator.isLettersAndSpaces(NAMES[i % NAMES.length]) ? 1 : 0);
+
+            bench.run("record", "impl=String.matches", i -> {
+                int r = i % RECORDS.length;
+                return matchesPath(CATEGORIES[r], RECORDS[r]);
+            });
+            bench.run("record", "impl=ProductValidator", i -> {
+                int r = i % RECORDS.length;
+                String[] f = RECORDS[r];
+                return ProductValidator.validate(CATEGORIES[r], f[0], f[1], f[2], f[3], f[4], f[5], f[6])
+                    .getErrors().size();
+            });
+        }
+    }
+
+    /** The checks handleAddProduct ran before ProductValidator; returns the error count. */
+    static int matchesPath(ProductCategory category, String[] f) {
+        int errors = 0;
+        try {
+            String item = f[0].trim();
+            if (!item.matches("\\d{4}") || Integer.parseInt(item) <= 0) errors++;
+        } catch (NumberFormatException e) {
+            errors++;
+        }
+        if (!f[1].matches("[A-Za-z ]+")) errors++;
+        try {
+            if (Integer.parseInt(f[2]) < 0) errors++;
+        } catch (NumberFormatException e) {
+            errors++;
+        }
+        try {
+            if (Double.parseDouble(f[3]) <= 0) errors++;
+        } catch (NumberFormatException e) {
+            errors++;
+        }
+        switch (category) {
+            case REFRIGERATOR:
+                if (!f[4].matches("[A-Za-z ]+")) errors++;
+                if (!f[5].matches("[A-Za-z ]+")) errors++;
+                errors += positiveDouble(f[6]);
+                break;
+            case TV:
+                if (!f[4].matches("[A-Za-z ]+")) errors++;
+                if (f[5].trim().isEmpty()) errors++;
+                errors += positiveDouble(f[6]);
+                break;
+            case WASHING_MACHINE:
+                errors += positiveInt(f[4]);
+                if (!f[5].matches("[A-Za-z ]+")) errors++;
+                if (!f[6].toLowerCase().matches("true|false")) errors++;
+                break;
+            default:
+                if (!f[4].matches("[A-Za-z ]+")) errors++;
+                if (f[5].trim().isEmpty()) errors++;
+                errors += positiveInt(f[6]);
+                break;
+        }
+        return errors;
+    }
+
+    private static int positiveDouble(String s) {
+        try {
+            return Double.parseDouble(s) <= 0 ? 1 : 0;
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+
+    private static int positiveInt(String s) {
+        try {
+            return Integer.parseInt(s) <= 0 ? 1 : 0;
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+}